@@ -1,14 +1,17 @@
 import controller.ImageProcessingController;
 import controller.ImageProcessingControllerImpl;
 import controller.MVCController;
-import model.ImageProcessingModel;
 import model.ImageProcessingModelImpl;
+import model.ImageStore;
+import model.TileExecutor;
 import utility.FileReadWriteUtilityImpl;
 import view.IView;
 import view.ViewImpl;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * The main class for the Image Processing application.
@@ -18,6 +21,19 @@ public class ImageProcessingApplication {
   /**
    * The main entry point for the Image Processing application.
    * Initializes the model and controller and starts the application.
+   * The {@code image.store} system property selects where images are held: "heap" (the
+   * default), "offheap" or "tiled". The {@code image.memory} property sets how many megabytes
+   * of image data are kept in memory before the least recently used images are spilled to the
+   * directory named by {@code image.spill.dir}, or to a temporary directory. Setting
+   * {@code image.lazy} to true records operations and only computes the images that are used.
+   * The {@code image.threads} property sets how many threads operations on large images are
+   * split across, one for no parallelism; by default there is one per processor. Setting
+   * {@code image.simd} to false runs convolutions with scalar loops instead of vectorized ones.
+   * Setting {@code image.compress.precision} to float halves the memory compress needs.
+   * The {@code image.compress.cache} property sets how many megabytes of wavelet coefficients
+   * compress keeps to compress the same image again at other percentages; none by default. Setting
+   * {@code image.compress.sparse} to false keeps compressed images as pixels instead of as their
+   * wavelet coefficients.
    *
    * @param args Command-line arguments.
    * @throws IllegalArgumentException If an invalid argument is entered.
@@ -26,9 +42,34 @@ public class ImageProcessingApplication {
 
     final OutputStream out = System.out;
     final InputStream in = System.in;
+    final ImageStore store = ImageStore.fromName(System.getProperty("image.store", "heap"));
+    final String memory = System.getProperty("image.memory");
+    final long memoryBudget = memory == null || Long.parseLong(memory) == 0
+        ? Long.MAX_VALUE : Long.parseLong(memory) * 1024 * 1024;
+    final String spill = System.getProperty("image.spill.dir");
+    final Path spillDirectory = spill == null ? null : Paths.get(spill);
+    final boolean lazy = Boolean.getBoolean("image.lazy");
+    final String threads = System.getProperty("image.threads");
+    final TileExecutor executor = threads == null
+        ? new TileExecutor() : new TileExecutor(Integer.parseInt(threads),
+        TileExecutor.DEFAULT_THRESHOLD);
+    final boolean vectorized = !"false".equalsIgnoreCase(System.getProperty("image.simd"));
+    final boolean singlePrecision =
+        "float".equalsIgnoreCase(System.getProperty("image.compress.precision"));
+    final String compressCache = System.getProperty("image.compress.cache");
+    final boolean sparseCompression =
+        !"false".equalsIgnoreCase(System.getProperty("image.compress.sparse"));
 
+    ImageProcessingModelImpl textModel =
+        new ImageProcessingModelImpl(out, store, memoryBudget, spillDirectory, lazy, executor);
+    textModel.setVectorized(vectorized);
+    textModel.setSinglePrecision(singlePrecision);
+    textModel.setSparseCompression(sparseCompression);
+    if (compressCache != null) {
+      textModel.setCompressionCacheLimit(Long.parseLong(compressCache) * 1024 * 1024);
+    }
     ImageProcessingController controller = new ImageProcessingControllerImpl(
-        new ImageProcessingModelImpl(out),
+        textModel,
         out,
         in,
         new FileReadWriteUtilityImpl()
@@ -36,16 +77,27 @@ public class ImageProcessingApplication {
 
     if (args.length >= 1) {
 
-      if (args[0].equals("-file")) {
-        controller.inputFromScriptFile(args[1], out);
-      } else if (args[0].equals("-text")) {
-        controller.readUserCommands(out, in);
-      } else {
-        throw new IllegalArgumentException("Invalid argument entered");
+      try {
+        if (args[0].equals("-file")) {
+          controller.inputFromScriptFile(args[1], out);
+        } else if (args[0].equals("-text")) {
+          controller.readUserCommands(out, in);
+        } else {
+          throw new IllegalArgumentException("Invalid argument entered");
+        }
+      } finally {
+        executor.shutdown();
       }
     } else {
       IView view = new ViewImpl();
-      ImageProcessingModel model = new ImageProcessingModelImpl(out);
+      ImageProcessingModelImpl model = new ImageProcessingModelImpl(
+          out, store, memoryBudget, spillDirectory, lazy, executor);
+      model.setVectorized(vectorized);
+      model.setSinglePrecision(singlePrecision);
+      model.setSparseCompression(sparseCompression);
+      if (compressCache != null) {
+        model.setCompressionCacheLimit(Long.parseLong(compressCache) * 1024 * 1024);
+      }
       new MVCController(model, view, new FileReadWriteUtilityImpl(), out);
     }
   }
@@ -6,15 +6,25 @@ import controller.commands.ImageProcessingCommand;
 import controller.commands.SaveImage;
 import controller.commands.BlurSharpenImage;
 import controller.commands.BrightenImage;
+import controller.commands.BoxBlurImage;
 import controller.commands.ColorCorrection;
+import controller.commands.ColorMatrixImage;
+import controller.commands.CurvesImage;
 import controller.commands.CompressImage;
+import controller.commands.ConvolveImage;
 import controller.commands.FlipImage;
+import controller.commands.GaussianBlurImage;
 import controller.commands.GreyscaleImage;
 import controller.commands.ImageOperations;
 import controller.commands.LevelsAdjustImage;
 import controller.commands.LoadImage;
+import controller.commands.EvictImage;
+import controller.commands.MedianImage;
+import controller.commands.MemoryUsage;
+import controller.commands.PipelineImage;
 import controller.commands.SepiaImage;
 import controller.commands.RGBSplitImage;
+import controller.commands.Statistics;
 
 
 import utility.FileReadWriteUtility;
@@ -71,7 +81,7 @@ public class ImageProcessingControllerImpl implements ImageProcessingController
 
     while (!command.equalsIgnoreCase("quit")) {
 
-      String[] commandParts = command.split(" ");
+      String[] commandParts = splitCommand(command);
 
       ImageOperations operation = ImageOperations.getOperation(commandParts[0]
           .toUpperCase().replace('-', '_'));
@@ -152,7 +162,7 @@ public class ImageProcessingControllerImpl implements ImageProcessingController
         continue;
       }
 
-      String[] arr = line.split(" ");
+      String[] arr = splitCommand(line);
       ImageOperations operation = ImageOperations.valueOf(arr[0]
           .toUpperCase().replace('-', '_'));
       boolean commandExecuted = executeModel(operation, arr, model);
@@ -169,6 +179,24 @@ public class ImageProcessingControllerImpl implements ImageProcessingController
     }
   }
 
+  /**
+   * Split a command into its words. A command chaining operations with "|" is a pipeline,
+   * such as {@code brighten 20 | sepia src dest}, and is run by the pipeline command.
+   *
+   * @param command The command line.
+   * @return The words of the command, starting with the name of the operation.
+   */
+  private String[] splitCommand(String command) {
+    String[] commandParts = command.split(" ");
+    if (!command.contains("|") || commandParts[0].equalsIgnoreCase("pipeline")) {
+      return commandParts;
+    }
+    String[] pipelineParts = new String[commandParts.length + 1];
+    pipelineParts[0] = "pipeline";
+    System.arraycopy(commandParts, 0, pipelineParts, 1, commandParts.length);
+    return pipelineParts;
+  }
+
   /**
    * Initializes a map of image processing commands.
    *
@@ -202,6 +230,16 @@ public class ImageProcessingControllerImpl implements ImageProcessingController
     knownCommand.put(ImageOperations.RGB_COMBINE, RGBCombineImage::new);
     knownCommand.put(ImageOperations.LEVELS_ADJUST, LevelsAdjustImage::new);
     knownCommand.put(ImageOperations.COLOR_CORRECT, ColorCorrection::new);
+    knownCommand.put(ImageOperations.MEMORY, MemoryUsage::new);
+    knownCommand.put(ImageOperations.EVICT, EvictImage::new);
+    knownCommand.put(ImageOperations.CURVES, CurvesImage::new);
+    knownCommand.put(ImageOperations.COLOR_MATRIX, ColorMatrixImage::new);
+    knownCommand.put(ImageOperations.CONVOLVE, ConvolveImage::new);
+    knownCommand.put(ImageOperations.BOX_BLUR, BoxBlurImage::new);
+    knownCommand.put(ImageOperations.GAUSSIAN_BLUR, GaussianBlurImage::new);
+    knownCommand.put(ImageOperations.MEDIAN, MedianImage::new);
+    knownCommand.put(ImageOperations.STATS, Statistics::new);
+    knownCommand.put(ImageOperations.PIPELINE, PipelineImage::new);
 
     return knownCommand;
   }
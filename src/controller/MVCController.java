@@ -212,6 +212,8 @@ public class MVCController extends ImageProcessingControllerImpl implements Feat
     BufferedImage image = model.getImage(sourceImage);
     if (fileExtension.equalsIgnoreCase("ppm")) {
       saveStatus = fileUtility.savePPMImage(path, image);
+    } else if (fileExtension.equalsIgnoreCase("hwc")) {
+      saveStatus = fileUtility.saveHWCImage(path, image);
     } else if (fileExtension.equalsIgnoreCase("jpeg") ||
         fileExtension.equalsIgnoreCase("png") ||
         fileExtension.equalsIgnoreCase("jpg")) {
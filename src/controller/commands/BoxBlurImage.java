@@ -0,0 +1,50 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Command class for blurring an image by averaging the square of pixels around each pixel, for
+ * example {@code box-blur 10 src dest}. The blur takes as long for any radius.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class BoxBlurImage implements ImageProcessingCommand {
+
+  private final String filename;
+  private final String newFilename;
+  private Integer radius;
+
+  /**
+   * Constructs a BoxBlurImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the radius,
+   *                    input filename, and output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public BoxBlurImage(String[] inputs, PrintStream printStream) {
+    try {
+      this.radius = Integer.parseInt(inputs[1]);
+    } catch (NumberFormatException e) {
+      printStream.println(inputs[1] + " cannot be parsed into Integer.");
+    }
+    this.filename = inputs[2];
+    this.newFilename = inputs[3];
+  }
+
+  /**
+   * Executes the box blur on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (radius == null) {
+      return false;
+    }
+    return model.boxBlur(radius, filename, newFilename);
+  }
+}
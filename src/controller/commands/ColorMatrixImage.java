@@ -0,0 +1,83 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+import model.PixelKernel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command class for multiplying every pixel of an image by a color matrix, given row by row as
+ * 9 values, or as 12 values when each row ends with an offset. For example
+ * {@code color-matrix 0 0 1 0 1 0 1 0 0 src dest} swaps the red and blue channels.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class ColorMatrixImage implements ImageProcessingCommand {
+
+  // Instance variables
+  private final String filename;
+  private final String newFilename;
+  private final PixelKernel kernel;
+
+  /**
+   * Constructs a ColorMatrixImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the matrix values,
+   *                    input filename, and output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public ColorMatrixImage(String[] inputs, PrintStream printStream) {
+    this.filename = inputs[inputs.length - 2];
+    this.newFilename = inputs[inputs.length - 1];
+    this.kernel = parseMatrix(
+        Arrays.asList(inputs).subList(1, inputs.length - 2), printStream);
+  }
+
+  /**
+   * Parse the values of a color matrix into a kernel.
+   *
+   * @param values      The 9 or 12 values of the matrix, row by row.
+   * @param printStream The print stream for displaying messages.
+   * @return The color matrix kernel, or null if the values are invalid.
+   */
+  static PixelKernel parseMatrix(List<String> values, PrintStream printStream) {
+    if (values.size() != 9 && values.size() != 12) {
+      printStream.println("A color matrix needs 9 values, or 12 with offsets.");
+      return null;
+    }
+    int columns = values.size() / 3;
+    double[][] matrix = new double[3][columns];
+    for (int k = 0; k < values.size(); k++) {
+      try {
+        matrix[k / columns][k % columns] = Double.parseDouble(values.get(k));
+      } catch (NumberFormatException e) {
+        printStream.println(values.get(k) + " cannot be parsed into a number.");
+        return null;
+      }
+    }
+    try {
+      return PixelKernel.colorMatrix(matrix);
+    } catch (IllegalArgumentException e) {
+      printStream.println("Invalid color matrix - coefficients must be within -16 to 16"
+          + " and offsets within -4096 to 4096.");
+      return null;
+    }
+  }
+
+  /**
+   * Executes the color matrix operation on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (kernel == null) {
+      return false;
+    }
+    return model.applyPipeline(kernel, filename, newFilename);
+  }
+}
@@ -6,7 +6,8 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 
 /**
- * Command class for compressing an image.
+ * Command class for compressing an image, for example {@code compress 90 src dest}, or
+ * {@code compress 90 src dest tile 256} to compress it in tiles of 256x256 pixels.
  * Implements the {@link ImageProcessingCommand} interface.
  */
 public class CompressImage implements ImageProcessingCommand {
@@ -15,13 +16,16 @@ public class CompressImage implements ImageProcessingCommand {
   private final String filename;
   private final String newFilename;
   private final PrintStream outputStream;
+  private final boolean tiled;
   private Integer percentage;
+  private Integer tileSize;
 
   /**
    * Constructs a CompressImage command with the provided inputs and print stream.
    *
    * @param inputs      An array of strings containing compression percentage,
-   *                    input filename, and output filename.
+   *                    input filename, output filename and optionally the tile keyword
+   *                    followed by the tile size.
    * @param printStream The print stream for displaying messages.
    */
   public CompressImage(String[] inputs, PrintStream printStream) {
@@ -33,6 +37,18 @@ public class CompressImage implements ImageProcessingCommand {
     }
     this.filename = inputs[2];
     this.newFilename = inputs[3];
+    this.tiled = inputs.length > 4;
+    if (tiled) {
+      if (!"tile".equals(inputs[4])) {
+        outputStream.println(inputs[4] + " is not a compress option. Use tile <size>.");
+      } else {
+        try {
+          this.tileSize = Integer.valueOf(inputs[5]);
+        } catch (NumberFormatException e) {
+          outputStream.println(inputs[5] + " cannot be parsed into Integer.");
+        }
+      }
+    }
   }
 
   /**
@@ -44,12 +60,15 @@ public class CompressImage implements ImageProcessingCommand {
    */
   @Override
   public boolean execute(ImageProcessingModel model, OutputStream out) {
-    if (percentage == null) {
+    if (percentage == null || (tiled && tileSize == null)) {
       return false;
     } else if (percentage < 0 || percentage > 100) {
       outputStream.println("Invalid percentage for compression. Please use 0 to 100.");
       return false;
     }
+    if (tiled) {
+      return model.compress(percentage, tileSize, filename, newFilename);
+    }
     return model.compress(percentage, filename, newFilename);
   }
 }
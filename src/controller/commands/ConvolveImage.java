@@ -0,0 +1,115 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+import utility.FileReadWriteUtility;
+import utility.FileReadWriteUtilityImpl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command class for convolving an image with a kernel read from a file, for example
+ * {@code convolve kernels/emboss.txt src dest mirror}. The kernel file holds one row of the
+ * kernel per line, with values separated by spaces or commas and written as decimals or
+ * fractions such as 1/16; lines starting with # are comments. The optional last argument picks
+ * how pixels past the edges are filled in: clamp (the default), mirror or wrap.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class ConvolveImage implements ImageProcessingCommand {
+
+  // Constants
+  private static final String DEFAULT_BORDER = "clamp";
+
+  // Instance variables
+  private final String kernelPath;
+  private final String filename;
+  private final String newFilename;
+  private final String border;
+  private final FileReadWriteUtility utility;
+  private final PrintStream outputStream;
+
+  /**
+   * Constructs a ConvolveImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the kernel file path, input filename,
+   *                    output filename and optionally the border mode.
+   * @param printStream The print stream for displaying messages.
+   */
+  public ConvolveImage(String[] inputs, PrintStream printStream) {
+    this.kernelPath = inputs[1];
+    this.filename = inputs[2];
+    this.newFilename = inputs[3];
+    this.border = inputs.length > 4 ? inputs[4] : DEFAULT_BORDER;
+    this.utility = new FileReadWriteUtilityImpl();
+    this.outputStream = printStream;
+  }
+
+  /**
+   * Read the kernel from its file.
+   *
+   * @return The rows of the kernel, or null if the file cannot be read or parsed.
+   */
+  private double[][] readKernel() {
+    if (!utility.doesFileExist(kernelPath)) {
+      outputStream.println("File " + kernelPath + " Not found");
+      return null;
+    }
+    String content = utility.getFileContent(kernelPath, outputStream).toString();
+    List<double[]> rows = new ArrayList<>();
+    for (String line : content.split("\\R")) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      String[] values = line.trim().split("[\\s,]+");
+      double[] row = new double[values.length];
+      for (int j = 0; j < values.length; j++) {
+        try {
+          row[j] = parseValue(values[j]);
+        } catch (NumberFormatException e) {
+          outputStream.println(values[j] + " cannot be parsed into a number.");
+          return null;
+        }
+      }
+      rows.add(row);
+    }
+    if (rows.isEmpty()) {
+      outputStream.println("Kernel file " + kernelPath + " is empty.");
+      return null;
+    }
+    return rows.toArray(new double[0][]);
+  }
+
+  /**
+   * Parse a kernel value written as a decimal or as a fraction.
+   *
+   * @param value The value.
+   * @return The parsed value.
+   * @throws NumberFormatException If the value is neither.
+   */
+  private static double parseValue(String value) {
+    int slash = value.indexOf('/');
+    if (slash < 0) {
+      return Double.parseDouble(value);
+    }
+    return Double.parseDouble(value.substring(0, slash))
+        / Double.parseDouble(value.substring(slash + 1));
+  }
+
+  /**
+   * Executes the convolution on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    double[][] kernel = readKernel();
+    if (kernel == null) {
+      return false;
+    }
+    return model.convolve(kernel, border, filename, newFilename);
+  }
+}
@@ -0,0 +1,96 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+import model.PixelKernel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command class for mapping every value of an image through a curve, for example
+ * {@code curves 0,0 64,40 192,220 255,255 src dest}. Each control point is an input and an
+ * output value separated by a comma, and values between control points are interpolated.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class CurvesImage implements ImageProcessingCommand {
+
+  // Constants
+  private static final int MIN_LEVEL = 0;
+  private static final int MAX_LEVEL = 255;
+
+  // Instance variables
+  private final String filename;
+  private final String newFilename;
+  private final PixelKernel kernel;
+
+  /**
+   * Constructs a CurvesImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the control points,
+   *                    input filename, and output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public CurvesImage(String[] inputs, PrintStream printStream) {
+    this.filename = inputs[inputs.length - 2];
+    this.newFilename = inputs[inputs.length - 1];
+    this.kernel = parseCurve(
+        Arrays.asList(inputs).subList(1, inputs.length - 2), printStream);
+  }
+
+  /**
+   * Parse control points into a curves kernel.
+   *
+   * @param points      The control points, each written as input,output.
+   * @param printStream The print stream for displaying messages.
+   * @return The curves kernel, or null if the control points are invalid.
+   */
+  static PixelKernel parseCurve(List<String> points, PrintStream printStream) {
+    if (points.size() < 2) {
+      printStream.println("Curves need at least 2 control points.");
+      return null;
+    }
+    int[] curveInputs = new int[points.size()];
+    int[] curveOutputs = new int[points.size()];
+    for (int i = 0; i < points.size(); i++) {
+      String[] values = points.get(i).split(",");
+      try {
+        if (values.length != 2) {
+          throw new NumberFormatException(points.get(i));
+        }
+        curveInputs[i] = Integer.parseInt(values[0]);
+        curveOutputs[i] = Integer.parseInt(values[1]);
+      } catch (NumberFormatException e) {
+        printStream.println(points.get(i) + " cannot be parsed into a control point.");
+        return null;
+      }
+      if (isLevelInRange(curveInputs[i]) || isLevelInRange(curveOutputs[i])
+          || (i > 0 && curveInputs[i] <= curveInputs[i - 1])) {
+        printStream.println("Invalid control point " + points.get(i) + " - values must be"
+            + " within 0 to 255 and inputs in ascending order.");
+        return null;
+      }
+    }
+    return PixelKernel.curves(curveInputs, curveOutputs);
+  }
+
+  private static boolean isLevelInRange(int level) {
+    return level < MIN_LEVEL || level > MAX_LEVEL;
+  }
+
+  /**
+   * Executes the curves operation on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (kernel == null) {
+      return false;
+    }
+    return model.applyPipeline(kernel, filename, newFilename);
+  }
+}
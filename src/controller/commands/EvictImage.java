@@ -0,0 +1,39 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Command class for spilling one image, or all images, from memory to disk.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class EvictImage implements ImageProcessingCommand {
+
+  // Instance variables
+  private final String filename;
+
+  /**
+   * Constructs an EvictImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the command and optionally the name of
+   *                    the image to evict; without a name every image is evicted.
+   * @param printStream The print stream for displaying messages.
+   */
+  public EvictImage(String[] inputs, PrintStream printStream) {
+    this.filename = inputs.length > 1 ? inputs[1] : null;
+  }
+
+  /**
+   * Executes the eviction using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    return model.evict(filename);
+  }
+}
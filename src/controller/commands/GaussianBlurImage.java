@@ -0,0 +1,51 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Command class for blurring an image with a gaussian of a given standard deviation, for
+ * example {@code gaussian-blur 2.5 src dest}. The blur takes as long for any standard
+ * deviation.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class GaussianBlurImage implements ImageProcessingCommand {
+
+  private final String filename;
+  private final String newFilename;
+  private Double sigma;
+
+  /**
+   * Constructs a GaussianBlurImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the standard deviation,
+   *                    input filename, and output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public GaussianBlurImage(String[] inputs, PrintStream printStream) {
+    try {
+      this.sigma = Double.parseDouble(inputs[1]);
+    } catch (NumberFormatException e) {
+      printStream.println(inputs[1] + " cannot be parsed into a number.");
+    }
+    this.filename = inputs[2];
+    this.newFilename = inputs[3];
+  }
+
+  /**
+   * Executes the gaussian blur on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (sigma == null) {
+      return false;
+    }
+    return model.gaussianBlur(sigma, filename, newFilename);
+  }
+}
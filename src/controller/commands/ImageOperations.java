@@ -23,14 +23,27 @@ public enum ImageOperations {
   HISTOGRAM(3),
   COLOR_CORRECT(3, 5),
   BRIGHTEN(4),
-  COMPRESS(4),
+  COMPRESS(4, 6),
   RGB_SPLIT(5),
   RGB_COMBINE(5),
-  LEVELS_ADJUST(6, 8);
+  LEVELS_ADJUST(6, 8),
+  MEMORY(1, 2),
+  EVICT(1, 2),
+  CURVES(true, 5),
+  COLOR_MATRIX(12, 15),
+  CONVOLVE(4, 5),
+  BOX_BLUR(4),
+  GAUSSIAN_BLUR(4),
+  MEDIAN(4),
+  STATS(2, 3),
+  PIPELINE(true, 4);
 
   // Array of valid lengths for each operation
   private final int[] validLengths;
 
+  // Whether the operation also takes any length above its valid length
+  private final boolean variableLength;
+
   /**
    * Constructs an ImageOperations enum constant with the provided valid lengths.
    *
@@ -38,6 +51,18 @@ public enum ImageOperations {
    */
   ImageOperations(int... validLengths) {
     this.validLengths = validLengths;
+    this.variableLength = false;
+  }
+
+  /**
+   * Constructs an ImageOperations enum constant taking a variable number of arguments.
+   *
+   * @param variableLength Always true.
+   * @param minLength      The smallest valid length for the operation.
+   */
+  ImageOperations(boolean variableLength, int minLength) {
+    this.validLengths = new int[]{minLength};
+    this.variableLength = variableLength;
   }
 
   /**
@@ -49,7 +74,7 @@ public enum ImageOperations {
    */
   public static boolean isValidCommand(ImageOperations command, int length) {
     for (int validLength : command.validLengths) {
-      if (validLength == length) {
+      if (validLength == length || (command.variableLength && length > validLength)) {
         return true;
       }
     }
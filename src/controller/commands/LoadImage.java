@@ -41,6 +41,7 @@ public class LoadImage implements ImageProcessingCommand {
   private static boolean isValidExtension(String extension) {
     switch (extension.toLowerCase()) {
       case "ppm":
+      case "hwc":
       case "jpeg":
       case "jpg":
       case "png":
@@ -99,6 +100,12 @@ public class LoadImage implements ImageProcessingCommand {
           return false;
         }
         return model.addImage(filename, image);
+      case "hwc":
+        image = utility.loadImageFromHWC(filepath);
+        if (image == null) {
+          return false;
+        }
+        return model.addImage(filename, image);
       case "jpg":
       case "png":
       case "jpeg":
@@ -0,0 +1,51 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Command class for denoising an image by replacing each value with the median of the square of
+ * values around it, for example {@code median 2 src dest}. The filter takes about as long for
+ * any radius.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class MedianImage implements ImageProcessingCommand {
+
+  private final String filename;
+  private final String newFilename;
+  private Integer radius;
+
+  /**
+   * Constructs a MedianImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the radius,
+   *                    input filename, and output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public MedianImage(String[] inputs, PrintStream printStream) {
+    try {
+      this.radius = Integer.parseInt(inputs[1]);
+    } catch (NumberFormatException e) {
+      printStream.println(inputs[1] + " cannot be parsed into Integer.");
+    }
+    this.filename = inputs[2];
+    this.newFilename = inputs[3];
+  }
+
+  /**
+   * Executes the median filter on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (radius == null) {
+      return false;
+    }
+    return model.median(radius, filename, newFilename);
+  }
+}
@@ -0,0 +1,61 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Command class for showing, and optionally changing, the memory budget for images.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class MemoryUsage implements ImageProcessingCommand {
+
+  private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+  // Instance variables
+  private final PrintStream outputStream;
+  private final boolean changeBudget;
+  private Long megabytes;
+
+  /**
+   * Constructs a MemoryUsage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the command and optionally the new
+   *                    budget in megabytes, where 0 removes the limit.
+   * @param printStream The print stream for displaying messages.
+   */
+  public MemoryUsage(String[] inputs, PrintStream printStream) {
+    this.outputStream = printStream;
+    this.changeBudget = inputs.length > 1;
+    if (changeBudget) {
+      try {
+        this.megabytes = Long.valueOf(inputs[1]);
+      } catch (NumberFormatException e) {
+        outputStream.println(inputs[1] + " cannot be parsed into Integer.");
+      }
+    }
+  }
+
+  /**
+   * Sets the new budget, if one was given, and prints the memory used by the images.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (changeBudget) {
+      if (megabytes == null) {
+        return false;
+      }
+      long budget = megabytes == 0 ? Long.MAX_VALUE : megabytes * BYTES_PER_MEGABYTE;
+      if (!model.setMemoryBudget(budget)) {
+        return false;
+      }
+    }
+    outputStream.println(model.getMemoryUsage());
+    return true;
+  }
+}
@@ -0,0 +1,164 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+import model.PixelKernel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command class for running a pipeline of per-pixel operations on an image in a single pass,
+ * for example {@code brighten 20 | sepia | luma-component src dest}. The stages are separated
+ * by "|" and the source and destination images follow the last stage. The supported stages are
+ * brighten, sepia, the greyscale components, levels-adjust, curves and color-matrix.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class PipelineImage implements ImageProcessingCommand {
+
+  // Constants
+  private static final int MIN_LEVEL = 0;
+  private static final int MAX_LEVEL = 255;
+
+  // Instance variables
+  private final String filename;
+  private final String newFilename;
+  private final PrintStream outputStream;
+  private final PixelKernel kernel;
+
+  /**
+   * Constructs a PipelineImage command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the word pipeline, the stages separated
+   *                    by "|", the input filename and the output filename.
+   * @param printStream The print stream for displaying messages.
+   */
+  public PipelineImage(String[] inputs, PrintStream printStream) {
+    this.outputStream = printStream;
+    this.filename = inputs[inputs.length - 2];
+    this.newFilename = inputs[inputs.length - 1];
+    this.kernel = compile(Arrays.copyOfRange(inputs, 1, inputs.length - 2));
+  }
+
+  /**
+   * Compile the stages of the pipeline into one chained kernel.
+   *
+   * @param stages The words of the stages, separated by "|".
+   * @return The chained kernel, or null if a stage is invalid.
+   */
+  private PixelKernel compile(String[] stages) {
+    PixelKernel compiled = null;
+    List<String> stage = new ArrayList<>();
+    for (int k = 0; k <= stages.length; k++) {
+      if (k < stages.length && !"|".equals(stages[k])) {
+        stage.add(stages[k]);
+        continue;
+      }
+      PixelKernel next = compileStage(stage);
+      if (next == null) {
+        return null;
+      }
+      compiled = compiled == null ? next : compiled.andThen(next);
+      stage.clear();
+    }
+    return compiled;
+  }
+
+  /**
+   * Compile one stage of the pipeline.
+   *
+   * @param stage The operation of the stage followed by its arguments.
+   * @return The kernel of the stage, or null if the stage is invalid.
+   */
+  private PixelKernel compileStage(List<String> stage) {
+    if (stage.isEmpty()) {
+      outputStream.println("Pipeline stages cannot be empty.");
+      return null;
+    }
+    String name = stage.get(0);
+    ImageOperations operation = ImageOperations.getOperation(
+        name.toUpperCase().replace('-', '_'));
+    if (operation == null) {
+      outputStream.println(name + " cannot be used in a pipeline.");
+      return null;
+    }
+    switch (operation) {
+      case BRIGHTEN:
+        Integer[] increments = parseArguments(stage, 1);
+        return increments == null ? null : PixelKernel.brighten(increments[0]);
+      case SEPIA:
+        return parseArguments(stage, 0) == null ? null : PixelKernel.sepia();
+      case RED_COMPONENT:
+      case GREEN_COMPONENT:
+      case BLUE_COMPONENT:
+      case VALUE_COMPONENT:
+      case INTENSITY_COMPONENT:
+      case LUMA_COMPONENT:
+        return parseArguments(stage, 0) == null ? null : PixelKernel.component(name);
+      case COLOR_MATRIX:
+        return ColorMatrixImage.parseMatrix(stage.subList(1, stage.size()), outputStream);
+      case CURVES:
+        return CurvesImage.parseCurve(stage.subList(1, stage.size()), outputStream);
+      case LEVELS_ADJUST:
+        Integer[] levels = parseArguments(stage, 3);
+        if (levels == null) {
+          return null;
+        }
+        if (isLevelInRange(levels[0]) || isLevelInRange(levels[1]) || isLevelInRange(levels[2])
+            || levels[0] >= levels[1] || levels[1] >= levels[2]) {
+          outputStream.println("Invalid value for black/mid/white - value must be in ascending"
+              + " order of B<M<W and within 0 to 255.");
+          return null;
+        }
+        return PixelKernel.levels(levels[0], levels[1], levels[2]);
+      default:
+        outputStream.println(name + " cannot be used in a pipeline.");
+        return null;
+    }
+  }
+
+  /**
+   * Parse the integer arguments of a stage.
+   *
+   * @param stage The operation of the stage followed by its arguments.
+   * @param count The number of arguments the operation takes.
+   * @return The arguments, or null if there are not exactly that many integers.
+   */
+  private Integer[] parseArguments(List<String> stage, int count) {
+    if (stage.size() != count + 1) {
+      outputStream.println(stage.get(0) + " takes " + count + " arguments in a pipeline.");
+      return null;
+    }
+    Integer[] arguments = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      try {
+        arguments[i] = Integer.parseInt(stage.get(i + 1));
+      } catch (NumberFormatException e) {
+        outputStream.println(stage.get(i + 1) + " cannot be parsed into Integer.");
+        return null;
+      }
+    }
+    return arguments;
+  }
+
+  private boolean isLevelInRange(Integer level) {
+    return level < MIN_LEVEL || level > MAX_LEVEL;
+  }
+
+  /**
+   * Executes the pipeline on the image using the provided model.
+   *
+   * @param model The image processing model to apply the command to.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the operation was successful; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (kernel == null) {
+      return false;
+    }
+    return model.applyPipeline(kernel, filename, newFilename);
+  }
+}
@@ -41,6 +41,7 @@ public class SaveImage implements ImageProcessingCommand {
   private static boolean isValidExtension(String extension) {
     switch (extension.toLowerCase()) {
       case "ppm":
+      case "hwc":
       case "jpeg":
       case "jpg":
       case "png":
@@ -101,6 +102,9 @@ public class SaveImage implements ImageProcessingCommand {
       case "ppm":
         status = utility.savePPMImage(outputFileName, image);
         return status;
+      case "hwc":
+        status = utility.saveHWCImage(outputFileName, image);
+        return status;
       default:
         return false;
     }
@@ -0,0 +1,160 @@
+package controller.commands;
+
+import model.ImageProcessingModel;
+import model.ImageStatistics;
+import utility.FileReadWriteUtility;
+import utility.FileReadWriteUtilityImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command class for reporting the statistics of an image: the minimum, maximum, mean, standard
+ * deviation, percentiles and peak of every channel, printed as text or written with the
+ * histograms to a JSON file.
+ * Implements the {@link ImageProcessingCommand} interface.
+ */
+public class Statistics implements ImageProcessingCommand {
+
+  private static final String[] CHANNELS = {"red", "green", "blue"};
+
+  private static final int[] PERCENTILES = {1, 5, 25, 50, 75, 95, 99};
+
+  // Instance variables
+  private final String filename;
+  private final String outputFileName;
+  private final FileReadWriteUtility utility;
+  private final PrintStream outputStream;
+
+  /**
+   * Constructs a Statistics command with the provided inputs and print stream.
+   *
+   * @param inputs      An array of strings containing the command, the image name and
+   *                    optionally the path of the JSON file to write the statistics to.
+   * @param printStream The print stream for displaying messages.
+   */
+  public Statistics(String[] inputs, PrintStream printStream) {
+    this.filename = inputs[1];
+    this.outputFileName = inputs.length > 2 ? inputs[2] : null;
+    this.utility = new FileReadWriteUtilityImpl();
+    this.outputStream = printStream;
+  }
+
+  /**
+   * Prints the statistics of the image, or writes them to the JSON file if one was given.
+   *
+   * @param model The image processing model holding the image.
+   * @param out   The output stream for displaying messages.
+   * @return `true` if the statistics were reported; `false` otherwise.
+   */
+  @Override
+  public boolean execute(ImageProcessingModel model, OutputStream out) {
+    if (outputFileName != null) {
+      if (!outputFileName.toLowerCase().endsWith(".json")) {
+        outputStream.println("Statistics can only be written to a .json file.");
+        return false;
+      }
+      if (utility.doesDirectoryExist(outputFileName)) {
+        outputStream.print("Invalid Directory Path '" + outputFileName + "'.\n");
+        return false;
+      }
+    }
+
+    ImageStatistics statistics = model.getStatistics(filename);
+    if (statistics == null) {
+      return false;
+    }
+
+    if (outputFileName == null) {
+      outputStream.print(toText(statistics));
+      return true;
+    }
+    try {
+      Files.write(Paths.get(outputFileName), toJson(statistics).getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      outputStream.println("Could not write " + outputFileName + ".");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Describe the statistics with a line for the image and one for each channel.
+   */
+  private String toText(ImageStatistics statistics) {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format(Locale.ROOT, "%s: %d pixels%n", filename,
+        statistics.getPixelCount()));
+    for (int channel = 0; channel < 3; channel++) {
+      text.append(String.format(Locale.ROOT,
+          "%s: min %d, max %d, mean %.2f, standard deviation %.2f, peak %d",
+          CHANNELS[channel], statistics.getMin(channel), statistics.getMax(channel),
+          statistics.getMean(channel), statistics.getStandardDeviation(channel),
+          statistics.getPeak(channel)));
+      for (int percentile : PERCENTILES) {
+        text.append(String.format(Locale.ROOT, ", p%d %d", percentile,
+            statistics.getPercentile(channel, percentile)));
+      }
+      text.append(System.lineSeparator());
+    }
+    return text.toString();
+  }
+
+  /**
+   * Write the statistics as a JSON object, with the statistics and histogram of each channel
+   * under its name.
+   */
+  private String toJson(ImageStatistics statistics) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"image\": \"").append(escape(filename)).append("\",\n");
+    json.append("  \"pixels\": ").append(statistics.getPixelCount()).append(",\n");
+    json.append("  \"channels\": {\n");
+    for (int channel = 0; channel < 3; channel++) {
+      json.append("    \"").append(CHANNELS[channel]).append("\": {\n");
+      json.append("      \"min\": ").append(statistics.getMin(channel)).append(",\n");
+      json.append("      \"max\": ").append(statistics.getMax(channel)).append(",\n");
+      json.append("      \"mean\": ").append(statistics.getMean(channel)).append(",\n");
+      json.append("      \"standardDeviation\": ")
+          .append(statistics.getStandardDeviation(channel)).append(",\n");
+      json.append("      \"peak\": ").append(statistics.getPeak(channel)).append(",\n");
+      json.append("      \"percentiles\": {");
+      for (int k = 0; k < PERCENTILES.length; k++) {
+        json.append(k == 0 ? "" : ", ").append('"').append(PERCENTILES[k]).append("\": ")
+            .append(statistics.getPercentile(channel, PERCENTILES[k]));
+      }
+      json.append("},\n");
+      json.append("      \"histogram\": [");
+      for (int value = 0; value < 256; value++) {
+        json.append(value == 0 ? "" : ", ").append(statistics.getFrequency(channel, value));
+      }
+      json.append("]\n");
+      json.append("    }").append(channel < 2 ? "," : "").append('\n');
+    }
+    json.append("  }\n");
+    json.append("}\n");
+    return json.toString();
+  }
+
+  /**
+   * Escape the characters of a string that cannot appear as they are in a JSON string.
+   */
+  private static String escape(String value) {
+    StringBuilder escaped = new StringBuilder();
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        escaped.append('\\').append(c);
+      } else if (c < 0x20) {
+        escaped.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+}
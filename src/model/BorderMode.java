@@ -0,0 +1,71 @@
+package model;
+
+/**
+ * How a convolution fills in the pixels past the edges of an image.
+ */
+public enum BorderMode {
+
+  /**
+   * Repeat the edge pixels outwards.
+   */
+  CLAMP {
+    @Override
+    int map(int index, int size) {
+      return Math.min(Math.max(index, 0), size - 1);
+    }
+  },
+
+  /**
+   * Reflect the image about its edge pixels, so the row above the first is the second.
+   */
+  MIRROR {
+    @Override
+    int map(int index, int size) {
+      if (size == 1) {
+        return 0;
+      }
+      int period = 2 * (size - 1);
+      int position = Math.floorMod(index, period);
+      return position < size ? position : period - position;
+    }
+  },
+
+  /**
+   * Continue with the opposite side of the image, as if it were tiled.
+   */
+  WRAP {
+    @Override
+    int map(int index, int size) {
+      return Math.floorMod(index, size);
+    }
+  };
+
+  /**
+   * Map a row or column index, possibly past an edge, to the index of the pixel used for it.
+   *
+   * @param index The index, which may be negative or at least the size.
+   * @param size  The number of rows or columns of the image.
+   * @return The index of the source row or column, in [0, size).
+   */
+  abstract int map(int index, int size);
+
+  /**
+   * Get the border mode with the given name, ignoring case.
+   *
+   * @param name "clamp", "mirror" or "wrap".
+   * @return The border mode.
+   * @throws IllegalArgumentException If there is no border mode with that name.
+   */
+  public static BorderMode fromName(String name) {
+    switch (name.toLowerCase()) {
+      case "clamp":
+        return CLAMP;
+      case "mirror":
+        return MIRROR;
+      case "wrap":
+        return WRAP;
+      default:
+        throw new IllegalArgumentException("Unknown border mode " + name);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package model;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts between {@link ImageMetadata} and {@link BufferedImage} without going through
+ * per-pixel {@link java.awt.Color} objects.
+ * Images handed out by {@link #toBufferedImage(ImageMetadata)} are backed directly by the
+ * channel planes of the metadata, and images coming in are ingested with one bulk pass over
+ * their raster data.
+ */
+public final class BufferedImageBridge {
+
+  private static final ColorModel PLANAR_RGB = new ComponentColorModel(
+      ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+      Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+  private BufferedImageBridge() {
+  }
+
+  /**
+   * Wraps the pixels of an image in a BufferedImage. Heap images share their pixel buffer
+   * with the returned image, so it must be treated as read-only; images held elsewhere are
+   * copied to the heap in one pass.
+   *
+   * @param imageMetadata The image to wrap.
+   * @return A BufferedImage backed by the channel planes of the image.
+   */
+  public static BufferedImage toBufferedImage(ImageMetadata imageMetadata) {
+    int width = imageMetadata.getWidth();
+    int height = imageMetadata.getHeight();
+    byte[][] planes = ImageStore.HEAP.adopt(imageMetadata).planes();
+    if (planes == null) {
+      // a heap image held as wavelet coefficients has no planes of its own
+      planes = ImageStore.HEAP.copy(imageMetadata).planes();
+    }
+    DataBuffer buffer = new DataBufferByte(planes, width * height);
+    SampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_BYTE, width, height,
+        width, new int[]{0, 1, 2}, new int[]{0, 0, 0});
+    WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+    return new BufferedImage(PLANAR_RGB, raster, false, null);
+  }
+
+  /**
+   * Copies the pixels of a BufferedImage into a new image. Packed integer and interleaved or
+   * banded byte rasters, such as TYPE_INT_RGB, TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR, are read
+   * straight from their data buffers; any other image is read a row at a time through
+   * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+   *
+   * @param image The image to copy.
+   * @param store The store to create the new image in.
+   * @return A new ImageMetadata holding the red, green and blue values of the image.
+   */
+  public static ImageMetadata fromBufferedImage(BufferedImage image, ImageStore store) {
+    ImageMetadata imageMetadata = store.create(image.getWidth(), image.getHeight());
+
+    if (!readPacked(image, imageMetadata) && !readComponents(image, imageMetadata)) {
+      readGeneric(image, imageMetadata);
+    }
+    return imageMetadata;
+  }
+
+  /**
+   * Reads an image stored as one packed integer per pixel with 8-bit color masks.
+   *
+   * @param image  The image to read.
+   * @param target The image receiving the channel values.
+   * @return True if the image had a packed layout and was read, false otherwise.
+   */
+  private static boolean readPacked(BufferedImage image, ImageMetadata target) {
+    WritableRaster raster = image.getRaster();
+    if (!(image.getColorModel() instanceof DirectColorModel)
+        || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+        || !(raster.getDataBuffer() instanceof DataBufferInt)) {
+      return false;
+    }
+    DirectColorModel colorModel = (DirectColorModel) image.getColorModel();
+    if (colorModel.isAlphaPremultiplied()
+        || !colorModel.getColorSpace().isCS_sRGB()) {
+      return false;
+    }
+    int[] masks = {colorModel.getRedMask(), colorModel.getGreenMask(), colorModel.getBlueMask()};
+    int[] shifts = new int[3];
+    for (int channel = 0; channel < 3; channel++) {
+      shifts[channel] = Integer.numberOfTrailingZeros(masks[channel]);
+      if (masks[channel] >>> shifts[channel] != 0xFF) {
+        return false;
+      }
+    }
+
+    SinglePixelPackedSampleModel sampleModel =
+        (SinglePixelPackedSampleModel) raster.getSampleModel();
+    DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+    int[] data = buffer.getData();
+    int stride = sampleModel.getScanlineStride();
+    int width = image.getWidth();
+    int originX = -raster.getSampleModelTranslateX();
+    int originY = -raster.getSampleModelTranslateY();
+    byte[][] rows = new byte[3][width];
+
+    for (int i = 0; i < image.getHeight(); i++) {
+      int source = buffer.getOffset() + (originY + i) * stride + originX;
+      for (int j = 0; j < width; j++) {
+        int pixel = data[source + j];
+        rows[0][j] = (byte) (pixel >>> shifts[0]);
+        rows[1][j] = (byte) (pixel >>> shifts[1]);
+        rows[2][j] = (byte) (pixel >>> shifts[2]);
+      }
+      for (int channel = 0; channel < 3; channel++) {
+        target.writeRow(channel, i, rows[channel]);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads an image stored as one byte per sRGB component, either interleaved or banded.
+   *
+   * @param image  The image to read.
+   * @param target The image receiving the channel values.
+   * @return True if the image had a byte component layout and was read, false otherwise.
+   */
+  private static boolean readComponents(BufferedImage image, ImageMetadata target) {
+    WritableRaster raster = image.getRaster();
+    if (!(image.getColorModel() instanceof ComponentColorModel)
+        || !(raster.getSampleModel() instanceof ComponentSampleModel)
+        || !(raster.getDataBuffer() instanceof DataBufferByte)) {
+      return false;
+    }
+    ColorModel colorModel = image.getColorModel();
+    if (colorModel.isAlphaPremultiplied()
+        || !colorModel.getColorSpace().isCS_sRGB()
+        || colorModel.getNumColorComponents() != 3) {
+      return false;
+    }
+
+    ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+    DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+    int[] bandOffsets = sampleModel.getBandOffsets();
+    int[] bankIndices = sampleModel.getBankIndices();
+    int pixelStride = sampleModel.getPixelStride();
+    int stride = sampleModel.getScanlineStride();
+    int width = image.getWidth();
+    int originX = -raster.getSampleModelTranslateX();
+    int originY = -raster.getSampleModelTranslateY();
+    byte[] row = new byte[width];
+
+    for (int channel = 0; channel < 3; channel++) {
+      byte[] data = buffer.getData(bankIndices[channel]);
+      int base = buffer.getOffsets()[bankIndices[channel]] + bandOffsets[channel];
+      for (int i = 0; i < image.getHeight(); i++) {
+        int source = base + (originY + i) * stride + originX * pixelStride;
+        if (pixelStride == 1) {
+          System.arraycopy(data, source, row, 0, width);
+        } else {
+          for (int j = 0; j < width; j++) {
+            row[j] = data[source + j * pixelStride];
+          }
+        }
+        target.writeRow(channel, i, row);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads any image a row at a time through its color model.
+   *
+   * @param image  The image to read.
+   * @param target The image receiving the channel values.
+   */
+  private static void readGeneric(BufferedImage image, ImageMetadata target) {
+    int width = image.getWidth();
+    int[] row = new int[width];
+    byte[][] rows = new byte[3][width];
+    for (int i = 0; i < image.getHeight(); i++) {
+      image.getRGB(0, i, width, 1, row, 0, width);
+      for (int j = 0; j < width; j++) {
+        int pixel = row[j];
+        rows[0][j] = (byte) (pixel >> 16);
+        rows[1][j] = (byte) (pixel >> 8);
+        rows[2][j] = (byte) pixel;
+      }
+      for (int channel = 0; channel < 3; channel++) {
+        target.writeRow(channel, i, rows[channel]);
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The forward Haar wavelet coefficients of the images compress was last run on, so compressing
+ * one of them again at another percentage only looks up a threshold and transforms back.
+ * The coefficients are kept under the name of their source image together with the snapshot
+ * they were computed from, and are dropped as soon as the name is overwritten. The least
+ * recently used coefficients are dropped to keep the cache within a limit of bytes of its own,
+ * apart from the memory budget of the images.
+ * The cache is safe for use from several threads; the coefficients it holds are never modified.
+ */
+final class CoefficientCache {
+
+  private final LinkedHashMap<String, WaveletCompression.Transform> entries;
+  private long limit;
+  private long bytes;
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param limit The number of bytes of coefficients to keep, 0 to keep none.
+   */
+  CoefficientCache(long limit) {
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.limit = limit;
+  }
+
+  /**
+   * Get the coefficients of an image, if they are cached.
+   *
+   * @param name            The name of the image.
+   * @param image           The snapshot of the image stored under the name.
+   * @param singlePrecision Whether the coefficients are wanted in float instead of double.
+   * @return The coefficients, or null if those of this snapshot in this precision are not
+   *         cached.
+   */
+  synchronized WaveletCompression.Transform get(String name, ImageMetadata image,
+                                                boolean singlePrecision) {
+    WaveletCompression.Transform transform = entries.get(name);
+    if (transform == null || transform.getSource() != image
+        || transform.isSinglePrecision() != singlePrecision) {
+      return null;
+    }
+    return transform;
+  }
+
+  /**
+   * Cache the coefficients of an image, unless they are larger than the limit, dropping the
+   * least recently used coefficients until they fit.
+   *
+   * @param name      The name of the image.
+   * @param transform The coefficients of the snapshot of the image stored under the name.
+   */
+  synchronized void put(String name, WaveletCompression.Transform transform) {
+    if (!fits(transform.getSizeInBytes())) {
+      return;
+    }
+    invalidate(name);
+    entries.put(name, transform);
+    bytes += transform.getSizeInBytes();
+    trim();
+  }
+
+  /**
+   * Check whether coefficients of a given size can be cached at all.
+   *
+   * @param size The number of bytes of the coefficients.
+   * @return True if they are no larger than the limit.
+   */
+  synchronized boolean fits(long size) {
+    return size <= limit;
+  }
+
+  /**
+   * Drop the coefficients cached under a name, once it is overwritten or removed.
+   *
+   * @param name The name of the image.
+   */
+  synchronized void invalidate(String name) {
+    WaveletCompression.Transform transform = entries.remove(name);
+    if (transform != null) {
+      bytes -= transform.getSizeInBytes();
+    }
+  }
+
+  /**
+   * Drop every cached coefficient.
+   */
+  synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Set the number of bytes of coefficients to keep, dropping the least recently used ones
+   * that no longer fit.
+   *
+   * @param limit The number of bytes, 0 to keep none.
+   */
+  synchronized void setLimit(long limit) {
+    this.limit = limit;
+    trim();
+  }
+
+  synchronized long getLimit() {
+    return limit;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long getSizeInBytes() {
+    return bytes;
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<String, WaveletCompression.Transform>> iterator =
+        entries.entrySet().iterator();
+    while (bytes > limit && iterator.hasNext()) {
+      bytes -= iterator.next().getValue().getSizeInBytes();
+      iterator.remove();
+    }
+  }
+}
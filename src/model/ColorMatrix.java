@@ -0,0 +1,97 @@
+package model;
+
+/**
+ * A kernel multiplying every pixel by a 3x3 color matrix, optionally followed by a column of
+ * offsets, in integer fixed-point arithmetic. The result is clamped to [0, 255].
+ * The coefficients are scaled by the smallest denominator D up to {@value #MAX_DENOMINATOR}
+ * that makes them all integers, so decimal matrices such as sepia and luma are computed
+ * exactly: each result is the exact value of the matrix product rounded down, whereas double
+ * arithmetic sometimes lands just below a whole number. Dividing by D is folded into the
+ * coefficients as a multiplication by a {@value #SHIFT} bit reciprocal, so a pixel costs nine
+ * multiplications, additions and three shifts. Matrices with no such denominator are scaled
+ * by 2^16 and rounded.
+ */
+final class ColorMatrix implements PixelKernel {
+  private static final int SHIFT = 48;
+  private static final int MAX_DENOMINATOR = 10000;
+  private static final double MAX_COEFFICIENT = 16;
+  private static final double MAX_OFFSET = 4096;
+  private static final double EPSILON = 1e-9;
+
+  private final long[] coefficients;
+
+  /**
+   * Constructs a color matrix kernel.
+   *
+   * @param matrix Three rows of three coefficients, each optionally followed by an offset, so
+   *               that the red result is {@code matrix[0][0] * r + matrix[0][1] * g
+   *               + matrix[0][2] * b + matrix[0][3]}.
+   * @throws IllegalArgumentException If the matrix does not have that shape, or a coefficient
+   *                                  is larger than 16 or an offset larger than 4096.
+   */
+  ColorMatrix(double[][] matrix) {
+    if (matrix.length != 3) {
+      throw new IllegalArgumentException("A color matrix needs 3 rows");
+    }
+    for (double[] row : matrix) {
+      if (row.length != 3 && row.length != 4) {
+        throw new IllegalArgumentException("A color matrix row needs 3 or 4 values");
+      }
+      for (int j = 0; j < row.length; j++) {
+        if (!(Math.abs(row[j]) <= (j == 3 ? MAX_OFFSET : MAX_COEFFICIENT))) {
+          throw new IllegalArgumentException("Color matrix value out of range: " + row[j]);
+        }
+      }
+    }
+
+    long denominator = denominator(matrix);
+    // ceil(2^SHIFT / D), so that floor(s * reciprocal / 2^SHIFT) == floor(s / D) for the sums
+    // s the coefficients can produce
+    long reciprocal = ((1L << SHIFT) + denominator - 1) / denominator;
+    coefficients = new long[12];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < matrix[i].length; j++) {
+        coefficients[i * 4 + j] = Math.round(matrix[i][j] * denominator) * reciprocal;
+      }
+    }
+  }
+
+  /**
+   * Find the smallest denominator making every value of a matrix an integer.
+   *
+   * @param matrix The matrix.
+   * @return The denominator, or 2^16 if there is none up to the maximum.
+   */
+  private static long denominator(double[][] matrix) {
+    for (int denominator = 1; denominator <= MAX_DENOMINATOR; denominator++) {
+      boolean whole = true;
+      for (double[] row : matrix) {
+        for (double value : row) {
+          double scaled = value * denominator;
+          whole &= Math.abs(scaled - Math.rint(scaled)) < EPSILON;
+        }
+      }
+      if (whole) {
+        return denominator;
+      }
+    }
+    return 1 << 16;
+  }
+
+  @Override
+  public void apply(int[] pixels, int from, int to) {
+    long[] c = coefficients;
+    for (int k = from; k < to; k += 3) {
+      long r = pixels[k];
+      long g = pixels[k + 1];
+      long b = pixels[k + 2];
+      pixels[k] = clamp((c[0] * r + c[1] * g + c[2] * b + c[3]) >> SHIFT);
+      pixels[k + 1] = clamp((c[4] * r + c[5] * g + c[6] * b + c[7]) >> SHIFT);
+      pixels[k + 2] = clamp((c[8] * r + c[9] * g + c[10] * b + c[11]) >> SHIFT);
+    }
+  }
+
+  private static int clamp(long value) {
+    return (int) Math.min(255, Math.max(0, value));
+  }
+}
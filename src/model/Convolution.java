@@ -0,0 +1,449 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A convolution with a kernel of any odd width and height. The pixels past the edges of the
+ * image are filled in according to a {@link BorderMode}, so every pixel of the result is
+ * computed. Kernels that are the outer product of a column and a row, such as blur, are
+ * detected and applied as a horizontal pass followed by a vertical one, which costs
+ * width + height multiplications per value instead of width * height.
+ * Each tile is gathered into a padded buffer before it is convolved, with the border handled
+ * once per row and column of the buffer, so the convolution loops never test for edges.
+ * Large kernels that are not separable are applied through fast Fourier transforms of the
+ * padded buffer instead, whose cost hardly depends on the size of the kernel. Only the part of
+ * the circular convolution not touched by wrap-around is kept, so every tile is convolved with
+ * memory bounded by one transform, however large the image.
+ * The direct loops come in two forms that give the same values bit for bit. The vectorized
+ * form accumulates a whole row of the tile for one kernel value at a time. Its inner loop is a
+ * plain multiply-add over consecutive array elements, which the JIT compiles to SIMD
+ * instructions. The scalar form computes one pixel at a time and is kept as a fallback for
+ * runtimes that do not vectorize loops.
+ */
+final class Convolution {
+
+  /**
+   * The default number of kernel values from which kernels that are not separable are applied
+   * through Fourier transforms, the 17x17 kernel. ConvolutionBenchmark puts the crossover with
+   * the vectorized direct loops between 15x15 and 17x17 kernels.
+   */
+  static final int FOURIER_THRESHOLD = 17 * 17;
+
+  private static final double SEPARABLE_TOLERANCE = 1e-12;
+  private static final double ROUNDING_TOLERANCE = 1e-6;
+
+  private final double[][] kernel;
+  private final int radiusX;
+  private final int radiusY;
+  private final BorderMode border;
+  private final double[] column;
+  private final double[] row;
+  private final boolean fourier;
+  private final boolean vectorized;
+  private final Map<Long, Spectrum> spectra = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a convolution using Fourier transforms for kernels from the default size.
+   *
+   * @param kernel The kernel, as rows of equal, odd length, and an odd number of rows.
+   * @param border How pixels past the edges of the image are filled in.
+   * @throws IllegalArgumentException If the kernel does not have that shape.
+   */
+  Convolution(double[][] kernel, BorderMode border) {
+    this(kernel, border, FOURIER_THRESHOLD, true);
+  }
+
+  /**
+   * Constructs a convolution.
+   *
+   * @param kernel           The kernel, as rows of equal, odd length, and an odd number of rows.
+   * @param border           How pixels past the edges of the image are filled in.
+   * @param fourierThreshold The number of kernel values from which a kernel that is not
+   *                         separable is applied through Fourier transforms.
+   * @param vectorized       Whether the direct loops run in their vectorized form.
+   * @throws IllegalArgumentException If the kernel does not have that shape.
+   */
+  Convolution(double[][] kernel, BorderMode border, int fourierThreshold, boolean vectorized) {
+    if (kernel.length % 2 == 0 || kernel[0].length % 2 == 0) {
+      throw new IllegalArgumentException("A kernel needs an odd number of rows and columns");
+    }
+    for (double[] kernelRow : kernel) {
+      if (kernelRow.length != kernel[0].length) {
+        throw new IllegalArgumentException("Every row of a kernel needs the same length");
+      }
+    }
+    this.kernel = kernel;
+    this.radiusY = kernel.length / 2;
+    this.radiusX = kernel[0].length / 2;
+    this.border = border;
+
+    double[][] factors = factor(kernel);
+    this.column = factors == null ? null : factors[0];
+    this.row = factors == null ? null : factors[1];
+    this.fourier = factors == null && kernel.length * kernel[0].length >= fourierThreshold;
+    this.vectorized = vectorized;
+  }
+
+  /**
+   * Split a kernel into a column and a row whose outer product is the kernel.
+   *
+   * @param kernel The kernel.
+   * @return The column and the row, or null if the kernel is not separable.
+   */
+  private static double[][] factor(double[][] kernel) {
+    int pivotRow = 0;
+    int pivotColumn = 0;
+    for (int i = 0; i < kernel.length; i++) {
+      for (int j = 0; j < kernel[0].length; j++) {
+        if (Math.abs(kernel[i][j]) > Math.abs(kernel[pivotRow][pivotColumn])) {
+          pivotRow = i;
+          pivotColumn = j;
+        }
+      }
+    }
+    double pivot = kernel[pivotRow][pivotColumn];
+    if (pivot == 0) {
+      return null;
+    }
+    double[] column = new double[kernel.length];
+    double[] row = new double[kernel[0].length];
+    for (int i = 0; i < kernel.length; i++) {
+      column[i] = kernel[i][pivotColumn];
+    }
+    for (int j = 0; j < kernel[0].length; j++) {
+      row[j] = kernel[pivotRow][j] / pivot;
+    }
+    double tolerance = Math.abs(pivot) * SEPARABLE_TOLERANCE;
+    for (int i = 0; i < kernel.length; i++) {
+      for (int j = 0; j < kernel[0].length; j++) {
+        if (Math.abs(column[i] * row[j] - kernel[i][j]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new double[][]{column, row};
+  }
+
+  /**
+   * Check whether the kernel is applied as two one-dimensional passes.
+   *
+   * @return True if the kernel is separable.
+   */
+  boolean isSeparable() {
+    return row != null;
+  }
+
+  /**
+   * Check whether the kernel is applied through Fourier transforms.
+   *
+   * @return True if the kernel is applied through Fourier transforms.
+   */
+  boolean isFourier() {
+    return fourier;
+  }
+
+  /**
+   * Compute the result of the convolution for one tile of an image.
+   *
+   * @param image  The image to convolve.
+   * @param tile   The tile to compute.
+   * @param pixels The buffer receiving the interleaved result values of the tile.
+   */
+  void apply(ImageMetadata image, Tile tile, int[] pixels) {
+    int paddedWidth = tile.getWidth() + 2 * radiusX;
+    int paddedHeight = tile.getHeight() + 2 * radiusY;
+    int[] padded = gather(image, tile, paddedWidth, paddedHeight);
+    if (isSeparable() && vectorized) {
+      applySeparableRows(tile, padded, paddedWidth, paddedHeight, pixels);
+    } else if (isSeparable()) {
+      applySeparable(tile, padded, paddedWidth, paddedHeight, pixels);
+    } else if (fourier) {
+      applyFourier(tile, padded, paddedWidth, paddedHeight, pixels);
+    } else if (vectorized) {
+      applyFullRows(tile, padded, paddedWidth, pixels);
+    } else {
+      applyFull(tile, padded, paddedWidth, pixels);
+    }
+  }
+
+  /**
+   * Read a tile with a margin of the kernel radius around it, filling in the margin past the
+   * edges of the image according to the border mode. Runs of rows and columns that map to
+   * consecutive source rows and columns are read as rectangles, so an interior tile is a single
+   * read.
+   */
+  private int[] gather(ImageMetadata image, Tile tile, int paddedWidth, int paddedHeight) {
+    int[] rows = new int[paddedHeight];
+    int[] columns = new int[paddedWidth];
+    for (int i = 0; i < paddedHeight; i++) {
+      rows[i] = border.map(tile.getY() - radiusY + i, image.getHeight());
+    }
+    for (int j = 0; j < paddedWidth; j++) {
+      columns[j] = border.map(tile.getX() - radiusX + j, image.getWidth());
+    }
+
+    int[] padded = new int[paddedWidth * paddedHeight * 3];
+    int[] block = null;
+    for (int i = 0; i < paddedHeight; ) {
+      int rowRun = run(rows, i);
+      for (int j = 0; j < paddedWidth; ) {
+        int columnRun = run(columns, j);
+        Tile source = new Tile(columns[j], rows[i], columnRun, rowRun);
+        if (block == null || block.length < source.getPixelCount() * 3) {
+          block = new int[source.getPixelCount() * 3];
+        }
+        image.readTile(source, block);
+        for (int y = 0; y < rowRun; y++) {
+          System.arraycopy(block, y * columnRun * 3,
+              padded, ((i + y) * paddedWidth + j) * 3, columnRun * 3);
+        }
+        j += columnRun;
+      }
+      i += rowRun;
+    }
+    return padded;
+  }
+
+  /**
+   * Get the length of the run of consecutive source indices starting at a position.
+   */
+  private static int run(int[] indices, int start) {
+    int end = start + 1;
+    while (end < indices.length && indices[end] == indices[end - 1] + 1) {
+      end++;
+    }
+    return end - start;
+  }
+
+  private void applyFull(Tile tile, int[] padded, int paddedWidth, int[] pixels) {
+    int kernelWidth = kernel[0].length;
+    int k = 0;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      for (int j = 0; j < tile.getWidth(); j++, k += 3) {
+        double red = 0.0;
+        double green = 0.0;
+        double blue = 0.0;
+        for (int y = 0; y < kernel.length; y++) {
+          int base = ((i + y) * paddedWidth + j) * 3;
+          double[] kernelRow = kernel[y];
+          for (int x = 0; x < kernelWidth; x++) {
+            int index = base + x * 3;
+            double value = kernelRow[x];
+            red += padded[index] * value;
+            green += padded[index + 1] * value;
+            blue += padded[index + 2] * value;
+          }
+        }
+        pixels[k] = clamp(red);
+        pixels[k + 1] = clamp(green);
+        pixels[k + 2] = clamp(blue);
+      }
+    }
+  }
+
+  private void applySeparable(Tile tile, int[] padded, int paddedWidth, int paddedHeight,
+                              int[] pixels) {
+    int rowLength = tile.getWidth() * 3;
+    double[] horizontal = new double[paddedHeight * rowLength];
+    for (int i = 0; i < paddedHeight; i++) {
+      for (int j = 0; j < rowLength; j++) {
+        int base = i * paddedWidth * 3 + j;
+        double sum = 0.0;
+        for (int x = 0; x < row.length; x++) {
+          sum += padded[base + x * 3] * row[x];
+        }
+        horizontal[i * rowLength + j] = sum;
+      }
+    }
+    for (int i = 0; i < tile.getHeight(); i++) {
+      for (int j = 0; j < rowLength; j++) {
+        double sum = 0.0;
+        for (int y = 0; y < column.length; y++) {
+          sum += horizontal[(i + y) * rowLength + j] * column[y];
+        }
+        pixels[i * rowLength + j] = clamp(sum);
+      }
+    }
+  }
+
+  /**
+   * Apply the kernel directly a row of the tile at a time. Each kernel value is multiplied with
+   * a whole row of the padded tile, shifted by the offset of the value, and added to the row of
+   * sums. The red, green and blue values of the row are handled in the same loop, since they
+   * share the kernel. Every sum adds the same products in the same order as
+   * {@link #applyFull}, so the results are identical.
+   */
+  private void applyFullRows(Tile tile, int[] padded, int paddedWidth, int[] pixels) {
+    double[] values = new double[padded.length];
+    for (int k = 0; k < padded.length; k++) {
+      values[k] = padded[k];
+    }
+    int rowLength = tile.getWidth() * 3;
+    double[] sums = new double[rowLength];
+    for (int i = 0; i < tile.getHeight(); i++) {
+      Arrays.fill(sums, 0.0);
+      for (int y = 0; y < kernel.length; y++) {
+        for (int x = 0; x < kernel[0].length; x++) {
+          double value = kernel[y][x];
+          int base = ((i + y) * paddedWidth + x) * 3;
+          for (int j = 0; j < rowLength; j++) {
+            sums[j] += values[base + j] * value;
+          }
+        }
+      }
+      clampRow(sums, pixels, i * rowLength);
+    }
+  }
+
+  /**
+   * Apply a separable kernel as two passes that each run a row at a time, in the same way as
+   * {@link #applyFullRows}, with the same results as {@link #applySeparable}.
+   */
+  private void applySeparableRows(Tile tile, int[] padded, int paddedWidth, int paddedHeight,
+                                  int[] pixels) {
+    int rowLength = tile.getWidth() * 3;
+    double[] horizontal = new double[paddedHeight * rowLength];
+    for (int i = 0; i < paddedHeight; i++) {
+      int offset = i * rowLength;
+      for (int x = 0; x < row.length; x++) {
+        double value = row[x];
+        int base = (i * paddedWidth + x) * 3;
+        for (int j = 0; j < rowLength; j++) {
+          horizontal[offset + j] += padded[base + j] * value;
+        }
+      }
+    }
+    double[] sums = new double[rowLength];
+    for (int i = 0; i < tile.getHeight(); i++) {
+      Arrays.fill(sums, 0.0);
+      for (int y = 0; y < column.length; y++) {
+        double value = column[y];
+        int base = (i + y) * rowLength;
+        for (int j = 0; j < rowLength; j++) {
+          sums[j] += horizontal[base + j] * value;
+        }
+      }
+      clampRow(sums, pixels, i * rowLength);
+    }
+  }
+
+  private static void clampRow(double[] sums, int[] pixels, int offset) {
+    for (int j = 0; j < sums.length; j++) {
+      pixels[offset + j] = clamp(sums[j]);
+    }
+  }
+
+  /**
+   * Convolve a padded tile by multiplying its Fourier transform with that of the kernel. The red
+   * and green values are transformed together as the real and imaginary parts of one signal,
+   * which the real kernel keeps apart, and the blue values as a second signal. Rows past the
+   * padded tile are zero, so they are skipped by the forward row transforms, and the inverse row
+   * transforms only run for the rows of the tile.
+   */
+  private void applyFourier(Tile tile, int[] padded, int paddedWidth, int paddedHeight,
+                            int[] pixels) {
+    Spectrum spectrum = spectrum(FourierTransform.nextPowerOfTwo(paddedHeight),
+        FourierTransform.nextPowerOfTwo(paddedWidth));
+    int rows = spectrum.columnTransform.getLength();
+    int columns = spectrum.rowTransform.getLength();
+    double[] redGreenReal = new double[rows * columns];
+    double[] redGreenImaginary = new double[rows * columns];
+    double[] blueReal = new double[rows * columns];
+    double[] blueImaginary = new double[rows * columns];
+    for (int i = 0; i < paddedHeight; i++) {
+      for (int j = 0; j < paddedWidth; j++) {
+        int index = (i * paddedWidth + j) * 3;
+        redGreenReal[i * columns + j] = padded[index];
+        redGreenImaginary[i * columns + j] = padded[index + 1];
+        blueReal[i * columns + j] = padded[index + 2];
+      }
+    }
+
+    for (int i = 0; i < paddedHeight; i++) {
+      spectrum.rowTransform.transform(redGreenReal, redGreenImaginary, i * columns, 1, false);
+      spectrum.rowTransform.transform(blueReal, blueImaginary, i * columns, 1, false);
+    }
+    spectrum.columnTransform.transformColumns(redGreenReal, redGreenImaginary, columns, false);
+    spectrum.columnTransform.transformColumns(blueReal, blueImaginary, columns, false);
+    multiply(redGreenReal, redGreenImaginary, spectrum);
+    multiply(blueReal, blueImaginary, spectrum);
+    spectrum.columnTransform.transformColumns(redGreenReal, redGreenImaginary, columns, true);
+    spectrum.columnTransform.transformColumns(blueReal, blueImaginary, columns, true);
+    for (int i = 0; i < tile.getHeight(); i++) {
+      spectrum.rowTransform.transform(redGreenReal, redGreenImaginary, i * columns, 1, true);
+      spectrum.rowTransform.transform(blueReal, blueImaginary, i * columns, 1, true);
+    }
+
+    int k = 0;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      for (int j = 0; j < tile.getWidth(); j++, k += 3) {
+        pixels[k] = clamp(redGreenReal[i * columns + j]);
+        pixels[k + 1] = clamp(redGreenImaginary[i * columns + j]);
+        pixels[k + 2] = clamp(blueReal[i * columns + j]);
+      }
+    }
+  }
+
+  private static void multiply(double[] real, double[] imaginary, Spectrum spectrum) {
+    for (int k = 0; k < real.length; k++) {
+      double a = real[k];
+      double b = imaginary[k];
+      real[k] = a * spectrum.real[k] - b * spectrum.imaginary[k];
+      imaginary[k] = a * spectrum.imaginary[k] + b * spectrum.real[k];
+    }
+  }
+
+  /**
+   * Get the Fourier transform of the kernel for transforms of a given size, computing it the
+   * first time that size is used. The kernel is stored flipped and wrapped around the origin, so
+   * the product of the transforms gives each result value at the position of the top left corner
+   * of its window in the padded tile.
+   */
+  private Spectrum spectrum(int rows, int columns) {
+    return spectra.computeIfAbsent(((long) rows << 32) | columns, key -> {
+      Spectrum spectrum = new Spectrum(rows, columns);
+      for (int y = 0; y < kernel.length; y++) {
+        for (int x = 0; x < kernel[0].length; x++) {
+          spectrum.real[Math.floorMod(-y, rows) * columns + Math.floorMod(-x, columns)] =
+              kernel[y][x];
+        }
+      }
+      for (int i = 0; i < rows; i++) {
+        spectrum.rowTransform.transform(spectrum.real, spectrum.imaginary, i * columns, 1,
+            false);
+      }
+      spectrum.columnTransform.transformColumns(spectrum.real, spectrum.imaginary, columns,
+          false);
+      return spectrum;
+    });
+  }
+
+  /**
+   * The Fourier transform of the kernel for one transform size, with the transforms of that
+   * size.
+   */
+  private static final class Spectrum {
+    private final FourierTransform rowTransform;
+    private final FourierTransform columnTransform;
+    private final double[] real;
+    private final double[] imaginary;
+
+    private Spectrum(int rows, int columns) {
+      this.rowTransform = new FourierTransform(columns);
+      this.columnTransform = new FourierTransform(rows);
+      this.real = new double[rows * columns];
+      this.imaginary = new double[rows * columns];
+    }
+  }
+
+  /**
+   * Truncate a value to a channel value. Factoring a kernel can leave a sum that should be a
+   * whole number just below it, so values within a small tolerance of the next whole number
+   * are rounded up to it.
+   */
+  private static int clamp(double value) {
+    return (int) Math.min(Math.max(value + ROUNDING_TOLERANCE, 0), 255);
+  }
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link PixelBuffer} holding one direct {@link ByteBuffer} per channel, outside the Java
+ * heap. The memory is returned to the operating system as soon as {@link #release()} is
+ * called rather than when the garbage collector gets to the buffer.
+ */
+final class DirectPixelBuffer implements PixelBuffer {
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // without the cleaner hook the memory is freed when the buffers are collected
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final int width;
+  private final long sizeInBytes;
+  private volatile ByteBuffer[] planes;
+
+  /**
+   * Allocates three zeroed off-heap planes.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @throws IllegalArgumentException If a plane of the image would not fit in a buffer.
+   */
+  DirectPixelBuffer(int width, int height) {
+    long size = (long) width * height;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image of " + width + "x" + height
+          + " pixels is too large.");
+    }
+    this.width = width;
+    this.sizeInBytes = 3L * size;
+    planes = new ByteBuffer[]{
+        ByteBuffer.allocateDirect((int) size),
+        ByteBuffer.allocateDirect((int) size),
+        ByteBuffer.allocateDirect((int) size)
+    };
+  }
+
+  /**
+   * Get a plane, failing if the buffer has already been released.
+   *
+   * @param channel The channel index.
+   * @return The plane of the channel.
+   */
+  private ByteBuffer plane(int channel) {
+    ByteBuffer[] current = planes;
+    if (current == null) {
+      throw new IllegalStateException("Image memory has already been released.");
+    }
+    return current[channel];
+  }
+
+  @Override
+  public int get(int channel, int index) {
+    return plane(channel).get(index) & 0xFF;
+  }
+
+  @Override
+  public void read(int channel, int offset, int[] dest, int length) {
+    ByteBuffer plane = plane(channel);
+    for (int j = 0; j < length; j++) {
+      dest[j] = plane.get(offset + j) & 0xFF;
+    }
+  }
+
+  @Override
+  public void read(int channel, int offset, byte[] dest, int destOffset, int length) {
+    ByteBuffer view = plane(channel).duplicate();
+    view.position(offset);
+    view.get(dest, destOffset, length);
+  }
+
+  @Override
+  public void write(int channel, int offset, byte[] src, int srcOffset, int length) {
+    ByteBuffer view = plane(channel).duplicate();
+    view.position(offset);
+    view.put(src, srcOffset, length);
+  }
+
+  @Override
+  public void readTile(Tile tile, int[] dest) {
+    for (int channel = 0; channel < 3; channel++) {
+      readTile(tile, channel, dest);
+    }
+  }
+
+  @Override
+  public void readTile(Tile tile, int channel, int[] dest) {
+    ByteBuffer plane = plane(channel);
+    int k = channel;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      int source = (tile.getY() + i) * width + tile.getX();
+      for (int j = 0; j < tile.getWidth(); j++) {
+        dest[k] = plane.get(source + j) & 0xFF;
+        k += 3;
+      }
+    }
+  }
+
+  @Override
+  public void writeTile(Tile tile, int[] src) {
+    for (int channel = 0; channel < 3; channel++) {
+      ByteBuffer plane = plane(channel);
+      int k = channel;
+      for (int i = 0; i < tile.getHeight(); i++) {
+        int target = (tile.getY() + i) * width + tile.getX();
+        for (int j = 0; j < tile.getWidth(); j++) {
+          plane.put(target + j, (byte) src[k]);
+          k += 3;
+        }
+      }
+    }
+  }
+
+  @Override
+  public byte[][] planes() {
+    return null;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  @Override
+  public void release() {
+    ByteBuffer[] current = planes;
+    planes = null;
+    if (current == null || INVOKE_CLEANER == null) {
+      return;
+    }
+    for (ByteBuffer plane : current) {
+      try {
+        INVOKE_CLEANER.invoke(UNSAFE, plane);
+      } catch (ReflectiveOperationException e) {
+        // leave the buffer to the garbage collector
+      }
+    }
+  }
+}
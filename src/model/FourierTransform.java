@@ -0,0 +1,165 @@
+package model;
+
+/**
+ * An in-place radix-2 fast Fourier transform of complex values held in separate arrays of real
+ * and imaginary parts. The bit-reversal permutation and the twiddle factors are computed once
+ * per transform length, so a transform can be reused for every row or column of that length.
+ */
+final class FourierTransform {
+  private final int length;
+  private final int[] reversed;
+  private final double[] cos;
+  private final double[] sin;
+
+  /**
+   * Constructs a transform of a given length.
+   *
+   * @param length The number of values transformed, a power of two.
+   * @throws IllegalArgumentException If the length is not a power of two.
+   */
+  FourierTransform(int length) {
+    if (length < 1 || Integer.bitCount(length) != 1) {
+      throw new IllegalArgumentException("Transform length must be a power of two: " + length);
+    }
+    this.length = length;
+    this.reversed = new int[length];
+    int bits = Integer.numberOfTrailingZeros(length);
+    for (int k = 0; k < length; k++) {
+      reversed[k] = bits == 0 ? 0 : Integer.reverse(k) >>> (32 - bits);
+    }
+    this.cos = new double[length / 2];
+    this.sin = new double[length / 2];
+    for (int k = 0; k < length / 2; k++) {
+      double angle = -2 * Math.PI * k / length;
+      cos[k] = Math.cos(angle);
+      sin[k] = Math.sin(angle);
+    }
+  }
+
+  /**
+   * Get the smallest power of two that is at least a given number.
+   *
+   * @param n The number, at least 1.
+   * @return The power of two.
+   */
+  static int nextPowerOfTwo(int n) {
+    return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  /**
+   * Get the length of the transform.
+   *
+   * @return The number of values transformed.
+   */
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Transform every column of a row-major array in place, where the length of the transform is
+   * the number of rows. The butterflies run across whole rows, so the array is read in order
+   * instead of a column at a time.
+   *
+   * @param real      The real parts.
+   * @param imaginary The imaginary parts.
+   * @param columns   The number of columns.
+   * @param inverse   Whether to apply the inverse transform.
+   */
+  void transformColumns(double[] real, double[] imaginary, int columns, boolean inverse) {
+    double[] swap = new double[columns];
+    for (int k = 0; k < length; k++) {
+      int r = reversed[k];
+      if (r > k) {
+        swapRows(real, k * columns, r * columns, swap);
+        swapRows(imaginary, k * columns, r * columns, swap);
+      }
+    }
+    double sign = inverse ? -1 : 1;
+    for (int size = 2; size <= length; size <<= 1) {
+      int half = size >> 1;
+      int step = length / size;
+      for (int start = 0; start < length; start += size) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = sign * sin[k * step];
+          int a = (start + k) * columns;
+          int b = a + half * columns;
+          for (int j = 0; j < columns; j++, a++, b++) {
+            double tr = real[b] * wr - imaginary[b] * wi;
+            double ti = real[b] * wi + imaginary[b] * wr;
+            real[b] = real[a] - tr;
+            imaginary[b] = imaginary[a] - ti;
+            real[a] += tr;
+            imaginary[a] += ti;
+          }
+        }
+      }
+    }
+    if (inverse) {
+      double scale = 1.0 / length;
+      for (int k = 0; k < real.length; k++) {
+        real[k] *= scale;
+        imaginary[k] *= scale;
+      }
+    }
+  }
+
+  private static void swapRows(double[] values, int a, int b, double[] swap) {
+    System.arraycopy(values, a, swap, 0, swap.length);
+    System.arraycopy(values, b, values, a, swap.length);
+    System.arraycopy(swap, 0, values, b, swap.length);
+  }
+
+  /**
+   * Transform values in place. The inverse transform includes the division by the length, so
+   * the inverse of the forward transform gives back the values.
+   *
+   * @param real      The real parts.
+   * @param imaginary The imaginary parts.
+   * @param offset    The index of the first value.
+   * @param stride    The distance between consecutive values.
+   * @param inverse   Whether to apply the inverse transform.
+   */
+  void transform(double[] real, double[] imaginary, int offset, int stride, boolean inverse) {
+    for (int k = 0; k < length; k++) {
+      int r = reversed[k];
+      if (r > k) {
+        int a = offset + k * stride;
+        int b = offset + r * stride;
+        double t = real[a];
+        real[a] = real[b];
+        real[b] = t;
+        t = imaginary[a];
+        imaginary[a] = imaginary[b];
+        imaginary[b] = t;
+      }
+    }
+    double sign = inverse ? -1 : 1;
+    for (int size = 2; size <= length; size <<= 1) {
+      int half = size >> 1;
+      int step = length / size;
+      for (int start = 0; start < length; start += size) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = sign * sin[k * step];
+          int a = offset + (start + k) * stride;
+          int b = a + half * stride;
+          double tr = real[b] * wr - imaginary[b] * wi;
+          double ti = real[b] * wi + imaginary[b] * wr;
+          real[b] = real[a] - tr;
+          imaginary[b] = imaginary[a] - ti;
+          real[a] += tr;
+          imaginary[a] += ti;
+        }
+      }
+    }
+    if (inverse) {
+      double scale = 1.0 / length;
+      for (int k = 0; k < length; k++) {
+        int a = offset + k * stride;
+        real[a] *= scale;
+        imaginary[a] *= scale;
+      }
+    }
+  }
+}
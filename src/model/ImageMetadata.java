@@ -1,24 +1,86 @@
 package model;
 
+import java.util.List;
+
 /**
  * This class represents metadata for an image, including its width, height, and RGB data.
+ * The pixels are stored compactly as one {@code byte} per channel value, so an image costs
+ * three bytes per pixel, except for images made by compress, which can be held as the few
+ * wavelet coefficients compress left and rebuilt whenever they are read.
+ * The pixels live in the {@link ImageStore} the image was created in, which decides their
+ * layout in memory, and can be read a row or a {@link Tile} at a time.
+ * An image is never modified once the model has stored it, so it can be read from any
+ * number of threads at once, and its histograms are only counted once.
  */
-public class ImageMetadata {
+public final class ImageMetadata {
   private final int width;
   private final int height;
-  private final int[][][] rgb;
+  private final PixelBuffer pixels;
+  private final ImageStore store;
+  private volatile ImageStatistics statistics;
 
   /**
    * Constructs an ImageMetadata object with the specified width, height, and RGB data.
    *
    * @param width  The width of the image.
    * @param height The height of the image.
-   * @param rgb    The RGB data for the image.
+   * @param rgb    The RGB data for the image, with values in the range [0, 255].
    */
   public ImageMetadata(int width, int height, int[][][] rgb) {
     this.width = width;
     this.height = height;
-    this.rgb = rgb.clone();
+    this.store = ImageStore.HEAP;
+    byte[][] planes = new byte[3][width * height];
+    this.pixels = new PlanarPixelBuffer(width, planes);
+    for (int channel = 0; channel < 3; channel++) {
+      byte[] plane = planes[channel];
+      for (int i = 0; i < height; i++) {
+        int[] row = rgb[channel][i];
+        int offset = i * width;
+        for (int j = 0; j < width; j++) {
+          plane[offset + j] = (byte) row[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Constructs an ImageMetadata object directly over the given channel planes. The planes
+   * are not copied, so the caller must not modify them once the image has been created.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param planes The red, green and blue planes, each holding width * height row-major values.
+   */
+  public ImageMetadata(int width, int height, byte[][] planes) {
+    if (planes.length != 3) {
+      throw new IllegalArgumentException("Expected 3 channel planes but got " + planes.length);
+    }
+    for (byte[] plane : planes) {
+      if (plane.length != width * height) {
+        throw new IllegalArgumentException("Channel plane does not match "
+            + width + "x" + height + " image.");
+      }
+    }
+    this.width = width;
+    this.height = height;
+    this.pixels = new PlanarPixelBuffer(width, planes);
+    this.store = ImageStore.HEAP;
+  }
+
+  /**
+   * Constructs an ImageMetadata object over pixel storage allocated by a store.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param pixels The storage holding width * height values per channel.
+   * @param store  The store the storage was allocated in.
+   */
+  ImageMetadata(int width, int height, PixelBuffer pixels, ImageStore store) {
+    this.width = width;
+    this.height = height;
+    this.pixels = pixels;
+    this.store = store;
   }
 
   /**
@@ -40,11 +102,160 @@ public class ImageMetadata {
   }
 
   /**
-   * Get the RGB data for the image.
+   * Get the value of a single channel of a pixel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param row     The row of the pixel.
+   * @param col     The column of the pixel.
+   * @return The channel value in the range [0, 255].
+   */
+  public int getValue(int channel, int row, int col) {
+    return pixels.get(channel, row * width + col);
+  }
+
+  /**
+   * Copy one row of a channel into the given buffer.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param row     The row to read.
+   * @param dest    The buffer receiving the values, at least width long.
+   */
+  public void readRow(int channel, int row, int[] dest) {
+    pixels.read(channel, row * width, dest, width);
+  }
+
+  /**
+   * Copy one row of a channel into the given buffer as raw bytes.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param row     The row to read.
+   * @param dest    The buffer receiving the values, at least width long.
+   */
+  public void readRow(int channel, int row, byte[] dest) {
+    pixels.read(channel, row * width, dest, 0, width);
+  }
+
+  /**
+   * Overwrite one row of a channel. Only used by the model while it builds an image,
+   * before the image is published. Images held as wavelet coefficients cannot be written.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param row     The row to write.
+   * @param src     The buffer holding the values, at least width long.
+   */
+  void writeRow(int channel, int row, byte[] src) {
+    pixels.write(channel, row * width, src, 0, width);
+  }
+
+  /**
+   * Get the tiles covering this image, as given by {@link Tile#cover(int, int)}.
+   *
+   * @return The tiles of the image in row-major order.
+   */
+  public List<Tile> getTiles() {
+    return Tile.cover(width, height);
+  }
+
+  /**
+   * Copy the pixels of a tile into an interleaved buffer laid out as described by
+   * {@link Tile}.
+   *
+   * @param tile The tile to read, lying within the image.
+   * @param dest The buffer receiving the values, at least three times the tile size long.
+   */
+  public void readTile(Tile tile, int[] dest) {
+    pixels.readTile(tile, dest);
+  }
+
+  /**
+   * Copy one channel of a tile into its slots of an interleaved buffer, leaving the other
+   * slots untouched.
+   *
+   * @param tile    The tile to read, lying within the image.
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param dest    The buffer receiving the values, at least three times the tile size long.
+   */
+  public void readTile(Tile tile, int channel, int[] dest) {
+    pixels.readTile(tile, channel, dest);
+  }
+
+  /**
+   * Overwrite the pixels of a tile from an interleaved buffer. Only used by the model while
+   * it builds an image, before the image is published.
+   *
+   * @param tile The tile to write, lying within the image.
+   * @param src  The buffer holding values in the range [0, 255].
+   */
+  void writeTile(Tile tile, int[] src) {
+    pixels.writeTile(tile, src);
+  }
+
+  /**
+   * Get the channel planes backing this image, for zero-copy bridges within the model.
+   *
+   * @return The red, green and blue planes, or null if the image is not held on the heap.
+   */
+  byte[][] planes() {
+    return pixels.planes();
+  }
+
+  /**
+   * Get the histograms of this image and the statistics derived from them, counting them the
+   * first time they are asked for. Only used by the model once the image is stored; threads
+   * asking at the same time may each count them.
+   *
+   * @param executor The executor to count the tiles on.
+   * @return The statistics of the image.
+   */
+  ImageStatistics getStatistics(TileExecutor executor) {
+    ImageStatistics result = statistics;
+    if (result == null) {
+      result = ImageStatistics.of(this, executor);
+      statistics = result;
+    }
+    return result;
+  }
+
+  /**
+   * Get the store holding the pixels of this image.
+   *
+   * @return The image store.
+   */
+  public ImageStore getStore() {
+    return store;
+  }
+
+  /**
+   * Free the pixel storage of this image. Off-heap memory is returned immediately and
+   * any later read of the image fails; heap images are left to the garbage collector.
+   */
+  public void release() {
+    pixels.release();
+  }
+
+  /**
+   * Get the number of bytes used to hold the pixels of this image.
+   *
+   * @return The size of the pixel storage in bytes.
+   */
+  public long getSizeInBytes() {
+    return pixels.getSizeInBytes();
+  }
+
+  /**
+   * Get a copy of the RGB data for the image, expanded to one int per channel value.
+   * Prefer {@link #getValue(int, int, int)} and {@link #readRow(int, int, int[])}, which
+   * do not expand the whole image.
    *
    * @return The RGB data.
    */
   public int[][][] getRgb() {
-    return rgb.clone();
+    int[][][] rgb = new int[3][height][width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        readRow(channel, i, rgb[channel][i]);
+      }
+    }
+    return rgb;
   }
 }
@@ -0,0 +1,146 @@
+package model;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A named image in the lazy mode of the model. A node is either a snapshot of a stored image
+ * or an operation applied to other nodes, which only runs when the pixels of the node are
+ * needed. Nodes are immutable apart from caching their pixels, so a node keeps meaning the
+ * same image even when the names it was built from are overwritten later.
+ */
+final class ImageNode {
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final int width;
+  private final int height;
+  private final Function<ImageMetadata[], ImageMetadata> operation;
+  private volatile ImageNode[] inputs;
+  private volatile ImageMetadata image;
+
+  /**
+   * Constructs a node running an operation on the images of other nodes.
+   *
+   * @param width     The width of the result of the operation.
+   * @param height    The height of the result of the operation.
+   * @param operation The operation, given the images of the inputs in order.
+   * @param inputs    The nodes the operation reads.
+   */
+  ImageNode(int width, int height, Function<ImageMetadata[], ImageMetadata> operation,
+            ImageNode... inputs) {
+    this.width = width;
+    this.height = height;
+    this.operation = operation;
+    this.inputs = inputs;
+  }
+
+  /**
+   * Constructs a node for an image that already has its pixels.
+   *
+   * @param image     The image.
+   * @param onCleanup Run once the node is no longer reachable, to give the image back.
+   * @return The new node.
+   */
+  static ImageNode of(ImageMetadata image, Runnable onCleanup) {
+    ImageNode node = new ImageNode(image.getWidth(), image.getHeight(), null);
+    node.image = image;
+    CLEANER.register(node, onCleanup);
+    return node;
+  }
+
+  /**
+   * Get the width of the image of this node.
+   *
+   * @return The width.
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the image of this node.
+   *
+   * @return The height.
+   */
+  int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the pixels of this node, running its operation and those of any inputs that have not
+   * been computed yet. The result is kept, so later calls return the same image; the images
+   * of intermediate nodes are only used for this computation and then freed.
+   *
+   * @return The image of this node.
+   */
+  synchronized ImageMetadata materialize() {
+    ImageMetadata done = image;
+    if (done != null) {
+      return done;
+    }
+
+    Map<ImageNode, ImageMetadata> computed = new IdentityHashMap<>();
+    Set<ImageMetadata> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+    // walk the graph without recursion, as in-place commands build long chains of nodes
+    Deque<ImageNode> stack = new ArrayDeque<>();
+    stack.push(this);
+    while (!stack.isEmpty()) {
+      ImageNode node = stack.peek();
+      if (computed.containsKey(node)) {
+        stack.pop();
+        continue;
+      }
+      ImageNode[] nodeInputs = node.inputs;
+      ImageMetadata nodeImage = node.image;
+      if (nodeImage != null) {
+        computed.put(node, nodeImage);
+        stack.pop();
+        continue;
+      }
+      boolean ready = true;
+      for (ImageNode input : nodeInputs) {
+        if (!computed.containsKey(input)) {
+          stack.push(input);
+          ready = false;
+        }
+      }
+      if (!ready) {
+        continue;
+      }
+      stack.pop();
+      ImageMetadata[] arguments = new ImageMetadata[nodeInputs.length];
+      for (int i = 0; i < nodeInputs.length; i++) {
+        arguments[i] = computed.get(nodeInputs[i]);
+      }
+      ImageMetadata result = node.operation.apply(arguments);
+      computed.put(node, result);
+      boolean isNew = true;
+      for (ImageMetadata argument : arguments) {
+        isNew &= argument != result;
+      }
+      if (isNew) {
+        fresh.add(result);
+      }
+    }
+
+    ImageMetadata result = computed.get(this);
+    for (ImageMetadata intermediate : fresh) {
+      if (intermediate != result) {
+        intermediate.release();
+      }
+    }
+    image = result;
+    if (fresh.contains(result)) {
+      // the pixels belong to this node alone, so the inputs are no longer needed
+      inputs = null;
+      CLEANER.register(this, result::release);
+    }
+    return result;
+  }
+}
@@ -88,6 +88,52 @@ public interface ImageProcessingModel {
    */
   boolean blurSharpenImage(String filterType, String sourceFilename, String destinationFilename);
 
+  /**
+   * Blurs an image by averaging the square of pixels around each pixel.
+   *
+   * @param radius              The number of pixels on each side of a pixel that are averaged.
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the blur is successful, false otherwise.
+   */
+  boolean boxBlur(int radius, String sourceFilename, String destinationFilename);
+
+  /**
+   * Blurs an image with a gaussian of the given standard deviation, approximated by three box
+   * blurs.
+   *
+   * @param sigma               The standard deviation of the gaussian, in pixels.
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the blur is successful, false otherwise.
+   */
+  boolean gaussianBlur(double sigma, String sourceFilename, String destinationFilename);
+
+  /**
+   * Denoises an image by replacing each value with the median of the values of its channel in
+   * the square of pixels around it.
+   *
+   * @param radius              The number of pixels on each side of a pixel in its window.
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the filter is successfully applied, false otherwise.
+   */
+  boolean median(int radius, String sourceFilename, String destinationFilename);
+
+  /**
+   * Convolves an image with a kernel and saves the result to a destination file.
+   *
+   * @param kernel              The kernel, as rows of equal, odd length, and an odd number
+   *                            of rows.
+   * @param borderMode          How the pixels past the edges are filled in: "clamp",
+   *                            "mirror" or "wrap".
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the convolution is successful, false otherwise.
+   */
+  boolean convolve(double[][] kernel, String borderMode, String sourceFilename,
+                   String destinationFilename);
+
   /**
    * Apply a sepia effect to an image.
    *
@@ -115,6 +161,20 @@ public interface ImageProcessingModel {
    */
   boolean compress(int percentage, String sourceFilename, String destinationFilename);
 
+  /**
+   * Compresses an image in square tiles of a given size, each transformed and compressed by the
+   * percentage on its own, so the image is not padded to a power of two square and compressing
+   * it needs memory in proportion to its tiles.
+   *
+   * @param percentage          The compression percentage to apply to each tile.
+   * @param tileSize            The side of the tiles, a power of two.
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the compression is successful, false otherwise.
+   */
+  boolean compress(int percentage, int tileSize, String sourceFilename,
+                   String destinationFilename);
+
   /**
    * Creates a histogram for the specified image and saves it to a destination file.
    *
@@ -146,6 +206,17 @@ public interface ImageProcessingModel {
   boolean levelAdjustment(
       String sourceFilename, String destinationFilename, int black, int mid, int white);
 
+  /**
+   * Applies a chain of per-pixel operations to an image in a single pass and saves the result
+   * to a destination file. No image is created for the steps in between.
+   *
+   * @param kernel              The per-pixel operations to apply, chained into one kernel.
+   * @param sourceFilename      The name of the source image file.
+   * @param destinationFilename The name of the destination image file.
+   * @return True if the pipeline is applied successfully, false otherwise.
+   */
+  boolean applyPipeline(PixelKernel kernel, String sourceFilename, String destinationFilename);
+
   /**
    * Generates a preview of an image operation by applying the specified percentage
    * of the operation to the original image and saving the result to a destination file.
@@ -170,4 +241,37 @@ public interface ImageProcessingModel {
                              String originalFilename,
                              String modifiedFilename);
 
+  /**
+   * Get the histograms of an image and the statistics derived from them: the minimum, maximum,
+   * mean, standard deviation, percentiles and peak of every channel.
+   *
+   * @param imageName The name of the image.
+   * @return The statistics of the image, or null if the image is not present.
+   */
+  ImageStatistics getStatistics(String imageName);
+
+  /**
+   * Describe how much image data the model holds in memory and on disk.
+   *
+   * @return A one line report of the memory budget and of the images in memory and on disk.
+   */
+  String getMemoryUsage();
+
+  /**
+   * Set the number of bytes of image data the model keeps in memory. Least recently used
+   * images beyond the budget are spilled to disk and read back when they are next used.
+   *
+   * @param bytes The memory budget in bytes.
+   * @return True if the budget was set, false if it is invalid.
+   */
+  boolean setMemoryBudget(long bytes);
+
+  /**
+   * Spill an image to disk now, freeing its memory until it is next used.
+   *
+   * @param imageName The name of the image to spill, or null to spill every image.
+   * @return True if the images were spilled, false otherwise.
+   */
+  boolean evict(String imageName);
+
 }
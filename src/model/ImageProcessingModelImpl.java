@@ -1,36 +1,131 @@
 package model;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.HashMap;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
-import static model.helpers.ImageHelper.adjustPadding;
 import static model.helpers.ImageHelper.correctPixelRange;
-import static model.helpers.CompressionHelper.compressImage;
-import static model.helpers.CompressionHelper.haarTransformation;
-import static model.helpers.CompressionHelper.inverseHaarTransformation;
 import static model.helpers.PlotHelper.getNormalizedHistogram;
 
 /**
  * Implementation of the ImageProcessingModel interface for image processing and management.
+ * The model can be shared by several threads. Every stored image is an immutable snapshot:
+ * operations read leased snapshots of their sources without locking, and only operations
+ * storing under the same name wait for each other.
  */
 public class ImageProcessingModelImpl implements ImageProcessingModel {
 
-  private final Map<String, ImageMetadata> imageNameDetailsMap;
+  private final ImageRegistry imageRegistry;
+
+  private final Map<String, Lock> writeLocks;
+
+  private final Map<String, ImageNode> lazyImages;
+
+  private final boolean lazy;
 
   private final OutputStream out;
 
+  private final ImageStore store;
+
+  private final TileExecutor executor;
+
+  private final CoefficientCache coefficientCache;
+
+  private volatile int fourierThreshold = Convolution.FOURIER_THRESHOLD;
+
+  private volatile boolean vectorized = true;
+
+  private volatile boolean singlePrecision = false;
+
+  private volatile boolean sparseImages = true;
+
   /**
    * Constructs an ImageProcessingModelImpl object with the specified output stream.
    *
    * @param out The output stream for error messages and logging.
    */
   public ImageProcessingModelImpl(OutputStream out) {
-    imageNameDetailsMap = new HashMap<>();
+    this(out, ImageStore.HEAP);
+  }
+
+  /**
+   * Constructs an ImageProcessingModelImpl object keeping its images in the given store.
+   *
+   * @param out   The output stream for error messages and logging.
+   * @param store The store holding the pixels of every image in the model.
+   */
+  public ImageProcessingModelImpl(OutputStream out, ImageStore store) {
+    this(out, store, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Constructs an ImageProcessingModelImpl object that keeps at most the given number of bytes
+   * of pixel data in memory. Once the images exceed the budget, the least recently used ones
+   * are spilled to files in the spill directory and read back when they are used again.
+   *
+   * @param out            The output stream for error messages and logging.
+   * @param store          The store holding the pixels of every image in the model.
+   * @param memoryBudget   The number of bytes of pixel data to keep in memory.
+   * @param spillDirectory The directory to spill images to, or null for a temporary directory.
+   */
+  public ImageProcessingModelImpl(OutputStream out, ImageStore store, long memoryBudget,
+                                  Path spillDirectory) {
+    this(out, store, memoryBudget, spillDirectory, false);
+  }
+
+  /**
+   * Constructs an ImageProcessingModelImpl object, optionally in lazy mode. In lazy mode an
+   * operation does not compute its result; it records the operation and its sources as a node
+   * of an operation graph under the destination name. The pixels of a node are only computed
+   * when they are needed, by {@link #getImage(String)}, {@link #getImageData(String)},
+   * {@link #splitPreview(int, String, String)} or {@link #createHistogram(String, String)},
+   * and only the requested images are kept, not the intermediate ones.
+   *
+   * @param out            The output stream for error messages and logging.
+   * @param store          The store holding the pixels of every image in the model.
+   * @param memoryBudget   The number of bytes of pixel data to keep in memory.
+   * @param spillDirectory The directory to spill images to, or null for a temporary directory.
+   * @param lazy           True to record operations and compute them on demand.
+   */
+  public ImageProcessingModelImpl(OutputStream out, ImageStore store, long memoryBudget,
+                                  Path spillDirectory, boolean lazy) {
+    this(out, store, memoryBudget, spillDirectory, lazy, new TileExecutor());
+  }
+
+  /**
+   * Constructs an ImageProcessingModelImpl object running its operations with the given
+   * executor. The other constructors use an executor on the common fork/join pool.
+   *
+   * @param out            The output stream for error messages and logging.
+   * @param store          The store holding the pixels of every image in the model.
+   * @param memoryBudget   The number of bytes of pixel data to keep in memory.
+   * @param spillDirectory The directory to spill images to, or null for a temporary directory.
+   * @param lazy           True to record operations and compute them on demand.
+   * @param executor       The executor splitting operations into tiles run in parallel.
+   */
+  public ImageProcessingModelImpl(OutputStream out, ImageStore store, long memoryBudget,
+                                  Path spillDirectory, boolean lazy, TileExecutor executor) {
+    imageRegistry = new ImageRegistry(store, memoryBudget, spillDirectory);
+    writeLocks = new ConcurrentHashMap<>();
+    lazyImages = new ConcurrentHashMap<>();
     this.out = out;
+    this.store = store;
+    this.lazy = lazy;
+    this.executor = executor;
+    this.coefficientCache = new CoefficientCache(0);
   }
 
   /**
@@ -38,154 +133,174 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    *
    * @param imageDetails The ImageMetadata object representing the input image.
    * @param filter       The filter matrix to be applied.
+   * @param border       How the pixels past the edges of the image are filled in.
    * @return A new ImageMetadata object representing the filtered image.
    */
-  private static ImageMetadata applyFilter(ImageMetadata imageDetails, double[][] filter) {
-    int width = imageDetails.getWidth();
-    int height = imageDetails.getHeight();
-    int[][][] pixelMap = imageDetails.getRgb();
-    int[][][] newPixelMap = new int[3][height][width];
-
-    int filterSize = filter.length;
-    int filterRadius = filterSize / 2;
-
-    for (int i = filterRadius; i < height - filterRadius; i++) {
-      for (int j = filterRadius; j < width - filterRadius; j++) {
-        double red = 0.0;
-        double green = 0.0;
-        double blue = 0.0;
-
-        for (int yOffset = -filterRadius; yOffset <= filterRadius; yOffset++) {
-          for (int xOffset = -filterRadius; xOffset <= filterRadius; xOffset++) {
-            int redVal = pixelMap[0][i + yOffset][j + xOffset];
-            int greenVal = pixelMap[1][i + yOffset][j + xOffset];
-            int blueVal = pixelMap[2][i + yOffset][j + xOffset];
-
-            double filterValue = filter[filterRadius + yOffset][filterRadius + xOffset];
-            red += redVal * filterValue;
-            green += greenVal * filterValue;
-            blue += blueVal * filterValue;
-
-          }
-        }
-
-        int newRed = (int) Math.min(Math.max(red, 0), 255);
-        int newGreen = (int) Math.min(Math.max(green, 0), 255);
-        int newBlue = (int) Math.min(Math.max(blue, 0), 255);
-
-        newPixelMap[0][i][j] = newRed;
-        newPixelMap[1][i][j] = newGreen;
-        newPixelMap[2][i][j] = newBlue;
-
-      }
-    }
+  private ImageMetadata applyFilter(ImageMetadata imageDetails, double[][] filter,
+                                    BorderMode border) {
+    Convolution convolution = new Convolution(filter, border, fourierThreshold, vectorized);
+    return render(imageDetails.getWidth(), imageDetails.getHeight(),
+        (tile, pixels) -> convolution.apply(imageDetails, tile, pixels));
+  }
 
-    return new ImageMetadata(width, height, newPixelMap);
+  /**
+   * Build a new image in the store of the model a tile at a time.
+   *
+   * @param width     The width of the new image.
+   * @param height    The height of the new image.
+   * @param operation The operation computing the pixels of each tile.
+   * @return The new image.
+   */
+  private ImageMetadata render(int width, int height, TileOperation operation) {
+    return render(store, width, height, operation);
   }
 
+  /**
+   * Build a new image a tile at a time. The tiles are those of {@link Tile#cover(int, int)},
+   * so they line up with the storage tiles of the {@link ImageStore#TILED} store, and are
+   * computed in parallel by the executor of the model.
+   *
+   * @param target    The store to create the image in.
+   * @param width     The width of the new image.
+   * @param height    The height of the new image.
+   * @param operation The operation computing the pixels of each tile.
+   * @return The new image.
+   */
+  private ImageMetadata render(ImageStore target, int width, int height,
+                               TileOperation operation) {
+    ImageMetadata newImage = target.create(width, height);
+    render(newImage, newImage.getTiles(), operation);
+    return newImage;
+  }
 
-  @Override
-  public BufferedImage getImage(String filename) {
-    if (isFileExisting(filename)) {
-      return null;
+  /**
+   * Fill an image a part at a time, computing the parts in parallel by the executor of the
+   * model.
+   *
+   * @param newImage  The image to fill.
+   * @param parts     The parts covering the image, such as tiles or strips.
+   * @param operation The operation computing the pixels of each part.
+   * @throws IllegalArgumentException If a part holds too many pixels for a buffer.
+   */
+  private void render(ImageMetadata newImage, List<Tile> parts, TileOperation operation) {
+    long partSize = 0;
+    for (Tile part : parts) {
+      partSize = Math.max(partSize, (long) part.getWidth() * part.getHeight());
+    }
+    if (partSize * 3 > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Parts of " + partSize + " pixels are too large.");
     }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(filename);
+    int bufferSize = (int) partSize * 3;
+    executor.forEach(parts, (long) newImage.getWidth() * newImage.getHeight(),
+        () -> new int[bufferSize],
+        (pixels, part) -> {
+          operation.apply(part, pixels);
+          newImage.writeTile(part, pixels);
+        });
+  }
 
+  /**
+   * Apply a blur made of running sums, first along the rows of the image and then along its
+   * columns, with the parts of the image blurred in parallel in each direction.
+   *
+   * @param imageDetails The image to blur.
+   * @param blur         The blur.
+   * @return The blurred image.
+   */
+  private ImageMetadata applyRunningSumBlur(ImageMetadata imageDetails, RunningSumBlur blur) {
     int width = imageDetails.getWidth();
     int height = imageDetails.getHeight();
-    int[][][] rgb = imageDetails.getRgb();
-
-    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
+    ImageMetadata rows = store.create(width, height);
+    render(rows, blur.rowParts(width, height),
+        (part, pixels) -> blur.blurRows(imageDetails, part, pixels));
+    ImageMetadata newImage = store.create(width, height);
+    render(newImage, blur.columnParts(width, height),
+        (part, pixels) -> blur.blurColumns(rows, part, pixels));
+    rows.release();
+    return newImage;
+  }
 
-        int r = rgb[0][i][j];
-        int g = rgb[1][i][j];
-        int b = rgb[2][i][j];
 
-        int pixelValue = (255 << 24) | (r << 16) | (g << 8) | b;
-        image.setRGB(j, i, pixelValue);
-      }
-    }
-
-    return image;
+  @Override
+  public BufferedImage getImage(String filename) {
+    return withImages(images -> BufferedImageBridge.toBufferedImage(images[0]), filename);
   }
 
   @Override
   public boolean getGreyScale(String componentType, String sourceFilename,
                               String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = getGreyScaleComponents(componentType, imageDetails);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> getGreyScaleComponents(componentType, imageDetails));
   }
 
   @Override
   public boolean doFlip(String flipType, String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = flipImage(imageDetails, flipType);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> flipImage(imageDetails, flipType));
   }
 
   @Override
   public boolean doBrightening(
       int increments, String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-
-    ImageMetadata newImage = brightenDarken(imageDetails, increments);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> brightenDarken(imageDetails, increments));
   }
 
   @Override
   public boolean rgbSplit(String sourceFilename, String redDestinationFilename,
                           String greenDestinationFilename, String blueDestinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
+    if (lazy) {
+      return writing(() -> {
+        ImageNode[] inputs = nodes(sourceFilename);
+        if (inputs == null) {
+          return false;
+        }
+        defer(redDestinationFilename, inputs,
+            images -> getGreyScaleComponents("red-component", images[0]));
+        defer(greenDestinationFilename, inputs,
+            images -> getGreyScaleComponents("green-component", images[0]));
+        defer(blueDestinationFilename, inputs,
+            images -> getGreyScaleComponents("blue-component", images[0]));
+        return true;
+      }, redDestinationFilename, greenDestinationFilename, blueDestinationFilename);
     }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
+    return writing(() -> withImages(images -> {
+      ImageMetadata imageDetails = images[0];
 
-    ImageMetadata redImage = getGreyScaleComponents("red-component", imageDetails);
-    imageNameDetailsMap.put(redDestinationFilename, redImage);
+      ImageMetadata redImage = getGreyScaleComponents("red-component", imageDetails);
+      putImage(redDestinationFilename, redImage);
 
-    ImageMetadata greenImage = getGreyScaleComponents("green-component", imageDetails);
-    imageNameDetailsMap.put(greenDestinationFilename, greenImage);
+      ImageMetadata greenImage = getGreyScaleComponents("green-component", imageDetails);
+      putImage(greenDestinationFilename, greenImage);
 
-    ImageMetadata blueImage = getGreyScaleComponents("blue-component", imageDetails);
-    imageNameDetailsMap.put(blueDestinationFilename, blueImage);
+      ImageMetadata blueImage = getGreyScaleComponents("blue-component", imageDetails);
+      putImage(blueDestinationFilename, blueImage);
 
-    return true;
+      return true;
+    }, sourceFilename) != null,
+        redDestinationFilename, greenDestinationFilename, blueDestinationFilename);
   }
 
   @Override
   public boolean rbgCombine(String destinationFilename, String redSourceFilename,
                             String greenSourceFilename, String blueSourceFilename) {
-    if (isFileExisting(redSourceFilename)
-        || isFileExisting(greenSourceFilename)
-        || isFileExisting(blueSourceFilename)) {
-      return false;
+    if (lazy) {
+      return writing(() -> {
+        ImageNode[] inputs = nodes(redSourceFilename, greenSourceFilename, blueSourceFilename);
+        if (inputs == null) {
+          return false;
+        }
+        defer(destinationFilename, inputs,
+            images -> getMergedImage(images[0], images[1], images[2]));
+        return true;
+      }, destinationFilename);
     }
-    ImageMetadata redImageDetails = imageNameDetailsMap.get(redSourceFilename);
-
-    ImageMetadata greenImageDetails = imageNameDetailsMap.get(greenSourceFilename);
-
-    ImageMetadata blueImageDetails = imageNameDetailsMap.get(blueSourceFilename);
-
-
-    ImageMetadata newImage = getMergedImage(redImageDetails, greenImageDetails, blueImageDetails);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return writing(() -> withImages(images -> {
+      ImageMetadata newImage = getMergedImage(images[0], images[1], images[2]);
+      putImage(destinationFilename, newImage);
+      return true;
+    }, redSourceFilename, greenSourceFilename, blueSourceFilename) != null,
+        destinationFilename);
   }
 
   /**
@@ -203,30 +318,16 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
     int height = redImageDetails.getHeight();
     int width = redImageDetails.getWidth();
 
-    int[][][] newPixelMap = new int[3][height][width];
-
-    int[][][] redPixelMap = redImageDetails.getRgb();
-    int[][][] greenPixelMap = greenImageDetails.getRgb();
-    int[][][] bluePixelMap = blueImageDetails.getRgb();
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        newPixelMap[0][i][j] = redPixelMap[0][i][j];
-        newPixelMap[1][i][j] = greenPixelMap[1][i][j];
-        newPixelMap[2][i][j] = bluePixelMap[2][i][j];
-      }
-    }
-    return new ImageMetadata(width, height, newPixelMap);
+    return render(width, height, (tile, pixels) -> {
+      redImageDetails.readTile(tile, 0, pixels);
+      greenImageDetails.readTile(tile, 1, pixels);
+      blueImageDetails.readTile(tile, 2, pixels);
+    });
   }
 
   @Override
   public boolean blurSharpenImage(String filterType, String sourceFilename,
                                   String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-
     final double[][] sharpenFilter = {
         {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
         {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
@@ -241,35 +342,109 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
         {1.0 / 16, 1.0 / 8, 1.0 / 16}
     };
 
-    ImageMetadata newImage = applyFilter(imageDetails,
-        filterType.equals("blur") ? blurFilter : sharpenFilter);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> applyFilter(imageDetails,
+            filterType.equals("blur") ? blurFilter : sharpenFilter, BorderMode.CLAMP));
   }
 
   @Override
-  public boolean getSepia(String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
+  public boolean boxBlur(int radius, String sourceFilename, String destinationFilename) {
+    RunningSumBlur blur;
+    try {
+      blur = RunningSumBlur.box(radius);
+    } catch (IllegalArgumentException e) {
+      new PrintStream(out).print("Invalid box blur: " + e.getMessage() + ".\n");
       return false;
     }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = applySepia(imageDetails);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> applyRunningSumBlur(imageDetails, blur));
+  }
+
+  @Override
+  public boolean gaussianBlur(double sigma, String sourceFilename,
+                              String destinationFilename) {
+    RunningSumBlur blur;
+    try {
+      blur = RunningSumBlur.gaussian(sigma);
+    } catch (IllegalArgumentException e) {
+      new PrintStream(out).print("Invalid gaussian blur: " + e.getMessage() + ".\n");
+      return false;
+    }
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> applyRunningSumBlur(imageDetails, blur));
+  }
+
+  @Override
+  public boolean median(int radius, String sourceFilename, String destinationFilename) {
+    MedianFilter filter;
+    try {
+      filter = new MedianFilter(radius);
+    } catch (IllegalArgumentException e) {
+      new PrintStream(out).print("Invalid median: " + e.getMessage() + ".\n");
+      return false;
+    }
+    return transform(sourceFilename, destinationFilename, imageDetails -> {
+      int width = imageDetails.getWidth();
+      int height = imageDetails.getHeight();
+      ImageMetadata newImage = store.create(width, height);
+      executor.forEach(filter.parts(width, height), (long) width * height, filter::newScratch,
+          (scratch, part) -> filter.apply(imageDetails, part, scratch, newImage));
+      return newImage;
+    });
+  }
+
+  @Override
+  public boolean convolve(double[][] kernel, String borderMode, String sourceFilename,
+                          String destinationFilename) {
+    BorderMode border;
+    try {
+      border = BorderMode.fromName(borderMode);
+      new Convolution(kernel, border);
+    } catch (IllegalArgumentException e) {
+      new PrintStream(out).print("Invalid convolution: " + e.getMessage() + ".\n");
+      return false;
+    }
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> applyFilter(imageDetails, kernel, border));
+  }
+
+  @Override
+  public boolean getSepia(String sourceFilename, String destinationFilename) {
+    return transform(sourceFilename, destinationFilename, this::applySepia);
   }
 
   @Override
   public ImageMetadata getImageData(String imageName) {
-    ImageMetadata imageMetadata = imageNameDetailsMap.get(imageName);
-    return new ImageMetadata(imageMetadata.getWidth(),
-        imageMetadata.getHeight(), imageMetadata.getRgb());
+    ImageNode node = lazyImages.get(imageName);
+    if (node != null) {
+      // the node frees its pixels once it is unreachable, which overwriting the name can make
+      // it at any time, so an off-heap image is handed out as a copy of its own, freed when the
+      // caller drops it
+      ImageMetadata image = node.materialize();
+      ImageMetadata result = image.getStore() == ImageStore.OFF_HEAP
+          ? ImageStore.OFF_HEAP.copy(image) : image;
+      Reference.reachabilityFence(node);
+      return result;
+    }
+    // published images are never modified, but the pixels of an off-heap image are freed
+    // once its name is overwritten and no operation is reading it any more
+    return imageRegistry.get(imageName);
+  }
+
+  @Override
+  public ImageStatistics getStatistics(String imageName) {
+    // counted the first time they are asked for, here or by histogram or color-correct, and
+    // kept with the image, so later requests for the same image do not read its pixels again
+    return withImages(images -> images[0].getStatistics(executor), imageName);
   }
 
   @Override
   public boolean addImage(String filename, BufferedImage image) {
-    imageNameDetailsMap.remove(filename);
-    imageNameDetailsMap.put(filename, getImageMetadata(image));
-    return true;
+    ImageMetadata imageDetails = BufferedImageBridge.fromBufferedImage(image, store);
+    return writing(() -> {
+      putImage(filename, imageDetails);
+      return true;
+    }, filename);
   }
 
   /**
@@ -280,51 +455,26 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    * @return A new ImageMetadata object representing the selected grayscale component.
    */
   private ImageMetadata getGreyScaleComponents(String greyScaleType, ImageMetadata main) {
-    int width = main.getWidth();
-    int height = main.getHeight();
-    int[][][] pixelMap = main.getRgb();
-    int[][][] newPixelMap = new int[3][height][width];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int[] greyScale = new int[3];
-        int value;
-
-        switch (greyScaleType) {
-          case "red-component":
-            greyScale = new int[]{pixelMap[0][i][j], 0, 0};
-            break;
-          case "green-component":
-            greyScale = new int[]{0, pixelMap[1][i][j], 0};
-            break;
-          case "blue-component":
-            greyScale = new int[]{0, 0, pixelMap[2][i][j]};
-            break;
-          case "value-component":
-            value = Math.max(Math.max(pixelMap[0][i][j], pixelMap[1][i][j]), pixelMap[2][i][j]);
-            greyScale = new int[]{value, value, value};
-            break;
-          case "intensity-component":
-            value = (pixelMap[0][i][j]
-                + pixelMap[1][i][j] + pixelMap[2][i][j]) / 3;
-            greyScale = new int[]{value, value, value};
-            break;
-          case "luma-component":
-            value = (int) ((0.299 * pixelMap[0][i][j])
-                + (0.587 * pixelMap[1][i][j]) + (0.114 * pixelMap[2][i][j]));
-            greyScale = new int[]{value, value, value};
-            break;
-          default:
-            // Handle any other cases or leave it empty if needed.
-        }
+    return applyKernel(main, PixelKernel.component(greyScaleType));
+  }
 
-        newPixelMap[0][i][j] = greyScale[0];
-        newPixelMap[1][i][j] = greyScale[1];
-        newPixelMap[2][i][j] = greyScale[2];
+  /**
+   * Apply a per-pixel kernel to an image in a single pass. The kernel runs on one tile row at
+   * a time, so the values of a row stay in cache through every stage of a chained kernel.
+   *
+   * @param imageDetails The ImageMetadata object representing the input image.
+   * @param kernel       The kernel to apply.
+   * @return A new ImageMetadata object holding the result.
+   */
+  private ImageMetadata applyKernel(ImageMetadata imageDetails, PixelKernel kernel) {
+    return render(imageDetails.getWidth(), imageDetails.getHeight(), (tile, pixels) -> {
+      imageDetails.readTile(tile, pixels);
+      int rowLength = tile.getWidth() * 3;
+      int end = tile.getPixelCount() * 3;
+      for (int k = 0; k < end; k += rowLength) {
+        kernel.apply(pixels, k, k + rowLength);
       }
-    }
-
-    return new ImageMetadata(width, height, newPixelMap);
+    });
   }
 
   /**
@@ -339,39 +489,42 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
     int width = imageDetails.getWidth();
     int height = imageDetails.getHeight();
 
-    int[][][] pixelMap = imageDetails.getRgb();
-    int[][][] newPixelMap = new int[3][height][width];
-    int[][] redPixels = pixelMap[0];
-    int[][] greenPixels = pixelMap[1];
-    int[][] bluePixels = pixelMap[2];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-
-        int redVal = redPixels[i][j];
-        int greenVal = greenPixels[i][j];
-        int blueVal = bluePixels[i][j];
-
-        int newI;
-        int newJ;
-
-        if ("horizontal-flip".equalsIgnoreCase(flipType)) {
-          newI = i;
-          newJ = width - 1 - j;
-        } else if ("vertical-flip".equalsIgnoreCase(flipType)) {
-          newI = height - 1 - i;
-          newJ = j;
-        } else {
-          newI = height - 1 - i;
-          newJ = width - 1 - j;
+    boolean flipRows = !"horizontal-flip".equalsIgnoreCase(flipType);
+    boolean flipColumns = !"vertical-flip".equalsIgnoreCase(flipType);
+
+    return render(width, height, (tile, pixels) -> {
+      int tileWidth = tile.getWidth();
+      int tileHeight = tile.getHeight();
+      // the mirror image of the tile, read as is and reversed in place
+      Tile source = new Tile(
+          flipColumns ? width - tile.getX() - tileWidth : tile.getX(),
+          flipRows ? height - tile.getY() - tileHeight : tile.getY(),
+          tileWidth, tileHeight);
+      imageDetails.readTile(source, pixels);
+
+      if (flipRows) {
+        int rowLength = tileWidth * 3;
+        for (int top = 0, bottom = tileHeight - 1; top < bottom; top++, bottom--) {
+          for (int k = 0; k < rowLength; k++) {
+            int swap = pixels[top * rowLength + k];
+            pixels[top * rowLength + k] = pixels[bottom * rowLength + k];
+            pixels[bottom * rowLength + k] = swap;
+          }
         }
-        newPixelMap[0][newI][newJ] = redVal;
-        newPixelMap[1][newI][newJ] = greenVal;
-        newPixelMap[2][newI][newJ] = blueVal;
       }
-    }
-
-    return new ImageMetadata(width, height, newPixelMap);
+      if (flipColumns) {
+        for (int i = 0; i < tileHeight; i++) {
+          int rowStart = i * tileWidth;
+          for (int left = 0, right = tileWidth - 1; left < right; left++, right--) {
+            for (int channel = 0; channel < 3; channel++) {
+              int swap = pixels[(rowStart + left) * 3 + channel];
+              pixels[(rowStart + left) * 3 + channel] = pixels[(rowStart + right) * 3 + channel];
+              pixels[(rowStart + right) * 3 + channel] = swap;
+            }
+          }
+        }
+      }
+    });
   }
 
   /**
@@ -382,95 +535,342 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    * @return A new ImageMetadata object representing the brightened or darkened image.
    */
   private ImageMetadata brightenDarken(ImageMetadata imageDetails, int increments) {
-    int width = imageDetails.getWidth();
-    int height = imageDetails.getHeight();
-    int[][][] pixelMap = imageDetails.getRgb();
-    int[][][] newPixelMap = new int[3][height][width];
+    return applyKernel(imageDetails, PixelKernel.brighten(increments));
+  }
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
+  /**
+   * Apply a sepia effect to an image.
+   *
+   * @param imageDetails The ImageMetadata object representing the input image.
+   * @return A new ImageMetadata object representing the image with the sepia effect applied.
+   */
+  private ImageMetadata applySepia(ImageMetadata imageDetails) {
+    return applyKernel(imageDetails, PixelKernel.sepia());
+  }
 
-        int r = correctPixelRange(pixelMap[0][i][j] + increments);
-        int g = correctPixelRange(pixelMap[1][i][j] + increments);
-        int b = correctPixelRange(pixelMap[2][i][j] + increments);
+  /**
+   * Check if a file with the given filename exists in the image processing model.
+   *
+   * @param filename The name of the file to check.
+   * @return True if the file exists in the model, false otherwise.
+   */
+  private boolean isFileExisting(String filename) {
+    if (!imageRegistry.contains(filename) && !lazyImages.containsKey(filename)) {
+      printNotPresent(filename);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Report that no image is stored under a name.
+   *
+   * @param filename The name that was looked up.
+   */
+  private void printNotPresent(String filename) {
+    PrintStream out = new PrintStream(this.out);
+    out.print(filename + " not present in the application.\n");
+  }
 
-        newPixelMap[0][i][j] = r;
-        newPixelMap[1][i][j] = g;
-        newPixelMap[2][i][j] = b;
+  /**
+   * Run an operation on leased snapshots of stored images. The snapshots stay readable for the
+   * whole operation, even if their names are overwritten or spilled by another thread.
+   *
+   * @param operation The operation, given the images in the order of the names.
+   * @param filenames The names of the images to read.
+   * @param <T>       The type of the result of the operation.
+   * @return The result of the operation, or null if one of the images is not present.
+   */
+  private <T> T withImages(Function<ImageMetadata[], T> operation, String... filenames) {
+    ImageMetadata[] images = new ImageMetadata[filenames.length];
+    ImageNode[] nodes = new ImageNode[filenames.length];
+    try {
+      for (int i = 0; i < filenames.length; i++) {
+        nodes[i] = lazyImages.get(filenames[i]);
+        images[i] = nodes[i] != null
+            ? nodes[i].materialize() : imageRegistry.acquire(filenames[i]);
+        if (images[i] == null) {
+          printNotPresent(filenames[i]);
+          return null;
+        }
+      }
+      return operation.apply(images);
+    } finally {
+      for (int i = 0; i < images.length; i++) {
+        if (images[i] != null && nodes[i] == null) {
+          imageRegistry.returnLease(images[i]);
+        }
       }
+      // the nodes own the pixels of lazy images, so they must outlive the operation
+      Reference.reachabilityFence(nodes);
+    }
+  }
 
+  /**
+   * Run an operation while holding the write locks of the names it stores images under, so
+   * operations writing the same name take effect one after another in the order they got
+   * the lock, and an operation reading and writing the same name never loses an update.
+   * Locks are taken in name order, so operations writing several names cannot deadlock.
+   *
+   * @param operation The operation to run.
+   * @param filenames The names the operation stores images under.
+   * @return The result of the operation.
+   */
+  private boolean writing(BooleanSupplier operation, String... filenames) {
+    String[] names = filenames.clone();
+    Arrays.sort(names);
+    List<Lock> held = new ArrayList<>();
+    try {
+      for (String name : names) {
+        Lock lock = writeLocks.computeIfAbsent(name, key -> new ReentrantLock());
+        lock.lock();
+        held.add(lock);
+      }
+      return operation.getAsBoolean();
+    } finally {
+      for (int i = held.size() - 1; i >= 0; i--) {
+        held.get(i).unlock();
+      }
     }
+  }
 
-    return new ImageMetadata(width, height, newPixelMap);
+  /**
+   * Apply an operation to a stored image and store the result under a name.
+   *
+   * @param sourceFilename      The name of the source image.
+   * @param destinationFilename The name to store the result under.
+   * @param operation           The operation producing the new image.
+   * @return True if the operation ran, false if the source image is not present.
+   */
+  private boolean transform(String sourceFilename, String destinationFilename,
+                            UnaryOperator<ImageMetadata> operation) {
+    if (!lazy) {
+      return transformNow(sourceFilename, destinationFilename, operation);
+    }
+    return writing(() -> {
+      ImageNode[] inputs = nodes(sourceFilename);
+      if (inputs == null) {
+        return false;
+      }
+      defer(destinationFilename, inputs, images -> operation.apply(images[0]));
+      return true;
+    }, destinationFilename);
   }
 
   /**
-   * Apply a sepia effect to an image.
+   * Apply an operation to a stored image right away and store the result under a name.
    *
-   * @param imageDetails The ImageMetadata object representing the input image.
-   * @return A new ImageMetadata object representing the image with the sepia effect applied.
+   * @param sourceFilename      The name of the source image.
+   * @param destinationFilename The name to store the result under.
+   * @param operation           The operation producing the new image.
+   * @return True if the operation ran, false if the source image is not present.
    */
-  private ImageMetadata applySepia(ImageMetadata imageDetails) {
-    int width = imageDetails.getWidth();
-    int height = imageDetails.getHeight();
+  private boolean transformNow(String sourceFilename, String destinationFilename,
+                               UnaryOperator<ImageMetadata> operation) {
+    return writing(() -> withImages(images -> {
+      putImage(destinationFilename, operation.apply(images[0]));
+      return true;
+    }, sourceFilename) != null, destinationFilename);
+  }
+
+  /**
+   * Get the operation graph nodes for named images, in lazy mode. Stored images become
+   * snapshot nodes that hold a lease on the image until the node is no longer used.
+   *
+   * @param filenames The names of the images.
+   * @return The nodes in the order of the names, or null if one of them is not present.
+   */
+  private ImageNode[] nodes(String... filenames) {
+    ImageNode[] nodes = new ImageNode[filenames.length];
+    for (int i = 0; i < filenames.length; i++) {
+      nodes[i] = lazyImages.get(filenames[i]);
+      if (nodes[i] == null) {
+        ImageMetadata image = imageRegistry.acquire(filenames[i]);
+        if (image == null) {
+          printNotPresent(filenames[i]);
+          return null;
+        }
+        nodes[i] = ImageNode.of(image, () -> imageRegistry.returnLease(image));
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Record an operation under a name without running it, in lazy mode.
+   *
+   * @param filename  The name of the result.
+   * @param inputs    The nodes the operation reads; the first one gives the size of the result.
+   * @param operation The operation, given the images of the inputs in order.
+   */
+  private void defer(String filename, ImageNode[] inputs,
+                     Function<ImageMetadata[], ImageMetadata> operation) {
+    lazyImages.put(filename,
+        new ImageNode(inputs[0].getWidth(), inputs[0].getHeight(), operation, inputs));
+    imageRegistry.remove(filename);
+    coefficientCache.invalidate(filename);
+  }
+
+  /**
+   * Store an image under a name. The image previously stored under that name is released,
+   * unless it is still stored under another name as well.
+   *
+   * @param filename The name of the image.
+   * @param image    The image to store.
+   */
+  private void putImage(String filename, ImageMetadata image) {
+    imageRegistry.put(filename, store.adopt(image));
+    lazyImages.remove(filename);
+    coefficientCache.invalidate(filename);
+  }
 
-    int[][][] pixelMap = imageDetails.getRgb();
-    int[][][] newPixelMap = new int[3][height][width];
+  /**
+   * Get the number of threads the operations of this model run on.
+   *
+   * @return The parallelism of the executor of the model.
+   */
+  public int getParallelism() {
+    return executor.getParallelism();
+  }
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = pixelMap[0][i][j];
-        int g = pixelMap[1][i][j];
-        int b = pixelMap[2][i][j];
+  /**
+   * Get the number of bytes of image data the model holds in memory, which the memory budget
+   * limits.
+   *
+   * @return The resident size in bytes.
+   */
+  public long getResidentBytes() {
+    return imageRegistry.getResidentBytes();
+  }
 
-        int newR = correctPixelRange((int) (0.393 * r + 0.769 * g + 0.189 * b));
-        int newG = correctPixelRange((int) (0.349 * r + 0.686 * g + 0.168 * b));
-        int newB = correctPixelRange((int) (0.272 * r + 0.534 * g + 0.131 * b));
+  /**
+   * Set the size of the kernels from which convolutions with kernels that are not separable run
+   * through Fourier transforms instead of summing every product directly. Both give the same
+   * images, so this only changes how long a convolution takes.
+   *
+   * @param kernelValues The number of values of the smallest kernel to transform, or
+   *                     {@link Integer#MAX_VALUE} to always convolve directly.
+   */
+  public void setFourierThreshold(int kernelValues) {
+    this.fourierThreshold = kernelValues;
+  }
 
-        newPixelMap[0][i][j] = newR;
-        newPixelMap[1][i][j] = newG;
-        newPixelMap[2][i][j] = newB;
+  /**
+   * Choose between the vectorized and the scalar loops of direct convolutions. The vectorized
+   * loops are written so the JIT compiles them to SIMD instructions, and are used by default;
+   * the scalar loops are a fallback for runtimes that do not vectorize them. Both give the same
+   * images.
+   *
+   * @param vectorized Whether to use the vectorized loops.
+   */
+  public void setVectorized(boolean vectorized) {
+    this.vectorized = vectorized;
+  }
 
-      }
+  /**
+   * Choose whether compress keeps its wavelet coefficients in float instead of double
+   * precision, which halves the memory it needs. The result is close to, but not always the same
+   * as, that of double coefficients, since a coefficient within rounding of the compression
+   * threshold can be kept in one precision and dropped in the other.
+   *
+   * @param singlePrecision Whether to use float coefficients.
+   */
+  public void setSinglePrecision(boolean singlePrecision) {
+    this.singlePrecision = singlePrecision;
+  }
+
+  /**
+   * Choose whether compress may keep the images it makes as the wavelet coefficients it left
+   * instead of as pixels, which it does when they take at most half the memory. Such an image
+   * is rebuilt a block of pixels at a time whenever it is read, so heavily compressed images
+   * take a fraction of the memory of their pixels at the cost of slower reads. Both give the
+   * same images. Images compressed in tiles are always kept as pixels.
+   *
+   * @param sparseImages Whether to keep compressed images as coefficients.
+   */
+  public void setSparseCompression(boolean sparseImages) {
+    this.sparseImages = sparseImages;
+  }
+
+  /**
+   * Set how many bytes of wavelet coefficients compress keeps for the images it compressed, so
+   * compressing one of them again at another percentage only transforms back. The coefficients
+   * of an image are dropped once its name is overwritten, and the least recently used ones once
+   * they exceed the limit. The coefficients are not counted in the memory budget of the
+   * images, so the cache keeps nothing until a limit is set.
+   *
+   * @param bytes The number of bytes of coefficients to keep, 0 to keep none.
+   * @return True if the limit was set, false if it is negative.
+   */
+  public boolean setCompressionCacheLimit(long bytes) {
+    if (bytes < 0) {
+      new PrintStream(this.out).print("Compression cache limit cannot be negative.\n");
+      return false;
     }
+    coefficientCache.setLimit(bytes);
+    return true;
+  }
 
-    return new ImageMetadata(width, height, newPixelMap);
+  @Override
+  public String getMemoryUsage() {
+    long budget = imageRegistry.getBudget();
+    int spilled = imageRegistry.getSpilledCount();
+    Path spillDirectory = imageRegistry.getSpillDirectory();
+    return String.format("Memory budget: %s, in memory: %d images (%s), "
+            + "spilled to disk: %d images (%s)%s.",
+        budget == Long.MAX_VALUE ? "unlimited" : formatBytes(budget),
+        imageRegistry.size() - spilled,
+        formatBytes(imageRegistry.getResidentBytes()),
+        spilled,
+        formatBytes(imageRegistry.getSpilledBytes()),
+        spillDirectory == null ? "" : " in " + spillDirectory)
+        + (lazy ? String.format(" Lazy images: %d.", lazyImages.size()) : "")
+        + (coefficientCache.size() == 0 ? "" : String.format(
+        " Compress cache: %d images (%s of %s).", coefficientCache.size(),
+        formatBytes(coefficientCache.getSizeInBytes()),
+        coefficientCache.getLimit() == Long.MAX_VALUE
+            ? "unlimited" : formatBytes(coefficientCache.getLimit())));
   }
 
   /**
-   * Check if a file with the given filename exists in the image processing model.
+   * Format a number of bytes in megabytes.
    *
-   * @param filename The name of the file to check.
-   * @return True if the file exists in the model, false otherwise.
+   * @param bytes The number of bytes.
+   * @return The size in megabytes, with one decimal.
    */
-  private boolean isFileExisting(String filename) {
-    PrintStream out = new PrintStream(this.out);
-    if (!imageNameDetailsMap.containsKey(filename)) {
-      out.print(filename + " not present in the application.\n");
-      return true;
+  private static String formatBytes(long bytes) {
+    return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+  }
+
+  @Override
+  public boolean setMemoryBudget(long bytes) {
+    if (bytes < 0) {
+      new PrintStream(this.out).print("Memory budget cannot be negative.\n");
+      return false;
     }
-    return false;
+    imageRegistry.setBudget(bytes);
+    return true;
   }
 
-  private ImageMetadata getImageMetadata(BufferedImage bufferedImage) {
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    int[][][] pixelMap = new int[3][height][width];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int rgb = bufferedImage.getRGB(j, i);
-        Color color = new Color(rgb);
-        int r = color.getRed();
-        int g = color.getGreen();
-        int b = color.getBlue();
-        pixelMap[0][i][j] = r;
-        pixelMap[1][i][j] = g;
-        pixelMap[2][i][j] = b;
+  @Override
+  public boolean evict(String imageName) {
+    PrintStream out = new PrintStream(this.out);
+    try {
+      if (imageName == null) {
+        imageRegistry.evictAll();
+        coefficientCache.clear();
+        return true;
+      }
+      if (isFileExisting(imageName)) {
+        return false;
       }
+      coefficientCache.invalidate(imageName);
+      // images of lazy nodes are recomputed rather than spilled
+      return lazyImages.containsKey(imageName) || imageRegistry.evict(imageName);
+    } catch (IOException e) {
+      out.print("Could not spill images to disk: " + e.getMessage() + "\n");
+      return false;
     }
-
-    return new ImageMetadata(width, height, pixelMap);
   }
 
   /**
@@ -483,107 +883,56 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    */
   @Override
   public boolean compress(int percentage, String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata originalImage = imageNameDetailsMap.get(sourceFilename);
-
-    ImageMetadata compressedImage = getCompressedImage(originalImage, percentage);
-
-    imageNameDetailsMap.put(destinationFilename, compressedImage);
-
-    return true;
+    return transform(sourceFilename, destinationFilename,
+        originalImage -> getCompressedImage(originalImage, sourceFilename, percentage));
   }
 
 
   /**
    * Applies a compression operation to the input image based on a given percentage.
    *
+   * The coefficients of the input image are cached under its name, so compressing it again at
+   * another percentage skips the forward transform.
+   *
    * @param imageMetadata The {@link ImageMetadata} object representing the input image.
+   * @param name          The name the input image is stored under.
    * @param percentage    The percentage of compression to be applied.
    * @return A new {@link ImageMetadata} object representing the compressed image.
    */
-  private ImageMetadata getCompressedImage(ImageMetadata imageMetadata, int percentage) {
+  private ImageMetadata getCompressedImage(ImageMetadata imageMetadata, String name,
+                                           int percentage) {
     if (percentage < 1) {
       return imageMetadata;
     }
-    int height = imageMetadata.getHeight();
-    int width = imageMetadata.getWidth();
-    int nextSq = 1;
-    while (nextSq < Math.max(width, height)) {
-      nextSq *= 2;
-    }
-    //padding
-
-    ImageMetadata paddedImage = adjustPadding(imageMetadata, nextSq, nextSq);
-
-    int size = paddedImage.getWidth();
-    int[][][] pixelMap = paddedImage.getRgb();
-
-    int[][] redPadded = pixelMap[0];
-    int[][] greenPadded = pixelMap[1];
-    int[][] bluePadded = pixelMap[2];
-
-    //haar
-    double[][] redHaar = haarTransformation(redPadded);
-    double[][] greenHaar = haarTransformation(greenPadded);
-    double[][] blueHaar = haarTransformation(bluePadded);
-
-    //compress
-    double[][] redCompressed = compressImage(redHaar, percentage);
-    double[][] greenCompressed = compressImage(greenHaar, percentage);
-    double[][] blueCompressed = compressImage(blueHaar, percentage);
-
-    //invhaar
-    double[][] redFinal = inverseHaarTransformation(redCompressed, size);
-    double[][] greenFinal = inverseHaarTransformation(greenCompressed, size);
-    double[][] blueFinal = inverseHaarTransformation(blueCompressed, size);
-
-    //rgb combine
-    int[][][] compressesRGB = new int[3][size][size];
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-        compressesRGB[0][i][j] = (int) redFinal[i][j];
-        compressesRGB[1][i][j] = (int) greenFinal[i][j];
-        compressesRGB[2][i][j] = (int) blueFinal[i][j];
-      }
-    }
-
-    ImageMetadata compressedImage = adjustPadding(new ImageMetadata(size, size, compressesRGB),
-        imageMetadata.getHeight(), imageMetadata.getWidth());
+    return new WaveletCompression(executor, singlePrecision, sparseImages, coefficientCache)
+        .apply(imageMetadata, name, percentage, store);
+  }
 
-    int[][][] compressedPixels = compressedImage.getRgb();
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        compressedPixels[0][i][j] = correctPixelRange(compressedPixels[0][i][j]);
-        compressedPixels[1][i][j] = correctPixelRange(compressedPixels[1][i][j]);
-        compressedPixels[2][i][j] = correctPixelRange(compressedPixels[2][i][j]);
-      }
+  @Override
+  public boolean compress(int percentage, int tileSize, String sourceFilename,
+                          String destinationFilename) {
+    if (tileSize < 2 || tileSize > WaveletCompression.MAX_BLOCK_SIZE
+        || Integer.bitCount(tileSize) != 1) {
+      new PrintStream(out).print("Invalid compress tile size: must be a power of two from 2 to "
+          + WaveletCompression.MAX_BLOCK_SIZE + ".\n");
+      return false;
     }
-
-    return new ImageMetadata(width, height, compressedPixels);
+    return transform(sourceFilename, destinationFilename, originalImage -> percentage < 1
+        ? originalImage
+        : new WaveletCompression(executor, singlePrecision, false, null)
+            .applyBlocks(originalImage, percentage, tileSize, store));
   }
 
   @Override
   public boolean createHistogram(String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = getNormalizedHistogram(imageDetails);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    // the histogram is computed right away, even in lazy mode
+    return transformNow(sourceFilename, destinationFilename,
+        imageDetails -> getNormalizedHistogram(imageDetails.getStatistics(executor)));
   }
 
   @Override
   public boolean colorCorrection(String sourceFilename, String destinationFilename) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = doColorCorrection(imageDetails);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
+    return transform(sourceFilename, destinationFilename, this::doColorCorrection);
   }
 
   /**
@@ -594,21 +943,10 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    */
   private ImageMetadata doColorCorrection(ImageMetadata imageDetails) {
 
-    int height = imageDetails.getHeight();
-    int width = imageDetails.getWidth();
-    int[][][] rgb = imageDetails.getRgb();
-
-    int[] redFrequency = new int[256];
-    int[] greenFrequency = new int[256];
-    int[] blueFrequency = new int[256];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        redFrequency[rgb[0][i][j]]++;
-        greenFrequency[rgb[1][i][j]]++;
-        blueFrequency[rgb[2][i][j]]++;
-      }
-    }
+    ImageStatistics statistics = imageDetails.getStatistics(executor);
+    int[] redFrequency = statistics.getHistogram(0);
+    int[] greenFrequency = statistics.getHistogram(1);
+    int[] blueFrequency = statistics.getHistogram(2);
 
     int redPeak = 0;
     int greenPeak = 0;
@@ -633,17 +971,14 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
     }
     int averageIndex = (redIndex + greenIndex + blueIndex) / 3;
 
-    int[][][] newRGB = new int[3][height][width];
+    int redShift = redIndex;
+    int greenShift = greenIndex;
+    int blueShift = blueIndex;
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        newRGB[0][i][j] = adjustValue(rgb[0][i][j], redIndex, averageIndex);
-        newRGB[1][i][j] = adjustValue(rgb[1][i][j], greenIndex, averageIndex);
-        newRGB[2][i][j] = adjustValue(rgb[2][i][j], blueIndex, averageIndex);
-      }
-    }
-
-    return new ImageMetadata(width, height, newRGB);
+    return applyKernel(imageDetails, LookupTable.of(
+        value -> adjustValue(value, redShift, averageIndex),
+        value -> adjustValue(value, greenShift, averageIndex),
+        value -> adjustValue(value, blueShift, averageIndex)));
   }
 
   /**
@@ -666,14 +1001,8 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
   @Override
   public boolean levelAdjustment(
       String sourceFilename, String destinationFilename, int black, int mid, int white) {
-    if (isFileExisting(sourceFilename)) {
-      return false;
-    }
-    ImageMetadata imageDetails = imageNameDetailsMap.get(sourceFilename);
-    ImageMetadata newImage = levelAdjustmentProcess(imageDetails, black, mid, white);
-    imageNameDetailsMap.put(destinationFilename, newImage);
-    return true;
-
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> levelAdjustmentProcess(imageDetails, black, mid, white));
   }
 
   /**
@@ -687,62 +1016,14 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    */
   private ImageMetadata levelAdjustmentProcess(
       ImageMetadata imageDetails, int black, int mid, int white) {
-
-    int height = imageDetails.getHeight();
-    int width = imageDetails.getWidth();
-    int[][][] pixelsMap = imageDetails.getRgb();
-    double[] bestFit = getCurveFittingPoints(black, mid, white);
-
-    double a = bestFit[0];
-    double b = bestFit[1];
-    double c = bestFit[2];
-
-    int[][][] newLeveledPixelMap = new int[3][height][width];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-
-        int red = pixelsMap[0][i][j];
-        newLeveledPixelMap[0][i][j]
-            = correctPixelRange((int) ((a * red * red) + (b * red) + c));
-
-        int green = pixelsMap[1][i][j];
-        newLeveledPixelMap[1][i][j]
-            = correctPixelRange((int) ((a * green * green) + (b * green) + c));
-
-        int blue = pixelsMap[2][i][j];
-        newLeveledPixelMap[2][i][j]
-            = correctPixelRange((int) ((a * blue * blue) + (b * blue) + c));
-      }
-    }
-    return new ImageMetadata(width, height, newLeveledPixelMap);
-
+    return applyKernel(imageDetails, PixelKernel.levels(black, mid, white));
   }
 
-  /**
-   * Calculates the coefficients for curve fitting based on given black, mid, and white values.
-   * This method computes the coefficients a, aA, aB, and aC for the quadratic equation:
-   * a * x^2 + b * x + c = y, where x is the pixel value.
-   *
-   * @param black The pixel intensity corresponding to the darkest point.
-   * @param mid   The pixel intensity corresponding to the mid-tones point.
-   * @param white The pixel intensity corresponding to the brightest point.
-   * @return An array with coefficient for quadratic equation.
-   */
-  private double[] getCurveFittingPoints(int black, int mid, int white) {
-    double a = ((Math.pow(black, 2) * (mid - white)) - (black * (Math.pow(mid, 2)
-        - Math.pow(white, 2))) + (white * Math.pow(mid, 2))
-        - (mid * Math.pow(white, 2)));
-
-    double aA = (-1 * black * (128 - 255)) + 128 * white - 255 * mid;
-
-    double aB = ((Math.pow(black, 2) * (128 - 255))
-        + (255 * Math.pow(mid, 2)) - (128 * Math.pow(white, 2)));
-
-    double aC = ((Math.pow(black, 2) * (255 * mid - 128 * white))
-        - (black * ((255 * Math.pow(mid, 2)) - (128 * Math.pow(white, 2)))));
-
-    return new double[]{aA / a, aB / a, aC / a};
+  @Override
+  public boolean applyPipeline(PixelKernel kernel, String sourceFilename,
+                               String destinationFilename) {
+    return transform(sourceFilename, destinationFilename,
+        imageDetails -> applyKernel(imageDetails, kernel));
   }
 
   @Override
@@ -750,73 +1031,78 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
       int percentage,
       String originalfilename,
       String modifiedfilename) {
-    if (isFileExisting(originalfilename) || isFileExisting(modifiedfilename)) {
-      return false;
-    }
-    ImageMetadata originalImage = imageNameDetailsMap.get(originalfilename);
-    ImageMetadata modifiedImage = imageNameDetailsMap.get(modifiedfilename);
-
-
-    if (originalImage.getWidth() != modifiedImage.getWidth()
-        || originalImage.getHeight() != modifiedImage.getHeight()) {
-      return false;
+    if (lazy) {
+      return writing(() -> {
+        ImageNode[] inputs = nodes(originalfilename, modifiedfilename);
+        if (inputs == null
+            || inputs[0].getWidth() != inputs[1].getWidth()
+            || inputs[0].getHeight() != inputs[1].getHeight()) {
+          return false;
+        }
+        defer(modifiedfilename, inputs,
+            images -> getSplitImage(percentage, images[0], images[1], store));
+        return true;
+      }, modifiedfilename);
     }
+    return writing(() -> withImages(images -> {
+      ImageMetadata originalImage = images[0];
+      ImageMetadata modifiedImage = images[1];
 
-    int width = modifiedImage.getWidth();
-    int startIndex = (int) (width * (percentage / 100.0));
-
-    int[][][] originalPixels = originalImage.getRgb();
-    int[][][] modifiedPixels = modifiedImage.getRgb();
-    for (int i = 0; i < modifiedImage.getHeight(); i++) {
-      for (int j = startIndex; j < width; j++) {
-        modifiedPixels[0][i][j] = originalPixels[0][i][j];
-        modifiedPixels[1][i][j] = originalPixels[1][i][j];
-        modifiedPixels[2][i][j] = originalPixels[2][i][j];
+      if (originalImage.getWidth() != modifiedImage.getWidth()
+          || originalImage.getHeight() != modifiedImage.getHeight()) {
+        return false;
       }
-    }
-    return true;
+
+      putImage(modifiedfilename,
+          getSplitImage(percentage, originalImage, modifiedImage, store));
+      return true;
+    }, originalfilename, modifiedfilename) == Boolean.TRUE, modifiedfilename);
   }
 
   @Override
   public BufferedImage splitPreview(int percentage,
                                     String originalFilename,
                                     String modifiedFilename) {
-    if (isFileExisting(originalFilename) || isFileExisting(modifiedFilename)) {
-      return null;
-    }
-    ImageMetadata originalImage = imageNameDetailsMap.get(originalFilename);
-    ImageMetadata modifiedImage = imageNameDetailsMap.get(modifiedFilename);
-
+    return withImages(images -> BufferedImageBridge.toBufferedImage(
+        getSplitImage(percentage, images[0], images[1], ImageStore.HEAP)),
+        originalFilename, modifiedFilename);
+  }
 
+  /**
+   * Combines the left part of a modified image with the right part of its original.
+   *
+   * @param percentage    The percentage of the width taken from the modified image.
+   * @param originalImage The original image.
+   * @param modifiedImage The modified image, with the same size as the original.
+   * @param target        The store to create the split image in.
+   * @return A new ImageMetadata object holding the split image.
+   */
+  private ImageMetadata getSplitImage(int percentage, ImageMetadata originalImage,
+                                      ImageMetadata modifiedImage, ImageStore target) {
     int width = modifiedImage.getWidth();
+    int height = modifiedImage.getHeight();
     int startIndex = (int) (width * (percentage / 100.0));
 
-    int[][][] originalPixels = originalImage.getRgb();
-    int[][][] modifiedPixels = modifiedImage.getRgb();
-
-    BufferedImage image = new BufferedImage(width,
-        modifiedImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-    for (int i = 0; i < modifiedImage.getHeight(); i++) {
-      for (int j = 0; j < width; j++) {
-        int r;
-        int g;
-        int b;
-        if (j < startIndex) {
-          r = modifiedPixels[0][i][j];
-          g = modifiedPixels[1][i][j];
-          b = modifiedPixels[2][i][j];
-        } else {
-          r = originalPixels[0][i][j];
-          g = originalPixels[1][i][j];
-          b = originalPixels[2][i][j];
+    return render(target, width, height, (tile, pixels) -> {
+      int left = tile.getX();
+      int right = left + tile.getWidth();
+      if (right <= startIndex) {
+        modifiedImage.readTile(tile, pixels);
+      } else if (left >= startIndex) {
+        originalImage.readTile(tile, pixels);
+      } else {
+        // only the column of tiles holding the split line mixes both images
+        int[] original = new int[tile.getPixelCount() * 3];
+        modifiedImage.readTile(tile, pixels);
+        originalImage.readTile(tile, original);
+        int rowLength = tile.getWidth() * 3;
+        int from = (startIndex - left) * 3;
+        for (int i = 0; i < tile.getHeight(); i++) {
+          System.arraycopy(original, i * rowLength + from,
+              pixels, i * rowLength + from, rowLength - from);
         }
-
-        int pixelValue = (255 << 24) | (r << 16) | (g << 8) | b;
-        image.setRGB(j, i, pixelValue);
       }
-    }
-    return image;
+    });
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,417 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The named images of a model, kept within a budget of bytes of pixel data.
+ * When the images in memory exceed the budget, the least recently used ones are spilled to raw
+ * files in a spill directory and read back transparently the next time they are asked for.
+ * A spill file holds the width and height of the image followed by its red, green and blue
+ * planes, so it is written and read with straight bulk copies.
+ * The registry is safe for use from several threads. Operations lease the images they read
+ * with {@link #acquire(String)}, and an image that is overwritten or spilled while leased is
+ * only released once the last lease on it is returned.
+ */
+final class ImageRegistry {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ImageStore store;
+  private final LinkedHashMap<String, Entry> entries;
+  private final Map<ImageMetadata, Integer> leases;
+  private Path spillDirectory;
+  private long budget;
+  private long residentBytes;
+  private long spilledBytes;
+
+  /**
+   * A named image, either held in memory or spilled to a file. Its size is that of the image
+   * while it is in memory and that of its spill file, which holds every pixel, while it is on
+   * disk, so an image kept compactly in memory grows when it is read back.
+   */
+  private static final class Entry {
+    private long size;
+    private ImageMetadata image;
+    private Path spillFile;
+
+    private Entry(ImageMetadata image) {
+      this.image = image;
+      this.size = image.getSizeInBytes();
+    }
+  }
+
+  /**
+   * Constructs an empty registry.
+   *
+   * @param store          The store images are read back into after being spilled.
+   * @param budget         The number of bytes of pixel data to keep in memory.
+   * @param spillDirectory The directory to spill images to, or null to use a temporary one.
+   */
+  ImageRegistry(ImageStore store, long budget, Path spillDirectory) {
+    this.store = store;
+    this.budget = budget;
+    this.spillDirectory = spillDirectory;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.leases = new IdentityHashMap<>();
+  }
+
+  /**
+   * Check whether an image is stored under a name, in memory or on disk.
+   *
+   * @param name The name of the image.
+   * @return True if the name is known.
+   */
+  synchronized boolean contains(String name) {
+    return entries.containsKey(name);
+  }
+
+  /**
+   * Get the image stored under a name, reading it back from its spill file if needed.
+   * The image becomes the most recently used one. Reading an image back never spills another,
+   * so images fetched for one operation stay valid until its results are stored; the budget
+   * is enforced again by the next {@link #put(String, ImageMetadata)}.
+   *
+   * @param name The name of the image.
+   * @return The image, or null if no image is stored under the name.
+   * @throws UncheckedIOException If a spilled image cannot be read back.
+   */
+  synchronized ImageMetadata get(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.image == null) {
+      try {
+        entry.image = readSpillFile(entry.spillFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read spilled image " + name, e);
+      }
+      deleteSpillFile(entry);
+      entry.size = entry.image.getSizeInBytes();
+      residentBytes += entry.size;
+    }
+    return entry.image;
+  }
+
+  /**
+   * Get the image stored under a name, as {@link #get(String)} does, and lease it so it is not
+   * released while the caller reads it, even if the name is overwritten or the image spilled
+   * in the meantime. Every lease must be returned with {@link #returnLease(ImageMetadata)}.
+   *
+   * @param name The name of the image.
+   * @return The leased image, or null if no image is stored under the name.
+   * @throws UncheckedIOException If a spilled image cannot be read back.
+   */
+  synchronized ImageMetadata acquire(String name) {
+    ImageMetadata image = get(name);
+    if (image != null) {
+      leases.merge(image, 1, Integer::sum);
+    }
+    return image;
+  }
+
+  /**
+   * Return a lease taken by {@link #acquire(String)}, releasing the image if it is no longer
+   * stored under any name.
+   *
+   * @param image The leased image.
+   */
+  synchronized void returnLease(ImageMetadata image) {
+    Integer count = leases.get(image);
+    if (count == null) {
+      return;
+    }
+    if (count > 1) {
+      leases.put(image, count - 1);
+      return;
+    }
+    leases.remove(image);
+    releaseIfUnused(image);
+  }
+
+  /**
+   * Store an image under a name, spilling older images if the budget is exceeded. The image
+   * previously stored under the name is released, unless it is still stored under another
+   * name as well.
+   *
+   * @param name  The name of the image.
+   * @param image The image, already held in the store of the registry.
+   */
+  synchronized void put(String name, ImageMetadata image) {
+    Entry entry = new Entry(image);
+    Entry previous = entries.put(name, entry);
+    residentBytes += entry.size;
+    if (previous != null) {
+      if (previous.image == null) {
+        deleteSpillFile(previous);
+      } else {
+        residentBytes -= previous.size;
+        if (previous.image != image) {
+          releaseIfUnused(previous.image);
+        }
+      }
+    }
+    trim(entry);
+  }
+
+  /**
+   * Forget the image stored under a name, releasing it unless it is still stored under another
+   * name or leased.
+   *
+   * @param name The name of the image.
+   */
+  synchronized void remove(String name) {
+    Entry entry = entries.remove(name);
+    if (entry == null) {
+      return;
+    }
+    if (entry.image == null) {
+      deleteSpillFile(entry);
+    } else {
+      residentBytes -= entry.size;
+      releaseIfUnused(entry.image);
+    }
+  }
+
+  /**
+   * Spill an image to disk now, whatever the budget.
+   *
+   * @param name The name of the image.
+   * @return True if the image is on disk afterwards, false if no image has the name.
+   * @throws IOException If the spill file cannot be written.
+   */
+  synchronized boolean evict(String name) throws IOException {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return false;
+    }
+    spill(entry);
+    return true;
+  }
+
+  /**
+   * Spill every image held in memory to disk.
+   *
+   * @throws IOException If a spill file cannot be written.
+   */
+  synchronized void evictAll() throws IOException {
+    for (Entry entry : entries.values()) {
+      spill(entry);
+    }
+  }
+
+  /**
+   * Change the budget, spilling images right away if they no longer fit.
+   *
+   * @param budget The number of bytes of pixel data to keep in memory.
+   */
+  synchronized void setBudget(long budget) {
+    this.budget = budget;
+    trim(null);
+  }
+
+  /**
+   * Get the number of bytes of pixel data kept in memory before images are spilled.
+   *
+   * @return The budget in bytes.
+   */
+  synchronized long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Get the number of bytes of pixel data currently held in memory.
+   *
+   * @return The resident size in bytes.
+   */
+  synchronized long getResidentBytes() {
+    return residentBytes;
+  }
+
+  /**
+   * Get the number of bytes of pixel data currently spilled to disk.
+   *
+   * @return The spilled size in bytes.
+   */
+  synchronized long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  /**
+   * Get the number of images spilled to disk.
+   *
+   * @return The number of spilled images.
+   */
+  synchronized int getSpilledCount() {
+    int count = 0;
+    for (Entry entry : entries.values()) {
+      if (entry.image == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of names known to the registry.
+   *
+   * @return The number of images, in memory or on disk.
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Get the directory images are spilled to.
+   *
+   * @return The spill directory, or null if nothing has been spilled to a temporary one yet.
+   */
+  synchronized Path getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /**
+   * Spill the least recently used images until the resident images fit in the budget.
+   * Images that cannot be written are left in memory.
+   *
+   * @param keep An entry that must stay in memory, or null.
+   */
+  private void trim(Entry keep) {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (residentBytes > budget && iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      if (entry == keep || entry.image == null) {
+        continue;
+      }
+      try {
+        spill(entry);
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Write an image to its spill file and drop it from memory.
+   *
+   * @param entry The entry to spill; nothing happens if it is already on disk.
+   * @throws IOException If the spill file cannot be written.
+   */
+  private void spill(Entry entry) throws IOException {
+    if (entry.image == null) {
+      return;
+    }
+    if (spillDirectory == null) {
+      spillDirectory = Files.createTempDirectory("image-spill");
+      spillDirectory.toFile().deleteOnExit();
+    } else {
+      Files.createDirectories(spillDirectory);
+    }
+    Path file = Files.createTempFile(spillDirectory, "image", ".raw");
+    file.toFile().deleteOnExit();
+    try {
+      writeSpillFile(entry.image, file);
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    ImageMetadata image = entry.image;
+    entry.image = null;
+    entry.spillFile = file;
+    residentBytes -= entry.size;
+    entry.size = 3L * image.getWidth() * image.getHeight();
+    spilledBytes += entry.size;
+    releaseIfUnused(image);
+  }
+
+  /**
+   * Release an image unless it is still held in memory under some name or leased.
+   *
+   * @param image The image to release.
+   */
+  private void releaseIfUnused(ImageMetadata image) {
+    if (leases.containsKey(image)) {
+      return;
+    }
+    for (Entry entry : entries.values()) {
+      if (entry.image == image) {
+        return;
+      }
+    }
+    image.release();
+  }
+
+  /**
+   * Delete the spill file of an entry, which no longer needs it.
+   *
+   * @param entry The entry whose file is deleted.
+   */
+  private void deleteSpillFile(Entry entry) {
+    try {
+      Files.deleteIfExists(entry.spillFile);
+    } catch (IOException e) {
+      // the file is removed when the application exits
+    }
+    entry.spillFile = null;
+    spilledBytes -= entry.size;
+  }
+
+  private static void writeSpillFile(ImageMetadata image, Path file) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+      out.writeInt(width);
+      out.writeInt(height);
+      byte[][] planes = image.planes();
+      byte[] row = new byte[width];
+      for (int channel = 0; channel < 3; channel++) {
+        if (planes != null) {
+          out.write(planes[channel]);
+          continue;
+        }
+        for (int i = 0; i < height; i++) {
+          image.readRow(channel, i, row);
+          out.write(row);
+        }
+      }
+    }
+  }
+
+  private ImageMetadata readSpillFile(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+      int width = in.readInt();
+      int height = in.readInt();
+      ImageMetadata image = store.create(width, height);
+      byte[][] planes = image.planes();
+      byte[] row = new byte[width];
+      try {
+        for (int channel = 0; channel < 3; channel++) {
+          if (planes != null) {
+            in.readFully(planes[channel]);
+            continue;
+          }
+          for (int i = 0; i < height; i++) {
+            in.readFully(row);
+            image.writeRow(channel, i, row);
+          }
+        }
+      } catch (IOException e) {
+        image.release();
+        throw e;
+      }
+      return image;
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package model;
+
+import java.util.List;
+
+/**
+ * The histograms of the red, green and blue channels of an image, with the statistics derived
+ * from them: the smallest, largest and mean value of each channel, its standard deviation, its
+ * percentiles and its peak, the value it holds most often. The histograms are all that is
+ * counted, once per image in a single pass over its tiles, and every statistic is then worked
+ * out from their 256 bins. They are kept with the image by
+ * {@link ImageMetadata#getStatistics(TileExecutor)}, so the histogram plot, color correction
+ * and the stats command share them.
+ */
+public final class ImageStatistics {
+
+  private final long pixelCount;
+  private final int[][] histograms;
+  private final int[] min;
+  private final int[] max;
+  private final double[] mean;
+  private final double[] standardDeviation;
+  private final int[] peak;
+
+  /**
+   * Constructs the statistics of an image from its histograms.
+   *
+   * @param histograms The red, green and blue histograms, each holding the 256 counts of the
+   *                   values of its channel. They must count the same number of pixels.
+   * @throws IllegalArgumentException If there are not three histograms of 256 non-negative
+   *                                  counts each, or they count different numbers of pixels.
+   */
+  public ImageStatistics(int[][] histograms) {
+    if (histograms.length != 3) {
+      throw new IllegalArgumentException("Expected 3 histograms but got " + histograms.length);
+    }
+    this.histograms = new int[3][];
+    long[] counts = new long[3];
+    for (int channel = 0; channel < 3; channel++) {
+      if (histograms[channel].length != 256) {
+        throw new IllegalArgumentException("A histogram needs 256 bins.");
+      }
+      this.histograms[channel] = histograms[channel].clone();
+      for (int count : histograms[channel]) {
+        if (count < 0) {
+          throw new IllegalArgumentException("A histogram cannot hold negative counts.");
+        }
+        counts[channel] += count;
+      }
+    }
+    if (counts[1] != counts[0] || counts[2] != counts[0]) {
+      throw new IllegalArgumentException("The histograms count different numbers of pixels.");
+    }
+    this.pixelCount = counts[0];
+    this.min = new int[3];
+    this.max = new int[3];
+    this.mean = new double[3];
+    this.standardDeviation = new double[3];
+    this.peak = new int[3];
+    for (int channel = 0; channel < 3; channel++) {
+      int[] histogram = this.histograms[channel];
+      int low = 0;
+      while (low < 255 && histogram[low] == 0) {
+        low++;
+      }
+      int high = 255;
+      while (high > 0 && histogram[high] == 0) {
+        high--;
+      }
+      long sum = 0;
+      int top = 0;
+      for (int value = 0; value < 256; value++) {
+        sum += (long) value * histogram[value];
+        if (histogram[value] > histogram[top]) {
+          top = value;
+        }
+      }
+      min[channel] = pixelCount == 0 ? 0 : low;
+      max[channel] = pixelCount == 0 ? 0 : high;
+      mean[channel] = pixelCount == 0 ? 0.0 : (double) sum / pixelCount;
+      peak[channel] = top;
+      double squares = 0.0;
+      for (int value = 0; value < 256; value++) {
+        double difference = value - mean[channel];
+        squares += difference * difference * histogram[value];
+      }
+      standardDeviation[channel] = pixelCount == 0 ? 0.0 : Math.sqrt(squares / pixelCount);
+    }
+  }
+
+  /**
+   * Count the histograms of an image. Every task of the executor counts its own tiles, and
+   * the counts are added up at the end.
+   *
+   * @param image    The image.
+   * @param executor The executor to count the tiles on.
+   * @return The statistics of the image.
+   */
+  static ImageStatistics of(ImageMetadata image, TileExecutor executor) {
+    List<int[][]> counts = executor.collect(image.getTiles(),
+        (long) image.getWidth() * image.getHeight(),
+        () -> new int[][]{new int[Tile.SIZE * Tile.SIZE * 3], new int[3 * 256]},
+        (state, tile) -> {
+          int[] pixels = state[0];
+          int[] bins = state[1];
+          image.readTile(tile, pixels);
+          int end = tile.getPixelCount() * 3;
+          for (int k = 0; k < end; k += 3) {
+            bins[pixels[k]]++;
+            bins[256 + pixels[k + 1]]++;
+            bins[512 + pixels[k + 2]]++;
+          }
+        });
+    int[][] histograms = new int[3][256];
+    for (int[][] state : counts) {
+      int[] bins = state[1];
+      for (int channel = 0; channel < 3; channel++) {
+        for (int value = 0; value < 256; value++) {
+          histograms[channel][value] += bins[channel * 256 + value];
+        }
+      }
+    }
+    return new ImageStatistics(histograms);
+  }
+
+  /**
+   * Get the number of pixels of the image.
+   *
+   * @return The number of pixels.
+   */
+  public long getPixelCount() {
+    return pixelCount;
+  }
+
+  /**
+   * Get the histogram of a channel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return A copy of the 256 counts of the values of the channel.
+   */
+  public int[] getHistogram(int channel) {
+    return histograms[channel].clone();
+  }
+
+  /**
+   * Get how many pixels hold a value in a channel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param value   The value in the range [0, 255].
+   * @return The number of pixels.
+   */
+  public int getFrequency(int channel, int value) {
+    return histograms[channel][value];
+  }
+
+  /**
+   * Get the smallest value of a channel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return The smallest value, or 0 for an empty image.
+   */
+  public int getMin(int channel) {
+    return min[channel];
+  }
+
+  /**
+   * Get the largest value of a channel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return The largest value, or 0 for an empty image.
+   */
+  public int getMax(int channel) {
+    return max[channel];
+  }
+
+  /**
+   * Get the mean value of a channel.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return The mean value, or 0 for an empty image.
+   */
+  public double getMean(int channel) {
+    return mean[channel];
+  }
+
+  /**
+   * Get the standard deviation of the values of a channel over all the pixels of the image.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return The standard deviation, or 0 for an empty image.
+   */
+  public double getStandardDeviation(int channel) {
+    return standardDeviation[channel];
+  }
+
+  /**
+   * Get a percentile of the values of a channel, the smallest value that at least that
+   * percentage of the pixels do not exceed.
+   *
+   * @param channel    The channel index (0 for red, 1 for green, 2 for blue).
+   * @param percentile The percentage of pixels, from 0 to 100.
+   * @return The value, or 0 for an empty image.
+   * @throws IllegalArgumentException If the percentage is not within 0 to 100.
+   */
+  public int getPercentile(int channel, double percentile) {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("Percentile must be within 0 to 100: " + percentile);
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * pixelCount));
+    int[] histogram = histograms[channel];
+    long seen = 0;
+    for (int value = 0; value < 256; value++) {
+      seen += histogram[value];
+      if (seen >= rank) {
+        return value;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Get the value a channel holds most often, the smallest one if several are as frequent.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @return The peak value.
+   */
+  public int getPeak(int channel) {
+    return peak[channel];
+  }
+}
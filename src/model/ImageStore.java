@@ -0,0 +1,117 @@
+package model;
+
+/**
+ * The kinds of memory an {@link ImageProcessingModelImpl} can keep its images in.
+ */
+public enum ImageStore {
+
+  /**
+   * Images are held in heap byte arrays, one per channel.
+   */
+  HEAP {
+    @Override
+    PixelBuffer allocate(int width, int height) {
+      long size = (long) width * height;
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Image of " + width + "x" + height
+            + " pixels is too large.");
+      }
+      return new PlanarPixelBuffer(width, new byte[3][(int) size]);
+    }
+  },
+
+  /**
+   * Images are held in direct buffers outside the Java heap, freed as soon as the image
+   * is overwritten or removed from the model.
+   */
+  OFF_HEAP {
+    @Override
+    PixelBuffer allocate(int width, int height) {
+      return new DirectPixelBuffer(width, height);
+    }
+  },
+
+  /**
+   * Images are held on the heap in tiles of {@link Tile#SIZE} by {@link Tile#SIZE} pixels,
+   * with the three channels of each pixel next to each other, so operations working a tile
+   * at a time touch one small contiguous block of memory.
+   */
+  TILED {
+    @Override
+    PixelBuffer allocate(int width, int height) {
+      return new TiledPixelBuffer(width, height);
+    }
+  };
+
+  /**
+   * Allocate zeroed storage for the three planes of an image.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The new pixel storage.
+   */
+  abstract PixelBuffer allocate(int width, int height);
+
+  /**
+   * Create a blank image in this store, to be filled in by the model before it is published.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return A new black image.
+   */
+  ImageMetadata create(int width, int height) {
+    return new ImageMetadata(width, height, allocate(width, height), this);
+  }
+
+  /**
+   * Get an image held in this store, copying it over if it is held elsewhere.
+   *
+   * @param image The image to adopt.
+   * @return The image itself if it already lives in this store, otherwise a copy.
+   */
+  public ImageMetadata adopt(ImageMetadata image) {
+    if (image.getStore() == this) {
+      return image;
+    }
+    return copy(image);
+  }
+
+  /**
+   * Copy an image into this store.
+   *
+   * @param image The image to copy.
+   * @return A copy of the image held in this store.
+   */
+  ImageMetadata copy(ImageMetadata image) {
+    int width = image.getWidth();
+    ImageMetadata copy = create(width, image.getHeight());
+    byte[] row = new byte[width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < image.getHeight(); i++) {
+        image.readRow(channel, i, row);
+        copy.writeRow(channel, i, row);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Get the store with the given name, as used by the {@code image.store} system property.
+   *
+   * @param name The store name, "heap", "offheap" or "tiled".
+   * @return The matching store.
+   * @throws IllegalArgumentException If the name does not match any store.
+   */
+  public static ImageStore fromName(String name) {
+    switch (name.toLowerCase().replace("-", "").replace("_", "")) {
+      case "heap":
+        return HEAP;
+      case "offheap":
+        return OFF_HEAP;
+      case "tiled":
+        return TILED;
+      default:
+        throw new IllegalArgumentException("Unknown image store " + name);
+    }
+  }
+}
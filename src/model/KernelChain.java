@@ -0,0 +1,51 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Several kernels applied one after the other to each run of pixels. Consecutive
+ * {@link LookupTable} stages are folded together when the chain is built, so a chain of point
+ * operations costs a single lookup per value.
+ */
+final class KernelChain implements PixelKernel {
+  private final PixelKernel[] stages;
+
+  private KernelChain(PixelKernel[] stages) {
+    this.stages = stages;
+  }
+
+  /**
+   * Chain two kernels, flattening chains and folding adjacent lookup tables.
+   *
+   * @param first  The kernel applied first.
+   * @param second The kernel applied to the results of the first.
+   * @return The chained kernel, which is a single lookup table if both kernels fold into one.
+   */
+  static PixelKernel of(PixelKernel first, PixelKernel second) {
+    List<PixelKernel> stages = new ArrayList<>();
+    for (PixelKernel kernel : new PixelKernel[]{first, second}) {
+      List<PixelKernel> parts = kernel instanceof KernelChain
+          ? Arrays.asList(((KernelChain) kernel).stages) : List.of(kernel);
+      for (PixelKernel part : parts) {
+        int last = stages.size() - 1;
+        if (last >= 0 && stages.get(last) instanceof LookupTable
+            && part instanceof LookupTable) {
+          stages.set(last, ((LookupTable) stages.get(last)).fold((LookupTable) part));
+        } else {
+          stages.add(part);
+        }
+      }
+    }
+    return stages.size() == 1
+        ? stages.get(0) : new KernelChain(stages.toArray(new PixelKernel[0]));
+  }
+
+  @Override
+  public void apply(int[] pixels, int from, int to) {
+    for (PixelKernel stage : stages) {
+      stage.apply(pixels, from, to);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A point operation compiled to a 256 entry table per channel, so applying it to a pixel is a
+ * single table lookup per channel whatever the operation costs to evaluate. Two tables applied
+ * one after the other fold into a single table.
+ */
+final class LookupTable implements PixelKernel {
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  private LookupTable(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Compile a point operation applied the same way to every channel.
+   *
+   * @param function The operation, mapping every value in [0, 255] into [0, 255].
+   * @return The table of the operation.
+   */
+  static LookupTable of(IntUnaryOperator function) {
+    int[] table = tabulate(function);
+    return new LookupTable(table, table, table);
+  }
+
+  /**
+   * Compile a point operation with a different function for each channel.
+   *
+   * @param red   The operation on red values, mapping [0, 255] into [0, 255].
+   * @param green The operation on green values.
+   * @param blue  The operation on blue values.
+   * @return The table of the operation.
+   */
+  static LookupTable of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue) {
+    return new LookupTable(tabulate(red), tabulate(green), tabulate(blue));
+  }
+
+  private static int[] tabulate(IntUnaryOperator function) {
+    int[] table = new int[256];
+    for (int value = 0; value < 256; value++) {
+      table[value] = function.applyAsInt(value);
+    }
+    return table;
+  }
+
+  /**
+   * Fold this table and another one applied after it into a single table.
+   *
+   * @param next The table applied to the results of this one.
+   * @return The folded table.
+   */
+  LookupTable fold(LookupTable next) {
+    return new LookupTable(fold(red, next.red), fold(green, next.green), fold(blue, next.blue));
+  }
+
+  private static int[] fold(int[] first, int[] second) {
+    int[] table = new int[256];
+    for (int value = 0; value < 256; value++) {
+      table[value] = second[first[value]];
+    }
+    return table;
+  }
+
+  @Override
+  public void apply(int[] pixels, int from, int to) {
+    for (int k = from; k < to; k += 3) {
+      pixels[k] = red[pixels[k]];
+      pixels[k + 1] = green[pixels[k + 1]];
+      pixels[k + 2] = blue[pixels[k + 2]];
+    }
+  }
+}
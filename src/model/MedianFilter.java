@@ -0,0 +1,368 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A median filter taking constant time per pixel, after Perreault and Hebert. Every column of
+ * the image keeps a histogram of the values of the window rows around the current row, so
+ * moving down a row only takes one value out of and puts one value into each column histogram.
+ * The window around a pixel keeps a coarse histogram of 16 bins, updated as the pixel moves
+ * right by adding the coarse column histogram entering the window and subtracting the one
+ * leaving it, which costs the same whatever the radius. The 256 fine bins of the window are
+ * split into 16 segments, one per coarse bin, and a segment is only brought up to date when the
+ * median falls in its coarse bin, so most steps touch one segment of 16 fine bins.
+ * Each channel is filtered on its own, and pixels past the edges repeat the edge pixels. The
+ * image is filtered in parts of rows, so parts can be filtered in parallel. Images wider than a
+ * band are split into bands of columns, each with the histograms of the columns within the
+ * radius on either side. The parts of a band follow each other down the image, and a task
+ * carries the column histograms of a part down to the next one, reading the two rows entering
+ * and leaving the window from the image at every row. The histograms are only built from all
+ * the rows of a window when a task starts on a band, and parts are tall enough for that to cost
+ * a few rows read per row filtered whatever the radius. A part is filtered a block of rows at a
+ * time, so the buffer of values stays small however tall the part is.
+ */
+final class MedianFilter {
+
+  /**
+   * The largest radius, which keeps the number of values in a window within an int.
+   */
+  static final int MAX_RADIUS = 10000;
+
+  /**
+   * The number of columns of a band of an image wider than that, unless twice the radius is
+   * more, so the columns on either side of a band are never more than those in it.
+   */
+  private static final int BAND_WIDTH = Tile.SIZE * 16;
+
+  /**
+   * The number of pixels of a block that the number of rows of a block is chosen for. A block
+   * has at least one row and at most {@link Tile#SIZE}.
+   */
+  private static final int BLOCK_PIXELS = Tile.SIZE * Tile.SIZE * 16;
+
+  /**
+   * The most rows read to build the column histograms at the start of a part for every row of
+   * the part, which sets how tall parts are for large radii.
+   */
+  private static final int START_ROWS = 4;
+
+  private static final int LEVELS = 256;
+  private static final int FINE_BITS = 4;
+  private static final int FINE_LEVELS = 1 << FINE_BITS;
+  private static final int COARSE_LEVELS = LEVELS >> FINE_BITS;
+
+  private final int radius;
+  private final int middle;
+
+  /**
+   * Constructs a median filter.
+   *
+   * @param radius The number of pixels on each side of a pixel in its window.
+   * @throws IllegalArgumentException If the radius is negative or above {@link #MAX_RADIUS}.
+   */
+  MedianFilter(int radius) {
+    if (radius < 0 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("radius must be within 0 to " + MAX_RADIUS);
+    }
+    this.radius = radius;
+    int side = 2 * radius + 1;
+    this.middle = (side * side + 1) / 2;
+  }
+
+  /**
+   * Split an image into the parts it is filtered in, band after band and from the top within a
+   * band, so that consecutive parts of a band lie right below each other.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The parts covering the image.
+   */
+  List<Tile> parts(int width, int height) {
+    int band = Math.max(BAND_WIDTH, 2 * radius);
+    if (width <= band) {
+      band = width;
+    }
+    int window = Math.min(2 * radius + 1, height);
+    int rows = Math.max(blockRows(band), (window + START_ROWS - 1) / START_ROWS);
+    List<Tile> parts = new ArrayList<>();
+    for (int x = 0; x < width; x += Math.min(band, width - x)) {
+      for (int y = 0; y < height; y += Math.min(rows, height - y)) {
+        parts.add(new Tile(x, y, Math.min(band, width - x), Math.min(rows, height - y)));
+      }
+    }
+    return parts;
+  }
+
+  /**
+   * Create the scratch state of a task filtering parts of an image.
+   *
+   * @return A state holding no histograms yet.
+   */
+  Scratch newScratch() {
+    return new Scratch();
+  }
+
+  /**
+   * Get the number of rows of the blocks of parts with a number of columns.
+   */
+  private static int blockRows(int columns) {
+    return Math.max(1, Math.min(Tile.SIZE, BLOCK_PIXELS / columns));
+  }
+
+  /**
+   * Filter a part of an image into a new image, a block of rows at a time. The column
+   * histograms are carried down from the part filtered last with the same scratch state if this
+   * part lies right below it, and built from the rows of the window of the first row of the
+   * part otherwise.
+   *
+   * @param image    The image to filter.
+   * @param part     The part, as given by {@link #parts(int, int)}.
+   * @param scratch  The scratch state of the task.
+   * @param newImage The image receiving the filtered values.
+   */
+  void apply(ImageMetadata image, Tile part, Scratch scratch, ImageMetadata newImage) {
+    int width = image.getWidth();
+    int left = Math.max(0, part.getX() - radius);
+    int right = (int) Math.min(width, (long) part.getX() + part.getWidth() + radius);
+    int first = part.getY();
+    if (scratch.center == first - 1 && scratch.left == left && scratch.right == right) {
+      moveDown(image, first, scratch);
+    } else {
+      start(image, left, right, first, scratch);
+    }
+    int rows = blockRows(part.getWidth());
+    int length = part.getWidth() * Math.min(rows, part.getHeight()) * 3;
+    if (scratch.pixels.length < length) {
+      scratch.pixels = new int[length];
+    }
+    int[] pixels = scratch.pixels;
+    int end = part.getX() + part.getWidth();
+    int bottom = first + part.getHeight();
+    for (int y = first; y < bottom; y += Math.min(rows, bottom - y)) {
+      Tile block = new Tile(part.getX(), y, part.getWidth(), Math.min(rows, bottom - y));
+      for (int i = 0; i < block.getHeight(); i++) {
+        if (y + i > first) {
+          moveDown(image, y + i, scratch);
+        }
+        for (int channel = 0; channel < 3; channel++) {
+          int[] columns = scratch.columns[channel];
+          int[] coarseColumns = scratch.coarseColumns[channel];
+          startWindow(coarseColumns, left, part.getX(), width, scratch.coarseWindow);
+          Arrays.fill(scratch.segmentColumns, Integer.MIN_VALUE / 2);
+          int k = i * part.getWidth() * 3 + channel;
+          for (int j = part.getX(); j < end; j++, k += 3) {
+            if (j > part.getX()) {
+              moveWindow(coarseColumns, clamp(j + radius, width) - left,
+                  clamp(j - 1 - radius, width) - left, scratch.coarseWindow);
+            }
+            pixels[k] = median(columns, left, width, j, scratch.window, scratch.coarseWindow,
+                scratch.segmentColumns);
+          }
+        }
+      }
+      newImage.writeTile(block, pixels);
+    }
+  }
+
+  private static int clamp(int index, int size) {
+    return Math.min(Math.max(index, 0), size - 1);
+  }
+
+  /**
+   * Build the column histograms of a range of columns around a row from the rows of its window.
+   * The histograms held before are cleared first, by taking the rows of their window out again
+   * when that touches fewer values than there are bins.
+   */
+  private void start(ImageMetadata image, int left, int right, int row, Scratch scratch) {
+    int count = right - left;
+    if (scratch.center != Integer.MIN_VALUE) {
+      if (2 * radius + 1 < LEVELS) {
+        addWindow(image, scratch.center, -1, scratch);
+      } else {
+        for (int channel = 0; channel < 3; channel++) {
+          Arrays.fill(scratch.columns[channel], 0);
+          Arrays.fill(scratch.coarseColumns[channel], 0);
+        }
+      }
+    }
+    if (scratch.row.length < count * 3) {
+      scratch.row = new int[count * 3];
+    }
+    for (int channel = 0; channel < 3; channel++) {
+      if (scratch.columns[channel].length < count * LEVELS) {
+        scratch.columns[channel] = new int[count * LEVELS];
+        scratch.coarseColumns[channel] = new int[count * COARSE_LEVELS];
+      }
+    }
+    scratch.left = left;
+    scratch.right = right;
+    addWindow(image, row, 1, scratch);
+    scratch.center = row;
+  }
+
+  /**
+   * Add the rows of the window around a row to the column histograms a number of times,
+   * counting the rows past the edges as copies of the edge rows.
+   */
+  private void addWindow(ImageMetadata image, int row, int times, Scratch scratch) {
+    int height = image.getHeight();
+    for (int y = Math.max(0, row - radius); y <= Math.min(height - 1, row + radius); y++) {
+      addRow(image, y, times, scratch);
+    }
+    if (row - radius < 0) {
+      addRow(image, 0, times * (radius - row), scratch);
+    }
+    if (row + radius > height - 1) {
+      addRow(image, height - 1, times * (row + radius - (height - 1)), scratch);
+    }
+  }
+
+  /**
+   * Move the column histograms from the row above a row to the row, taking out the row leaving
+   * the window and adding the one entering it.
+   */
+  private void moveDown(ImageMetadata image, int row, Scratch scratch) {
+    int height = image.getHeight();
+    int leaving = clamp(row - 1 - radius, height);
+    int entering = clamp(row + radius, height);
+    if (leaving != entering) {
+      addRow(image, leaving, -1, scratch);
+      addRow(image, entering, 1, scratch);
+    }
+    scratch.center = row;
+  }
+
+  /**
+   * Add the values of a row of the image to the column histograms of every channel a number of
+   * times, which is negative to take them out.
+   */
+  private static void addRow(ImageMetadata image, int row, int times, Scratch scratch) {
+    int count = scratch.right - scratch.left;
+    int[] values = scratch.row;
+    image.readTile(new Tile(scratch.left, row, count, 1), values);
+    for (int channel = 0; channel < 3; channel++) {
+      int[] columns = scratch.columns[channel];
+      int[] coarseColumns = scratch.coarseColumns[channel];
+      int k = channel;
+      for (int j = 0; j < count; j++, k += 3) {
+        int value = values[k];
+        columns[j * LEVELS + value] += times;
+        coarseColumns[j * COARSE_LEVELS + (value >> FINE_BITS)] += times;
+      }
+    }
+  }
+
+  /**
+   * Build the coarse window histogram of the first pixel of a row of a part, where the columns
+   * left of the image repeat the first column.
+   */
+  private void startWindow(int[] coarseColumns, int offset, int column, int width,
+                           int[] coarseWindow) {
+    Arrays.fill(coarseWindow, 0);
+    addColumns(coarseColumns, COARSE_LEVELS, 0, COARSE_LEVELS, column, offset, width,
+        coarseWindow);
+  }
+
+  /**
+   * Add a range of bins of every column histogram in the window around a column to the window
+   * histogram, counting the columns past the edges as copies of the edge columns. The
+   * histograms start at the column given by the offset.
+   */
+  private void addColumns(int[] histograms, int levels, int from, int to, int column,
+                          int offset, int width, int[] window) {
+    int left = column - radius;
+    int right = column + radius;
+    if (left < 0) {
+      addColumn(histograms, levels, from, to, -offset, -left, window);
+      left = 0;
+    }
+    if (right > width - 1) {
+      addColumn(histograms, levels, from, to, width - 1 - offset, right - (width - 1), window);
+      right = width - 1;
+    }
+    for (int j = left; j <= right; j++) {
+      addColumn(histograms, levels, from, to, j - offset, 1, window);
+    }
+  }
+
+  private static void addColumn(int[] histograms, int levels, int from, int to, int column,
+                                int times, int[] window) {
+    int base = column * levels;
+    for (int v = from; v < to; v++) {
+      window[v] += times * histograms[base + v];
+    }
+  }
+
+  /**
+   * Move the coarse window one pixel right, adding the column histogram entering it and
+   * subtracting the one leaving it.
+   */
+  private static void moveWindow(int[] coarseColumns, int entering, int leaving,
+                                 int[] coarseWindow) {
+    int in = entering * COARSE_LEVELS;
+    int out = leaving * COARSE_LEVELS;
+    for (int v = 0; v < COARSE_LEVELS; v++) {
+      coarseWindow[v] += coarseColumns[in + v] - coarseColumns[out + v];
+    }
+  }
+
+  /**
+   * Find the median of the window around a column, first the coarse bin holding it and then the
+   * fine bin, after bringing the segment of fine bins of that coarse bin up to date. The
+   * histograms start at the column given by the offset.
+   */
+  private int median(int[] columns, int offset, int width, int column, int[] window,
+                     int[] coarseWindow, int[] segmentColumns) {
+    int count = 0;
+    int coarse = 0;
+    while (count + coarseWindow[coarse] < middle) {
+      count += coarseWindow[coarse];
+      coarse++;
+    }
+    int from = coarse << FINE_BITS;
+    int to = from + FINE_LEVELS;
+    int last = segmentColumns[coarse];
+    if (column - last > 2 * radius + 1) {
+      Arrays.fill(window, from, to, 0);
+      addColumns(columns, LEVELS, from, to, column, offset, width, window);
+    } else {
+      for (int j = last + 1; j <= column; j++) {
+        int in = (clamp(j + radius, width) - offset) * LEVELS;
+        int out = (clamp(j - 1 - radius, width) - offset) * LEVELS;
+        for (int v = from; v < to; v++) {
+          window[v] += columns[in + v] - columns[out + v];
+        }
+      }
+    }
+    segmentColumns[coarse] = column;
+
+    int value = from;
+    while (count + window[value] < middle) {
+      count += window[value];
+      value++;
+    }
+    return value;
+  }
+
+  /**
+   * The scratch state of a task: the buffer of the values of a block, and the column histograms
+   * of every channel for the columns of the last part filtered and around its last row.
+   */
+  final class Scratch {
+    private int[] pixels = new int[0];
+    private int[] row = new int[0];
+    private final int[][] columns = {new int[0], new int[0], new int[0]};
+    private final int[][] coarseColumns = {new int[0], new int[0], new int[0]};
+    private final int[] window = new int[LEVELS];
+    private final int[] coarseWindow = new int[COARSE_LEVELS];
+    private final int[] segmentColumns = new int[COARSE_LEVELS];
+    private int left;
+    private int right;
+    private int center = Integer.MIN_VALUE;
+
+    private Scratch() {
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package model;
+
+/**
+ * Storage for the pixels of an image. Values are addressed by channel and row-major index,
+ * so a row of a channel is a contiguous range of offsets, whatever the layout in memory.
+ * Whole tiles can be copied in and out as interleaved buffers.
+ */
+interface PixelBuffer {
+
+  /**
+   * Get one channel value.
+   *
+   * @param channel The channel index (0 for red, 1 for green, 2 for blue).
+   * @param index   The row-major index of the pixel.
+   * @return The channel value in the range [0, 255].
+   */
+  int get(int channel, int index);
+
+  /**
+   * Copy a range of a channel plane into an int buffer.
+   *
+   * @param channel The channel index.
+   * @param offset  The row-major index of the first value.
+   * @param dest    The buffer receiving the values.
+   * @param length  The number of values to copy.
+   */
+  void read(int channel, int offset, int[] dest, int length);
+
+  /**
+   * Copy a range of a channel plane into a byte buffer.
+   *
+   * @param channel    The channel index.
+   * @param offset     The row-major index of the first value.
+   * @param dest       The buffer receiving the values.
+   * @param destOffset The first index written in the buffer.
+   * @param length     The number of values to copy.
+   */
+  void read(int channel, int offset, byte[] dest, int destOffset, int length);
+
+  /**
+   * Copy a range of bytes into a channel plane.
+   *
+   * @param channel   The channel index.
+   * @param offset    The row-major index of the first value.
+   * @param src       The buffer holding the values.
+   * @param srcOffset The first index read from the buffer.
+   * @param length    The number of values to copy.
+   */
+  void write(int channel, int offset, byte[] src, int srcOffset, int length);
+
+  /**
+   * Copy the pixels of a tile into an interleaved int buffer, laid out as described by
+   * {@link Tile}.
+   *
+   * @param tile The tile to read, lying within the image.
+   * @param dest The buffer receiving the values, at least three times the tile size long.
+   */
+  void readTile(Tile tile, int[] dest);
+
+  /**
+   * Copy one channel of a tile into its slots of an interleaved int buffer, leaving the
+   * values of the other channels untouched.
+   *
+   * @param tile    The tile to read, lying within the image.
+   * @param channel The channel index.
+   * @param dest    The buffer receiving the values, at least three times the tile size long.
+   */
+  void readTile(Tile tile, int channel, int[] dest);
+
+  /**
+   * Copy an interleaved int buffer into the pixels of a tile. The values must already lie
+   * in the range [0, 255].
+   *
+   * @param tile The tile to write, lying within the image.
+   * @param src  The buffer holding the values, laid out as described by {@link Tile}.
+   */
+  void writeTile(Tile tile, int[] src);
+
+  /**
+   * Get the planes when they are held as heap arrays.
+   *
+   * @return The red, green and blue planes, or null if the buffer is not on the heap.
+   */
+  byte[][] planes();
+
+  /**
+   * Get the number of bytes used to hold the pixels.
+   *
+   * @return The size of the storage in bytes.
+   */
+  long getSizeInBytes();
+
+  /**
+   * Free the memory held by this buffer. Any later access fails.
+   */
+  void release();
+}
@@ -0,0 +1,196 @@
+package model;
+
+import static model.helpers.ImageHelper.correctPixelRange;
+
+/**
+ * A per-pixel operation, where every result pixel depends only on the same pixel of the source.
+ * Kernels work in place on interleaved red, green and blue values, laid out as in a tile buffer
+ * (see {@link Tile}), so several kernels chained with {@link #andThen(PixelKernel)} run as a
+ * single pass over an image with no intermediate images in between.
+ */
+@FunctionalInterface
+public interface PixelKernel {
+
+  /**
+   * Apply the kernel to a run of pixels, in place.
+   *
+   * @param pixels The interleaved values of the pixels, in the range [0, 255].
+   * @param from   The index of the red value of the first pixel.
+   * @param to     The index just past the blue value of the last pixel.
+   */
+  void apply(int[] pixels, int from, int to);
+
+  /**
+   * Chain another kernel after this one. The chained kernel runs both kernels on each run of
+   * pixels it is given, so the values stay in cache between the two, and point operations
+   * chained together fold into a single lookup table.
+   *
+   * @param next The kernel applied to the results of this one.
+   * @return The chained kernel.
+   */
+  default PixelKernel andThen(PixelKernel next) {
+    return KernelChain.of(this, next);
+  }
+
+  /**
+   * Get a kernel brightening or darkening every value by a fixed amount.
+   *
+   * @param increments The amount added to every value, negative to darken.
+   * @return The brighten kernel.
+   */
+  static PixelKernel brighten(int increments) {
+    return LookupTable.of(value -> correctPixelRange(value + increments));
+  }
+
+  /**
+   * Get a kernel mapping every value through a curve given by control points. Values between
+   * two control points are interpolated linearly and rounded, and values before the first or
+   * after the last point map to the output of that point.
+   *
+   * @param inputs  The input values of the control points, strictly increasing within [0, 255].
+   * @param outputs The output values of the control points, within [0, 255].
+   * @return The curves kernel.
+   * @throws IllegalArgumentException If the control points are not valid.
+   */
+  static PixelKernel curves(int[] inputs, int[] outputs) {
+    if (inputs.length == 0 || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("Curves need matching control point inputs and outputs");
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      if (inputs[i] < 0 || inputs[i] > 255 || outputs[i] < 0 || outputs[i] > 255
+          || (i > 0 && inputs[i] <= inputs[i - 1])) {
+        throw new IllegalArgumentException("Invalid control point " + inputs[i] + ","
+            + outputs[i]);
+      }
+    }
+    return LookupTable.of(value -> {
+      int point = 0;
+      while (point < inputs.length && inputs[point] < value) {
+        point++;
+      }
+      if (point == 0) {
+        return outputs[0];
+      }
+      if (point == inputs.length) {
+        return outputs[inputs.length - 1];
+      }
+      int x0 = inputs[point - 1];
+      int y0 = outputs[point - 1];
+      return (int) Math.round(y0 + (double) (value - x0) * (outputs[point] - y0)
+          / (inputs[point] - x0));
+    });
+  }
+
+  /**
+   * Get a kernel multiplying every pixel by a color matrix in integer fixed-point arithmetic.
+   * The red result is {@code matrix[0][0] * r + matrix[0][1] * g + matrix[0][2] * b}, plus
+   * {@code matrix[0][3]} if the row has a fourth value, rounded down and clamped to
+   * [0, 255], and likewise for green and blue with the second and third rows.
+   *
+   * @param matrix Three rows of three coefficients, each optionally followed by an offset.
+   * @return The color matrix kernel.
+   * @throws IllegalArgumentException If the matrix does not have that shape, or a coefficient
+   *                                  is larger than 16 or an offset larger than 4096.
+   */
+  static PixelKernel colorMatrix(double[][] matrix) {
+    return new ColorMatrix(matrix);
+  }
+
+  /**
+   * Get a kernel applying the sepia tone.
+   *
+   * @return The sepia kernel.
+   */
+  static PixelKernel sepia() {
+    return colorMatrix(new double[][]{
+        {0.393, 0.769, 0.189},
+        {0.349, 0.686, 0.168},
+        {0.272, 0.534, 0.131}
+    });
+  }
+
+  /**
+   * Get a kernel extracting a greyscale component: "red-component", "green-component" or
+   * "blue-component" keep one channel and clear the others, while "value-component",
+   * "intensity-component" and "luma-component" set all three channels to the component.
+   * Any other type turns every pixel black.
+   *
+   * @param componentType The type of component to extract.
+   * @return The component kernel.
+   */
+  static PixelKernel component(String componentType) {
+    switch (componentType) {
+      case "red-component":
+        return colorMatrix(new double[][]{{1, 0, 0}, {0, 0, 0}, {0, 0, 0}});
+      case "green-component":
+        return colorMatrix(new double[][]{{0, 0, 0}, {0, 1, 0}, {0, 0, 0}});
+      case "blue-component":
+        return colorMatrix(new double[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 1}});
+      case "value-component":
+        // the maximum of the channels is not linear, so it gets a kernel of its own
+        return (pixels, from, to) -> {
+          for (int k = from; k < to; k += 3) {
+            int value = Math.max(Math.max(pixels[k], pixels[k + 1]), pixels[k + 2]);
+            pixels[k] = value;
+            pixels[k + 1] = value;
+            pixels[k + 2] = value;
+          }
+        };
+      case "intensity-component":
+        double third = 1.0 / 3;
+        return colorMatrix(new double[][]{
+            {third, third, third}, {third, third, third}, {third, third, third}});
+      case "luma-component":
+        return colorMatrix(new double[][]{
+            {0.299, 0.587, 0.114}, {0.299, 0.587, 0.114}, {0.299, 0.587, 0.114}});
+      default:
+        return colorMatrix(new double[3][3]);
+    }
+  }
+
+  /**
+   * Get a kernel adjusting levels, mapping every value through the quadratic curve that takes
+   * black to 0, mid to 128 and white to 255.
+   *
+   * @param black The value mapped to 0.
+   * @param mid   The value mapped to 128.
+   * @param white The value mapped to 255.
+   * @return The levels kernel.
+   */
+  static PixelKernel levels(int black, int mid, int white) {
+    double[] bestFit = getCurveFittingPoints(black, mid, white);
+
+    double a = bestFit[0];
+    double b = bestFit[1];
+    double c = bestFit[2];
+
+    return LookupTable.of(
+        value -> correctPixelRange((int) ((a * value * value) + (b * value) + c)));
+  }
+
+  /**
+   * Calculates the coefficients for curve fitting based on given black, mid, and white values.
+   * This method computes the coefficients a, aA, aB, and aC for the quadratic equation:
+   * a * x^2 + b * x + c = y, where x is the pixel value.
+   *
+   * @param black The pixel intensity corresponding to the darkest point.
+   * @param mid   The pixel intensity corresponding to the mid-tones point.
+   * @param white The pixel intensity corresponding to the brightest point.
+   * @return An array with coefficient for quadratic equation.
+   */
+  private static double[] getCurveFittingPoints(int black, int mid, int white) {
+    double a = ((Math.pow(black, 2) * (mid - white)) - (black * (Math.pow(mid, 2)
+        - Math.pow(white, 2))) + (white * Math.pow(mid, 2))
+        - (mid * Math.pow(white, 2)));
+
+    double aA = (-1 * black * (128 - 255)) + 128 * white - 255 * mid;
+
+    double aB = ((Math.pow(black, 2) * (128 - 255))
+        + (255 * Math.pow(mid, 2)) - (128 * Math.pow(white, 2)));
+
+    double aC = ((Math.pow(black, 2) * (255 * mid - 128 * white))
+        - (black * ((255 * Math.pow(mid, 2)) - (128 * Math.pow(white, 2)))));
+
+    return new double[]{aA / a, aB / a, aC / a};
+  }
+}
@@ -0,0 +1,93 @@
+package model;
+
+/**
+ * A {@link PixelBuffer} holding one heap {@code byte[]} plane per channel.
+ */
+final class PlanarPixelBuffer implements PixelBuffer {
+  private final int width;
+  private final byte[][] planes;
+
+  /**
+   * Constructs a buffer over existing planes without copying them.
+   *
+   * @param width  The width of the image.
+   * @param planes The red, green and blue planes.
+   */
+  PlanarPixelBuffer(int width, byte[][] planes) {
+    this.width = width;
+    this.planes = planes;
+  }
+
+  @Override
+  public int get(int channel, int index) {
+    return planes[channel][index] & 0xFF;
+  }
+
+  @Override
+  public void read(int channel, int offset, int[] dest, int length) {
+    byte[] plane = planes[channel];
+    for (int j = 0; j < length; j++) {
+      dest[j] = plane[offset + j] & 0xFF;
+    }
+  }
+
+  @Override
+  public void read(int channel, int offset, byte[] dest, int destOffset, int length) {
+    System.arraycopy(planes[channel], offset, dest, destOffset, length);
+  }
+
+  @Override
+  public void write(int channel, int offset, byte[] src, int srcOffset, int length) {
+    System.arraycopy(src, srcOffset, planes[channel], offset, length);
+  }
+
+  @Override
+  public void readTile(Tile tile, int[] dest) {
+    for (int channel = 0; channel < 3; channel++) {
+      readTile(tile, channel, dest);
+    }
+  }
+
+  @Override
+  public void readTile(Tile tile, int channel, int[] dest) {
+    byte[] plane = planes[channel];
+    int k = channel;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      int source = (tile.getY() + i) * width + tile.getX();
+      for (int j = 0; j < tile.getWidth(); j++) {
+        dest[k] = plane[source + j] & 0xFF;
+        k += 3;
+      }
+    }
+  }
+
+  @Override
+  public void writeTile(Tile tile, int[] src) {
+    for (int channel = 0; channel < 3; channel++) {
+      byte[] plane = planes[channel];
+      int k = channel;
+      for (int i = 0; i < tile.getHeight(); i++) {
+        int target = (tile.getY() + i) * width + tile.getX();
+        for (int j = 0; j < tile.getWidth(); j++) {
+          plane[target + j] = (byte) src[k];
+          k += 3;
+        }
+      }
+    }
+  }
+
+  @Override
+  public byte[][] planes() {
+    return planes;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return 3L * planes[0].length;
+  }
+
+  @Override
+  public void release() {
+    // heap planes are reclaimed by the garbage collector
+  }
+}
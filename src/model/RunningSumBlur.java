@@ -0,0 +1,266 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A blur made of box filters applied one after the other, each computed as a running sum: the
+ * window sum of a pixel is that of the previous pixel plus the value entering the window minus
+ * the value leaving it. A pass costs the same for every pixel whatever its radius. One box is a
+ * box blur; three boxes with radii chosen from a standard deviation approximate a gaussian
+ * blur closely.
+ * The boxes are separable, so all of them run along the rows of the image first and then along
+ * its columns, a part of a few lines at a time. Lines longer than a segment are split into
+ * segments, each read with a margin as long as the boxes reach together on both sides, so the
+ * values of a segment come out the same as if the whole line had been blurred and a part never
+ * holds more than a bounded number of pixels however long or thin the image is. The sums are
+ * exact integers within each direction, and the values are only rounded between the two
+ * directions and at the end. Pixels past the edges repeat the edge pixels, as they do for blur.
+ */
+final class RunningSumBlur {
+
+  /**
+   * The largest radius of a box, which keeps the sums of three boxes within a long.
+   */
+  static final int MAX_RADIUS = 65535;
+
+  private static final int GAUSSIAN_PASSES = 3;
+
+  /**
+   * The number of pixels along a line a part covers when the line has to be split, unless the
+   * boxes reach further.
+   */
+  private static final int SEGMENT = Tile.SIZE * Tile.SIZE;
+
+  /**
+   * The number of pixels read for a part, margins included, that the number of lines of a part
+   * is chosen for. A part always has at least one line.
+   */
+  private static final int PART_PIXELS = Tile.SIZE * Tile.SIZE * 16;
+
+  private final int[] radii;
+  private final int reach;
+  private final long scale;
+
+  private RunningSumBlur(int... radii) {
+    this.radii = radii;
+    long product = 1;
+    int sum = 0;
+    for (int radius : radii) {
+      product *= 2 * radius + 1;
+      sum += radius;
+    }
+    this.scale = product;
+    this.reach = sum;
+  }
+
+  /**
+   * Create a box blur, averaging the square of pixels around each pixel.
+   *
+   * @param radius The number of pixels on each side of the pixel that are averaged.
+   * @return The blur.
+   * @throws IllegalArgumentException If the radius is negative or above {@link #MAX_RADIUS}.
+   */
+  static RunningSumBlur box(int radius) {
+    if (radius < 0 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("radius must be within 0 to " + MAX_RADIUS);
+    }
+    return new RunningSumBlur(radius);
+  }
+
+  /**
+   * Create a gaussian blur approximated by three box blurs, with radii picked so the variance of
+   * the boxes together is as close as possible to that of the gaussian.
+   *
+   * @param sigma The standard deviation of the gaussian, in pixels.
+   * @return The blur.
+   * @throws IllegalArgumentException If sigma is not positive or needs boxes larger than
+   *                                  {@link #MAX_RADIUS}.
+   */
+  static RunningSumBlur gaussian(double sigma) {
+    if (!(sigma > 0) || sigma > MAX_RADIUS) {
+      throw new IllegalArgumentException("sigma must be above 0 and at most " + MAX_RADIUS);
+    }
+    double variance = 12 * sigma * sigma;
+    int lower = (int) Math.floor(Math.sqrt(variance / GAUSSIAN_PASSES + 1));
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    long lowerBoxes = Math.round((variance - GAUSSIAN_PASSES * ((double) lower * lower
+        + 4.0 * lower + 3)) / (-4.0 * lower - 4));
+    lowerBoxes = Math.max(0, Math.min(GAUSSIAN_PASSES, lowerBoxes));
+    int[] radii = new int[GAUSSIAN_PASSES];
+    for (int k = 0; k < GAUSSIAN_PASSES; k++) {
+      radii[k] = k < lowerBoxes ? (lower - 1) / 2 : (lower + 1) / 2;
+    }
+    if (radii[GAUSSIAN_PASSES - 1] > MAX_RADIUS) {
+      throw new IllegalArgumentException("sigma must be above 0 and at most " + MAX_RADIUS);
+    }
+    return new RunningSumBlur(radii);
+  }
+
+  /**
+   * Split an image into the parts its rows are blurred in.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The parts covering the image.
+   */
+  List<Tile> rowParts(int width, int height) {
+    return parts(width, height, true);
+  }
+
+  /**
+   * Split an image into the parts its columns are blurred in.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The parts covering the image.
+   */
+  List<Tile> columnParts(int width, int height) {
+    return parts(height, width, false);
+  }
+
+  /**
+   * Split an image into parts of a few lines, cutting the lines into segments if they are
+   * longer than a segment.
+   *
+   * @param length The number of pixels along a line.
+   * @param count  The number of lines.
+   * @param rows   Whether the lines are rows rather than columns.
+   * @return The parts covering the image.
+   */
+  private List<Tile> parts(int length, int count, boolean rows) {
+    int segment = Math.max(SEGMENT, 2 * reach);
+    if (length <= segment) {
+      segment = length;
+    }
+    long span = Math.min(length, (long) segment + 2 * reach);
+    int lines = (int) Math.max(1, Math.min(Tile.SIZE, PART_PIXELS / span));
+    List<Tile> parts = new ArrayList<>();
+    for (int t = 0; t < length; t += Math.min(segment, length - t)) {
+      int along = Math.min(segment, length - t);
+      for (int c = 0; c < count; c += Math.min(lines, count - c)) {
+        int across = Math.min(lines, count - c);
+        parts.add(rows ? new Tile(t, c, along, across) : new Tile(c, t, across, along));
+      }
+    }
+    return parts;
+  }
+
+  /**
+   * Blur a part of the image along its rows.
+   *
+   * @param image  The image to blur.
+   * @param part   The part, as given by {@link #rowParts(int, int)}.
+   * @param pixels The buffer receiving the interleaved result values of the part.
+   */
+  void blurRows(ImageMetadata image, Tile part, int[] pixels) {
+    int from = Math.max(0, part.getX() - reach);
+    int to = (int) Math.min(image.getWidth(), (long) part.getX() + part.getWidth() + reach);
+    Tile source = new Tile(from, part.getY(), to - from, part.getHeight());
+    int[] read = source.equals(part) ? pixels : new int[source.getPixelCount() * 3];
+    image.readTile(source, read);
+    int sourceLength = source.getWidth() * 3;
+    int partLength = part.getWidth() * 3;
+    int skip = (part.getX() - from) * 3;
+    long[] values = new long[sourceLength];
+    long[] sums = new long[sourceLength];
+    for (int i = 0; i < part.getHeight(); i++) {
+      int offset = i * sourceLength;
+      for (int j = 0; j < sourceLength; j++) {
+        values[j] = read[offset + j];
+      }
+      long[] result = blur(values, sums, source.getWidth(), 3);
+      round(result, skip, partLength, pixels, i * partLength);
+    }
+  }
+
+  /**
+   * Blur a part of the image along its columns.
+   *
+   * @param image  The image to blur.
+   * @param part   The part, as given by {@link #columnParts(int, int)}.
+   * @param pixels The buffer receiving the interleaved result values of the part.
+   */
+  void blurColumns(ImageMetadata image, Tile part, int[] pixels) {
+    int from = Math.max(0, part.getY() - reach);
+    int to = (int) Math.min(image.getHeight(), (long) part.getY() + part.getHeight() + reach);
+    Tile source = new Tile(part.getX(), from, part.getWidth(), to - from);
+    int[] read = source.equals(part) ? pixels : new int[source.getPixelCount() * 3];
+    image.readTile(source, read);
+    int length = source.getPixelCount() * 3;
+    long[] values = new long[length];
+    for (int k = 0; k < length; k++) {
+      values[k] = read[k];
+    }
+    int lines = part.getWidth() * 3;
+    long[] result = blur(values, new long[length], source.getHeight(), lines);
+    round(result, (part.getY() - from) * lines, part.getPixelCount() * 3, pixels, 0);
+  }
+
+  /**
+   * Run every box over lines of values, alternating between two buffers.
+   *
+   * @param values  The values, which are overwritten.
+   * @param scratch A buffer as long as the values.
+   * @param length  The number of values along a line.
+   * @param lines   The number of lines, interleaved so value t of line c is at
+   *                {@code t * lines + c}.
+   * @return The buffer holding the sums of the last box.
+   */
+  private long[] blur(long[] values, long[] scratch, int length, int lines) {
+    long[] in = values;
+    long[] out = scratch;
+    for (int radius : radii) {
+      boxPass(in, out, length, lines, radius);
+      long[] swap = in;
+      in = out;
+      out = swap;
+    }
+    return in;
+  }
+
+  /**
+   * Replace every value of interleaved lines by the sum of the values within a radius along its
+   * line. The running sums of all the lines are updated together, one position at a time.
+   */
+  private static void boxPass(long[] in, long[] out, int length, int lines, int radius) {
+    int last = length - 1;
+    long[] sums = new long[lines];
+    for (int c = 0; c < lines; c++) {
+      sums[c] = (radius + 1) * in[c];
+    }
+    for (int d = 1; d <= Math.min(radius, last); d++) {
+      int base = d * lines;
+      for (int c = 0; c < lines; c++) {
+        sums[c] += in[base + c];
+      }
+    }
+    if (radius > last) {
+      int base = last * lines;
+      for (int c = 0; c < lines; c++) {
+        sums[c] += (radius - last) * in[base + c];
+      }
+    }
+    for (int t = 0; t < length; t++) {
+      int base = t * lines;
+      int entering = Math.min(t + radius + 1, last) * lines;
+      int leaving = Math.max(t - radius, 0) * lines;
+      for (int c = 0; c < lines; c++) {
+        out[base + c] = sums[c];
+        sums[c] += in[entering + c] - in[leaving + c];
+      }
+    }
+  }
+
+  /**
+   * Divide a range of sums by the sizes of the boxes, rounding to the nearest value.
+   */
+  private void round(long[] sums, int from, int count, int[] pixels, int offset) {
+    long half = scale / 2;
+    for (int k = 0; k < count; k++) {
+      pixels[offset + k] = (int) ((sums[from + k] + half) / scale);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular block of pixels of an image. Operations in the model produce their results a
+ * tile at a time, so a tile is also the unit of work when only part of an image needs to be
+ * recomputed or when the work is shared between threads.
+ * Tile buffers hold the pixels of the block row by row with the red, green and blue values of
+ * each pixel next to each other, so the value of channel {@code c} of the pixel at
+ * {@code (row, col)} of the tile is at index {@code (row * width + col) * 3 + c}.
+ */
+public final class Tile {
+
+  /**
+   * The side of the tiles images are split into.
+   */
+  public static final int SIZE = 128;
+
+  private final int x;
+  private final int y;
+  private final int width;
+  private final int height;
+
+  /**
+   * Constructs a tile covering the given rectangle.
+   *
+   * @param x      The column of the top left pixel.
+   * @param y      The row of the top left pixel.
+   * @param width  The number of columns in the tile.
+   * @param height The number of rows in the tile.
+   */
+  public Tile(int x, int y, int width, int height) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Tile size cannot be negative.");
+    }
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Split an image into tiles of at most {@link #SIZE} by {@link #SIZE} pixels, in row-major
+   * order of the tile grid.
+   *
+   * @param imageWidth  The width of the image.
+   * @param imageHeight The height of the image.
+   * @return The tiles covering the image.
+   */
+  public static List<Tile> cover(int imageWidth, int imageHeight) {
+    List<Tile> tiles = new ArrayList<>();
+    for (int y = 0; y < imageHeight; y += SIZE) {
+      for (int x = 0; x < imageWidth; x += SIZE) {
+        tiles.add(new Tile(x, y, Math.min(SIZE, imageWidth - x), Math.min(SIZE, imageHeight - y)));
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * Split an image into strips of at most {@link #SIZE} rows that span its whole width.
+   *
+   * @param imageWidth  The width of the image.
+   * @param imageHeight The height of the image.
+   * @return The strips covering the image, from the top.
+   */
+  public static List<Tile> rowStrips(int imageWidth, int imageHeight) {
+    List<Tile> strips = new ArrayList<>();
+    for (int y = 0; y < imageHeight; y += SIZE) {
+      strips.add(new Tile(0, y, imageWidth, Math.min(SIZE, imageHeight - y)));
+    }
+    return strips;
+  }
+
+  /**
+   * Split an image into strips of at most {@link #SIZE} columns that span its whole height.
+   *
+   * @param imageWidth  The width of the image.
+   * @param imageHeight The height of the image.
+   * @return The strips covering the image, from the left.
+   */
+  public static List<Tile> columnStrips(int imageWidth, int imageHeight) {
+    List<Tile> strips = new ArrayList<>();
+    for (int x = 0; x < imageWidth; x += SIZE) {
+      strips.add(new Tile(x, 0, Math.min(SIZE, imageWidth - x), imageHeight));
+    }
+    return strips;
+  }
+
+  /**
+   * Get the column of the top left pixel.
+   *
+   * @return The first column of the tile.
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * Get the row of the top left pixel.
+   *
+   * @return The first row of the tile.
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * Get the number of columns in the tile.
+   *
+   * @return The width of the tile.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the number of rows in the tile.
+   *
+   * @return The height of the tile.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the number of pixels in the tile.
+   *
+   * @return The width times the height of the tile.
+   */
+  public int getPixelCount() {
+    return width * height;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Tile)) {
+      return false;
+    }
+    Tile tile = (Tile) o;
+    return x == tile.x && y == tile.y && width == tile.width && height == tile.height;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((x * 31 + y) * 31 + width) * 31 + height;
+  }
+
+  @Override
+  public String toString() {
+    return "Tile(" + x + ", " + y + ", " + width + "x" + height + ")";
+  }
+}
@@ -0,0 +1,186 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tiles of an operation in parallel on a fork/join pool. The tiles are split into
+ * ranges recursively until each range is small enough to be a task of its own, and every task
+ * gets its own scratch state, such as a tile buffer, so tasks share nothing while they run.
+ * A state lives only as long as its task, unless the states are collected to combine results
+ * gathered in them, so at most one state per thread is held at a time.
+ * Operations on images smaller than a threshold run sequentially on the calling thread, where
+ * splitting them up would cost more than it saves.
+ */
+public final class TileExecutor {
+
+  /**
+   * The default number of pixels below which operations run sequentially.
+   */
+  public static final long DEFAULT_THRESHOLD = 512 * 512;
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final long threshold;
+
+  /**
+   * Constructs an executor running operations on the common fork/join pool, with as many
+   * threads as there are processors.
+   */
+  public TileExecutor() {
+    this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Constructs an executor running operations on a pool of its own. The threads of the pool
+   * are daemon threads, so they never keep the application running, and are stopped by
+   * {@link #shutdown()}.
+   *
+   * @param parallelism The number of threads to use, or 1 to run everything sequentially.
+   * @param threshold   The number of pixels below which operations run sequentially.
+   * @throws IllegalArgumentException If the parallelism is not positive or the threshold is
+   *                                  negative.
+   */
+  public TileExecutor(int parallelism, long threshold) {
+    this(parallelism == 1 ? null : new ForkJoinPool(parallelism, TileExecutor::newDaemonThread,
+        null, false), threshold);
+  }
+
+  private static ForkJoinWorkerThread newDaemonThread(ForkJoinPool pool) {
+    ForkJoinWorkerThread thread =
+        ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private TileExecutor(ForkJoinPool pool, long threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold cannot be negative: " + threshold);
+    }
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Get the number of threads operations run on.
+   *
+   * @return The parallelism of the executor.
+   */
+  public int getParallelism() {
+    return pool == null ? 1 : pool.getParallelism();
+  }
+
+  /**
+   * Stop the threads of the pool of this executor once the operations running on it finish.
+   * Operations run afterwards fail. Executors on the common pool or running sequentially have
+   * no threads of their own, and are left as they are.
+   */
+  public void shutdown() {
+    if (pool != null && pool != ForkJoinPool.commonPool()) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Run a task on every tile of an image, in parallel if the image is large enough. Tiles are
+   * handed to the task in no particular order, but a scratch state is used for a range of
+   * consecutive tiles in their order in the list. A state is dropped as soon as its range is
+   * done.
+   *
+   * @param tiles      The tiles of the image.
+   * @param pixelCount The number of pixels of the image.
+   * @param newState   Creates the scratch state of one task, which is used for a range of tiles.
+   * @param task       The task, given the scratch state of its range and a tile.
+   * @param <S>        The type of the scratch state.
+   */
+  <S> void forEach(List<Tile> tiles, long pixelCount, Supplier<S> newState,
+                   BiConsumer<S, Tile> task) {
+    run(tiles, pixelCount, newState, task, null);
+  }
+
+  /**
+   * Run a task on every tile of an image like {@link #forEach}, keeping the scratch states so
+   * results gathered in them can be combined. Every state is held until all the tiles are done,
+   * so they should be small.
+   *
+   * @param tiles      The tiles of the image.
+   * @param pixelCount The number of pixels of the image.
+   * @param newState   Creates the scratch state of one task, which is used for a range of tiles.
+   * @param task       The task, given the scratch state of its range and a tile.
+   * @param <S>        The type of the scratch state.
+   * @return The scratch states used.
+   */
+  <S> List<S> collect(List<Tile> tiles, long pixelCount, Supplier<S> newState,
+                      BiConsumer<S, Tile> task) {
+    List<S> states = Collections.synchronizedList(new ArrayList<>());
+    run(tiles, pixelCount, newState, task, states);
+    return states;
+  }
+
+  private <S> void run(List<Tile> tiles, long pixelCount, Supplier<S> newState,
+                       BiConsumer<S, Tile> task, List<S> states) {
+    if (pool == null || pixelCount < threshold || tiles.size() < 2) {
+      S state = newState.get();
+      for (Tile tile : tiles) {
+        task.accept(state, tile);
+      }
+      if (states != null) {
+        states.add(state);
+      }
+      return;
+    }
+    int grain = Math.max(1, tiles.size() / (pool.getParallelism() * TASKS_PER_THREAD));
+    pool.invoke(new TileRange<>(tiles, 0, tiles.size(), grain, newState, task, states));
+  }
+
+  /**
+   * A range of tiles, split in halves until it holds at most a grain of tiles. The states
+   * are only kept if there is a list to add them to.
+   */
+  private static final class TileRange<S> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Tile> tiles;
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final Supplier<S> newState;
+    private final BiConsumer<S, Tile> task;
+    private final List<S> states;
+
+    private TileRange(List<Tile> tiles, int from, int to, int grain, Supplier<S> newState,
+                      BiConsumer<S, Tile> task, List<S> states) {
+      this.tiles = tiles;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+      this.newState = newState;
+      this.task = task;
+      this.states = states;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        S state = newState.get();
+        for (int k = from; k < to; k++) {
+          task.accept(state, tiles.get(k));
+        }
+        if (states != null) {
+          states.add(state);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new TileRange<>(tiles, from, middle, grain, newState, task, states),
+          new TileRange<>(tiles, middle, to, grain, newState, task, states));
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * One step of an image operation, computing the result for a single tile. Every tile of the
+ * result is computed independently of the others, so an operation can be run over any subset
+ * of the tiles of an image, in any order.
+ */
+@FunctionalInterface
+interface TileOperation {
+
+  /**
+   * Compute the result pixels of a tile.
+   *
+   * @param tile   The tile to compute.
+   * @param pixels The buffer receiving the interleaved result values of the tile, laid out
+   *               as described by {@link Tile}, in the range [0, 255]. It holds room for a
+   *               full {@link Tile#SIZE} by {@link Tile#SIZE} tile and may contain values
+   *               left over from an earlier tile.
+   */
+  void apply(Tile tile, int[] pixels);
+}
@@ -0,0 +1,231 @@
+package model;
+
+/**
+ * A {@link PixelBuffer} splitting the image into the {@link Tile#SIZE} by {@link Tile#SIZE}
+ * grid of {@link Tile#cover(int, int)}. Each tile is its own heap array holding the tile row
+ * by row with the channels of every pixel interleaved, which is exactly the layout of a tile
+ * buffer, so reading or writing a whole grid tile is a single pass over one small array.
+ * Tiles on the right and bottom edges are only as large as the part of the image they cover.
+ */
+final class TiledPixelBuffer implements PixelBuffer {
+  private static final int SHIFT = Integer.numberOfTrailingZeros(Tile.SIZE);
+  private static final int MASK = Tile.SIZE - 1;
+
+  private final int width;
+  private final int height;
+  private final int columns;
+  private final byte[][] tiles;
+
+  /**
+   * Allocates zeroed tiles for an image.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   */
+  TiledPixelBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.columns = (width + MASK) >> SHIFT;
+    int rows = (height + MASK) >> SHIFT;
+    this.tiles = new byte[columns * rows][];
+    for (int ty = 0; ty < rows; ty++) {
+      for (int tx = 0; tx < columns; tx++) {
+        tiles[ty * columns + tx] = new byte[tileWidth(tx) * tileHeight(ty) * 3];
+      }
+    }
+  }
+
+  /**
+   * Get the width of a column of the tile grid.
+   *
+   * @param tx The column of the grid.
+   * @return The number of pixel columns in the tiles of that column.
+   */
+  private int tileWidth(int tx) {
+    return Math.min(Tile.SIZE, width - (tx << SHIFT));
+  }
+
+  /**
+   * Get the height of a row of the tile grid.
+   *
+   * @param ty The row of the grid.
+   * @return The number of pixel rows in the tiles of that row.
+   */
+  private int tileHeight(int ty) {
+    return Math.min(Tile.SIZE, height - (ty << SHIFT));
+  }
+
+  @Override
+  public int get(int channel, int index) {
+    int row = index / width;
+    int col = index - row * width;
+    int tx = col >> SHIFT;
+    byte[] tile = tiles[(row >> SHIFT) * columns + tx];
+    return tile[((row & MASK) * tileWidth(tx) + (col & MASK)) * 3 + channel] & 0xFF;
+  }
+
+  @Override
+  public void read(int channel, int offset, int[] dest, int length) {
+    int done = 0;
+    while (done < length) {
+      int index = offset + done;
+      int row = index / width;
+      int col = index - row * width;
+      int tx = col >> SHIFT;
+      int count = Math.min(length - done, Math.min(Tile.SIZE - (col & MASK), width - col));
+      byte[] tile = tiles[(row >> SHIFT) * columns + tx];
+      int k = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3 + channel;
+      for (int j = 0; j < count; j++) {
+        dest[done + j] = tile[k] & 0xFF;
+        k += 3;
+      }
+      done += count;
+    }
+  }
+
+  @Override
+  public void read(int channel, int offset, byte[] dest, int destOffset, int length) {
+    int done = 0;
+    while (done < length) {
+      int index = offset + done;
+      int row = index / width;
+      int col = index - row * width;
+      int tx = col >> SHIFT;
+      int count = Math.min(length - done, Math.min(Tile.SIZE - (col & MASK), width - col));
+      byte[] tile = tiles[(row >> SHIFT) * columns + tx];
+      int k = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3 + channel;
+      for (int j = 0; j < count; j++) {
+        dest[destOffset + done + j] = tile[k];
+        k += 3;
+      }
+      done += count;
+    }
+  }
+
+  @Override
+  public void write(int channel, int offset, byte[] src, int srcOffset, int length) {
+    int done = 0;
+    while (done < length) {
+      int index = offset + done;
+      int row = index / width;
+      int col = index - row * width;
+      int tx = col >> SHIFT;
+      int count = Math.min(length - done, Math.min(Tile.SIZE - (col & MASK), width - col));
+      byte[] tile = tiles[(row >> SHIFT) * columns + tx];
+      int k = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3 + channel;
+      for (int j = 0; j < count; j++) {
+        tile[k] = src[srcOffset + done + j];
+        k += 3;
+      }
+      done += count;
+    }
+  }
+
+  /**
+   * Get the storage tile a tile buffer matches exactly, if any.
+   *
+   * @param tile The tile being read or written.
+   * @return The array holding that tile, or null if the tile is not one of the grid tiles.
+   */
+  private byte[] gridTile(Tile tile) {
+    if ((tile.getX() & MASK) != 0 || (tile.getY() & MASK) != 0) {
+      return null;
+    }
+    int tx = tile.getX() >> SHIFT;
+    int ty = tile.getY() >> SHIFT;
+    if (tile.getWidth() != tileWidth(tx) || tile.getHeight() != tileHeight(ty)) {
+      return null;
+    }
+    return tiles[ty * columns + tx];
+  }
+
+  @Override
+  public void readTile(Tile tile, int[] dest) {
+    byte[] block = gridTile(tile);
+    if (block != null) {
+      for (int k = 0; k < block.length; k++) {
+        dest[k] = block[k] & 0xFF;
+      }
+      return;
+    }
+    int rowLength = tile.getWidth() * 3;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      int row = tile.getY() + i;
+      int col = tile.getX();
+      int k = i * rowLength;
+      while (col < tile.getX() + tile.getWidth()) {
+        int tx = col >> SHIFT;
+        int count = Math.min(Tile.SIZE - (col & MASK), tile.getX() + tile.getWidth() - col) * 3;
+        byte[] source = tiles[(row >> SHIFT) * columns + tx];
+        int s = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3;
+        for (int j = 0; j < count; j++) {
+          dest[k++] = source[s + j] & 0xFF;
+        }
+        col += count / 3;
+      }
+    }
+  }
+
+  @Override
+  public void readTile(Tile tile, int channel, int[] dest) {
+    int k = channel;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      int row = tile.getY() + i;
+      int col = tile.getX();
+      while (col < tile.getX() + tile.getWidth()) {
+        int tx = col >> SHIFT;
+        int count = Math.min(Tile.SIZE - (col & MASK), tile.getX() + tile.getWidth() - col);
+        byte[] source = tiles[(row >> SHIFT) * columns + tx];
+        int s = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3 + channel;
+        for (int j = 0; j < count; j++) {
+          dest[k] = source[s] & 0xFF;
+          k += 3;
+          s += 3;
+        }
+        col += count;
+      }
+    }
+  }
+
+  @Override
+  public void writeTile(Tile tile, int[] src) {
+    byte[] block = gridTile(tile);
+    if (block != null) {
+      for (int k = 0; k < block.length; k++) {
+        block[k] = (byte) src[k];
+      }
+      return;
+    }
+    int rowLength = tile.getWidth() * 3;
+    for (int i = 0; i < tile.getHeight(); i++) {
+      int row = tile.getY() + i;
+      int col = tile.getX();
+      int k = i * rowLength;
+      while (col < tile.getX() + tile.getWidth()) {
+        int tx = col >> SHIFT;
+        int count = Math.min(Tile.SIZE - (col & MASK), tile.getX() + tile.getWidth() - col) * 3;
+        byte[] target = tiles[(row >> SHIFT) * columns + tx];
+        int t = ((row & MASK) * tileWidth(tx) + (col & MASK)) * 3;
+        for (int j = 0; j < count; j++) {
+          target[t + j] = (byte) src[k++];
+        }
+        col += count / 3;
+      }
+    }
+  }
+
+  @Override
+  public byte[][] planes() {
+    return null;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return 3L * width * height;
+  }
+
+  @Override
+  public void release() {
+    // tiles are reclaimed by the garbage collector
+  }
+}
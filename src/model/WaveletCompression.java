@@ -0,0 +1,698 @@
+package model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import model.helpers.CoefficientMagnitudes;
+import model.helpers.CompressionHelper;
+import model.helpers.ImageHelper;
+
+import static model.helpers.ImageHelper.correctPixelRange;
+
+/**
+ * Compresses an image by dropping its smallest Haar wavelet coefficients, with every step run
+ * on the executor of the model. Each level of the transform is a row pass and a column pass
+ * over the padded square of a channel, split into strips of rows and of columns run in
+ * parallel. The threshold of a channel is found by gathering the magnitudes of its strips in
+ * parallel and merging them. With more than one thread the three channels are compressed
+ * together, each in a buffer of its own, so the strips of all of them share the threads; a
+ * single thread compresses one channel at a time in one reused buffer.
+ * An image can also be compressed in square blocks of a fixed size, each transformed and
+ * thresholded on its own, so no padding grows the image to a power of two and only the blocks
+ * being worked on hold coefficients. The blocks are compressed in parallel. A block cut by the
+ * right or bottom edge is padded to the smallest power of two square holding it by repeating
+ * its edge pixels, which adds no detail for the transform to spend coefficients on.
+ * The coefficients of a whole image can be kept in a {@link CoefficientCache}, with the
+ * distinct magnitudes of each channel in increasing order, so compressing the image again at
+ * another percentage only looks up the new thresholds and transforms back.
+ * A whole image can also be left as the coefficients compress kept, most of them zero, and
+ * rebuilt a block at a time whenever it is read; see {@link WaveletPixelBuffer}.
+ */
+final class WaveletCompression {
+
+  /**
+   * The largest side of the blocks an image can be compressed in.
+   */
+  static final int MAX_BLOCK_SIZE = 4096;
+
+  private final TileExecutor executor;
+  private final boolean singlePrecision;
+  private final boolean sparseImages;
+  private final CoefficientCache cache;
+
+  /**
+   * Constructs a compression running on an executor.
+   *
+   * @param executor        The executor splitting every step into strips run in parallel.
+   * @param singlePrecision Whether to keep the coefficients in float instead of double.
+   * @param sparseImages    Whether compressed images may be kept as their coefficients.
+   * @param cache           The cache of the coefficients of source images, or null to
+   *                        transform every image from scratch.
+   */
+  WaveletCompression(TileExecutor executor, boolean singlePrecision, boolean sparseImages,
+                     CoefficientCache cache) {
+    this.executor = executor;
+    this.singlePrecision = singlePrecision;
+    this.sparseImages = sparseImages;
+    this.cache = cache;
+  }
+
+  /**
+   * Compress an image. When its coefficients fit in the cache, the coefficients of all three
+   * channels are kept there under the name of the image, and compressing it again only
+   * transforms them back.
+   *
+   * @param image      The image to compress.
+   * @param name       The name the image is stored under.
+   * @param percentage The percentage of the distinct coefficient magnitudes to drop, 1 to 100.
+   * @param store      The store to create the compressed image in.
+   * @return The compressed image.
+   */
+  ImageMetadata apply(ImageMetadata image, String name, int percentage, ImageStore store) {
+    int size = FourierTransform.nextPowerOfTwo(Math.max(image.getWidth(), image.getHeight()));
+    if (cache == null || !cache.fits(3L * size * size * (singlePrecision ? 4 : 8))) {
+      return apply(image, percentage, store);
+    }
+    Transform transform = cache.get(name, image, singlePrecision);
+    if (transform == null) {
+      transform = transform(image, size);
+      cache.put(name, transform);
+    }
+    Transform source = transform;
+    return inverse(image.getWidth(), image.getHeight(), size, store, (buffers, first, rows) -> {
+      double[] thresholds = new double[buffers.length];
+      for (int c = 0; c < buffers.length; c++) {
+        thresholds[c] = CoefficientMagnitudes.getThreshold(source.distinct[first + c],
+            percentage);
+      }
+      executor.forEach(rows, (long) buffers.length * size * size, () -> null, (state, strip) -> {
+        int c = strip.getY() / size;
+        int y = strip.getY() % size;
+        buffers[c].copyAbove(source.coefficients[first + c], thresholds[c], y,
+            y + strip.getHeight());
+      });
+    });
+  }
+
+  /**
+   * Compress an image without caching its coefficients.
+   *
+   * @param image      The image to compress.
+   * @param percentage The percentage of the distinct coefficient magnitudes to drop, 1 to 100.
+   * @param store      The store to create the compressed image in.
+   * @return The compressed image.
+   */
+  ImageMetadata apply(ImageMetadata image, int percentage, ImageStore store) {
+    int size = FourierTransform.nextPowerOfTwo(Math.max(image.getWidth(), image.getHeight()));
+    return inverse(image.getWidth(), image.getHeight(), size, store, (buffers, first, rows) -> {
+      CoefficientMagnitudes[] magnitudes = forward(image, buffers, first, rows, size);
+      long count = (long) buffers.length * size * size;
+      double[] thresholds = new double[buffers.length];
+      for (int c = 0; c < buffers.length; c++) {
+        thresholds[c] = magnitudes[c].getThreshold(percentage);
+      }
+      executor.forEach(rows, count, () -> null, (state, strip) -> {
+        int c = strip.getY() / size;
+        int y = strip.getY() % size;
+        buffers[c].dropBelow(thresholds[c], y, y + strip.getHeight());
+      });
+    });
+  }
+
+  /**
+   * Transform the three channels of an image, each in a buffer of its own, and index the
+   * magnitudes of their coefficients.
+   */
+  private Transform transform(ImageMetadata image, int size) {
+    Coefficients[] buffers = newBuffers(3, size);
+    CoefficientMagnitudes[] magnitudes = forward(image, buffers, 0, stackedRows(3, size), size);
+    long[][] distinct = new long[3][];
+    for (int c = 0; c < 3; c++) {
+      distinct[c] = magnitudes[c].getDistinct();
+    }
+    return new Transform(image, singlePrecision, buffers, distinct);
+  }
+
+  /**
+   * Fill the buffers of a group with consecutive channels of an image, transform them and
+   * gather the magnitudes of their coefficients.
+   *
+   * @return The magnitudes of each buffer.
+   */
+  private CoefficientMagnitudes[] forward(ImageMetadata image, Coefficients[] buffers,
+                                          int firstChannel, List<Tile> rows, int size) {
+    int group = buffers.length;
+    long count = (long) group * size * size;
+    executor.forEach(rows, count, () -> null, (state, strip) -> {
+      int c = strip.getY() / size;
+      int y = strip.getY() % size;
+      buffers[c].fill(image, firstChannel + c, y, y + strip.getHeight());
+    });
+    List<Tile> columns = stackedColumns(group, size);
+    for (int stride = 1; stride < size; stride *= 2) {
+      runLevel(buffers, rows, columns, size, stride, count, false);
+    }
+
+    // every task gathers the magnitudes of its strips, then the parts are merged
+    List<CoefficientMagnitudes[]> parts = executor.collect(rows, count,
+        () -> new CoefficientMagnitudes[group],
+        (state, strip) -> {
+          int c = strip.getY() / size;
+          int y = strip.getY() % size;
+          if (state[c] == null) {
+            state[c] = new CoefficientMagnitudes((long) size * size, rows.size());
+          }
+          buffers[c].addMagnitudes(state[c], y, y + strip.getHeight());
+        });
+    CoefficientMagnitudes[] magnitudes = new CoefficientMagnitudes[group];
+    for (int c = 0; c < group; c++) {
+      for (CoefficientMagnitudes[] part : parts) {
+        if (part[c] == null) {
+          continue;
+        }
+        if (magnitudes[c] == null) {
+          magnitudes[c] = part[c];
+        } else {
+          magnitudes[c].addAll(part[c]);
+        }
+      }
+    }
+    return magnitudes;
+  }
+
+  /**
+   * Build a compressed image a group of channels at a time. With more than one thread the
+   * three channels are a single group, each in a buffer of its own, so the strips of all of
+   * them share the threads; a single thread works on one channel at a time in one reused
+   * buffer.
+   * When sparse images are on, the coefficients left are kept as they are, in a
+   * {@link WaveletPixelBuffer}, as long as they take at most half the memory of the pixels;
+   * once a group of channels would take more, the channels kept so far are rebuilt into pixels
+   * and the rest of the image is transformed back.
+   *
+   * @param coefficients Fills the buffers of a group with the thresholded coefficients of the
+   *                     channels starting at a given one.
+   */
+  private ImageMetadata inverse(int width, int height, int size, ImageStore store,
+                                GroupStep coefficients) {
+    int group = executor.getParallelism() > 1 ? 3 : 1;
+    Coefficients[] buffers = newBuffers(group, size);
+    List<Tile> rows = stackedRows(group, size);
+    List<Tile> columns = stackedColumns(group, size);
+    long count = (long) group * size * size;
+    int side = WaveletPixelBuffer.getBlockSide(size);
+
+    WaveletPixelBuffer sparse = sparseImages
+        ? new WaveletPixelBuffer(width, height, size, singlePrecision) : null;
+    ImageMetadata compressedImage = sparse == null ? store.create(width, height) : null;
+    long sparseBytes = 0;
+    for (int first = 0; first < 3; first += group) {
+      int firstChannel = first;
+      coefficients.apply(buffers, firstChannel, rows);
+      if (sparse != null) {
+        WaveletPixelBuffer kept = sparse;
+        long entries = 0;
+        for (long[] part : executor.collect(rows, count, () -> new long[1], (state, strip) ->
+            state[0] += buffers[strip.getY() / size].countEntries(kept,
+                strip.getY() % size / side))) {
+          entries += part[0];
+        }
+        sparseBytes += group * WaveletPixelBuffer.getSizeInBytes(entries / group, size);
+        if (sparseBytes <= (first + group) * (long) width * height / 2) {
+          executor.forEach(rows, count, () -> null, (state, strip) ->
+              buffers[strip.getY() / size].extract(kept, firstChannel + strip.getY() / size,
+                  strip.getY() % size / side));
+          for (int c = 0; c < group; c++) {
+            sparse.finish(firstChannel + c);
+          }
+          continue;
+        }
+        compressedImage = store.create(width, height);
+        copyChannels(new ImageMetadata(width, height, sparse, store), compressedImage,
+            firstChannel);
+        sparse = null;
+      }
+      for (int stride = size / 2; stride >= 1; stride /= 2) {
+        runLevel(buffers, rows, columns, size, stride, count, true);
+      }
+      //dropping the padding
+      ImageMetadata target = compressedImage;
+      executor.forEach(Tile.rowStrips(width, height), count, () -> new byte[width],
+          (row, strip) -> {
+            for (int c = 0; c < group; c++) {
+              for (int i = strip.getY(); i < strip.getY() + strip.getHeight(); i++) {
+                buffers[c].readRow(i, row);
+                target.writeRow(firstChannel + c, i, row);
+              }
+            }
+          });
+    }
+    return sparse != null ? new ImageMetadata(width, height, sparse, store) : compressedImage;
+  }
+
+  /**
+   * Copy the first channels of an image into another of the same size, a strip of rows at a
+   * time.
+   */
+  private void copyChannels(ImageMetadata source, ImageMetadata dest, int channels) {
+    int width = source.getWidth();
+    executor.forEach(Tile.rowStrips(width, source.getHeight()),
+        (long) width * source.getHeight(), () -> new byte[width], (row, strip) -> {
+          for (int c = 0; c < channels; c++) {
+            for (int i = strip.getY(); i < strip.getY() + strip.getHeight(); i++) {
+              source.readRow(c, i, row);
+              dest.writeRow(c, i, row);
+            }
+          }
+        });
+  }
+
+  /**
+   * The step filling a group of buffers with thresholded coefficients.
+   */
+  private interface GroupStep {
+    void apply(Coefficients[] buffers, int firstChannel, List<Tile> rows);
+  }
+
+  private Coefficients[] newBuffers(int group, int size) {
+    Coefficients[] buffers = new Coefficients[group];
+    for (int c = 0; c < group; c++) {
+      buffers[c] = singlePrecision ? new FloatCoefficients(size) : new DoubleCoefficients(size);
+    }
+    return buffers;
+  }
+
+  /**
+   * The row strips of the buffers of a group stacked, the rows of buffer c starting at row
+   * c * size.
+   */
+  private static List<Tile> stackedRows(int group, int size) {
+    List<Tile> rows = new ArrayList<>();
+    for (int c = 0; c < group; c++) {
+      for (Tile strip : Tile.rowStrips(size, size)) {
+        rows.add(new Tile(0, c * size + strip.getY(), size, strip.getHeight()));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * The column strips of the buffers of a group stacked, the columns of buffer c starting at
+   * row c * size.
+   */
+  private static List<Tile> stackedColumns(int group, int size) {
+    List<Tile> columns = new ArrayList<>();
+    for (int c = 0; c < group; c++) {
+      for (Tile strip : Tile.columnStrips(size, size)) {
+        columns.add(new Tile(strip.getX(), c * size, strip.getWidth(), size));
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * The forward coefficients of the three channels of an image and their distinct magnitudes
+   * in increasing order, from which compressing at any percentage only needs a threshold and
+   * the inverse transform.
+   */
+  static final class Transform {
+    private final WeakReference<ImageMetadata> source;
+    private final boolean singlePrecision;
+    private final Coefficients[] coefficients;
+    private final long[][] distinct;
+
+    private Transform(ImageMetadata source, boolean singlePrecision,
+                      Coefficients[] coefficients, long[][] distinct) {
+      this.source = new WeakReference<>(source);
+      this.singlePrecision = singlePrecision;
+      this.coefficients = coefficients;
+      this.distinct = distinct;
+    }
+
+    /**
+     * Get the image the coefficients were computed from. It is only held weakly, so cached
+     * coefficients never keep the pixels of an image that was spilled or released alive.
+     */
+    ImageMetadata getSource() {
+      return source.get();
+    }
+
+    boolean isSinglePrecision() {
+      return singlePrecision;
+    }
+
+    long getSizeInBytes() {
+      long size = 0;
+      for (int c = 0; c < 3; c++) {
+        size += coefficients[c].getSizeInBytes() + 8L * distinct[c].length;
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Compress an image in square blocks, each with its own threshold.
+   *
+   * @param image      The image to compress.
+   * @param percentage The percentage of the distinct coefficient magnitudes of each block to
+   *                   drop, 1 to 100.
+   * @param blockSize  The side of the blocks, a power of two from 2 to {@link #MAX_BLOCK_SIZE}.
+   * @param store      The store to create the compressed image in.
+   * @return The compressed image.
+   */
+  ImageMetadata applyBlocks(ImageMetadata image, int percentage, int blockSize,
+                            ImageStore store) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    List<Tile> blocks = new ArrayList<>();
+    for (int y = 0; y < height; y += blockSize) {
+      for (int x = 0; x < width; x += blockSize) {
+        blocks.add(new Tile(x, y, Math.min(blockSize, width - x),
+            Math.min(blockSize, height - y)));
+      }
+    }
+    ImageMetadata compressedImage = store.create(width, height);
+    // the buffers hold the largest block, which is only as large as the image when the blocks
+    // are larger than it
+    int blockWidth = Math.min(blockSize, width);
+    int blockHeight = Math.min(blockSize, height);
+    int side = FourierTransform.nextPowerOfTwo(Math.max(blockWidth, blockHeight));
+    long area = (long) side * side;
+    executor.forEach(blocks, (long) width * height,
+        () -> new BlockBuffers(singlePrecision ? new FloatCoefficients(side)
+            : new DoubleCoefficients(side), new CoefficientMagnitudes(area, 1),
+            new int[blockWidth * blockHeight * 3]),
+        (buffers, block) -> {
+          image.readTile(block, buffers.pixels);
+          int size = FourierTransform.nextPowerOfTwo(
+              Math.max(block.getWidth(), block.getHeight()));
+          for (int channel = 0; channel < 3; channel++) {
+            buffers.coefficients.fillBlock(buffers.pixels, block, channel, size);
+            buffers.magnitudes.clear();
+            buffers.coefficients.compressBlock(size, buffers.magnitudes, percentage);
+            buffers.coefficients.readBlock(buffers.pixels, block, channel, size);
+          }
+          compressedImage.writeTile(block, buffers.pixels);
+        });
+    return compressedImage;
+  }
+
+  /**
+   * The scratch state of a task compressing blocks.
+   */
+  private static final class BlockBuffers {
+    private final Coefficients coefficients;
+    private final CoefficientMagnitudes magnitudes;
+    private final int[] pixels;
+
+    private BlockBuffers(Coefficients coefficients, CoefficientMagnitudes magnitudes,
+                         int[] pixels) {
+      this.coefficients = coefficients;
+      this.magnitudes = magnitudes;
+      this.pixels = pixels;
+    }
+  }
+
+  /**
+   * Run one level of the transform on every buffer, the row pass before the column pass going
+   * forward and after it going back.
+   */
+  private void runLevel(Coefficients[] buffers, List<Tile> rows, List<Tile> columns, int size,
+                        int stride, long count, boolean inverse) {
+    if (inverse) {
+      runColumns(buffers, columns, size, stride, count);
+      runRows(buffers, rows, size, stride, count);
+    } else {
+      runRows(buffers, rows, size, stride, count);
+      runColumns(buffers, columns, size, stride, count);
+    }
+  }
+
+  private void runRows(Coefficients[] buffers, List<Tile> rows, int size, int stride,
+                       long count) {
+    executor.forEach(rows, count, () -> null, (state, strip) -> {
+      int y = strip.getY() % size;
+      buffers[strip.getY() / size].transformRows(stride, y, y + strip.getHeight());
+    });
+  }
+
+  private void runColumns(Coefficients[] buffers, List<Tile> columns, int size, int stride,
+                          long count) {
+    executor.forEach(columns, count, () -> null, (state, strip) ->
+        buffers[strip.getY() / size].transformColumns(stride, strip.getX(),
+            strip.getX() + strip.getWidth()));
+  }
+
+  /**
+   * The padded square of coefficients of one channel, in double or float precision, worked on
+   * a range of rows or columns at a time.
+   */
+  private interface Coefficients {
+
+    void fill(ImageMetadata image, int channel, int from, int to);
+
+    void transformRows(int stride, int from, int to);
+
+    void transformColumns(int stride, int from, int to);
+
+    void addMagnitudes(CoefficientMagnitudes magnitudes, int from, int to);
+
+    void dropBelow(double threshold, int from, int to);
+
+    /**
+     * Copy a range of rows of the coefficients of another buffer of the same precision and
+     * size, setting those whose magnitude is below a threshold to zero.
+     */
+    void copyAbove(Coefficients source, double threshold, int from, int to);
+
+    long getSizeInBytes();
+
+    /**
+     * Count the coefficients of a row of blocks a sparse image would keep.
+     */
+    int countEntries(WaveletPixelBuffer sparse, int blockRow);
+
+    /**
+     * Keep the coefficients of a row of blocks in a sparse image.
+     */
+    void extract(WaveletPixelBuffer sparse, int channel, int blockRow);
+
+    /**
+     * Copy the values of the start of a row, clamped to the range of a channel, into a buffer
+     * as long as the row is kept.
+     */
+    void readRow(int row, byte[] dest);
+
+    /**
+     * Fill the top left square of a given size with one channel of an interleaved block,
+     * repeating the last row and column of the block past its edges.
+     */
+    void fillBlock(int[] pixels, Tile block, int channel, int side);
+
+    /**
+     * Transform the top left square of a given size, drop its smallest coefficients and
+     * transform it back.
+     */
+    void compressBlock(int side, CoefficientMagnitudes magnitudes, int percentage);
+
+    /**
+     * Copy the values of the top left square covered by a block, clamped to the range of a
+     * channel, into one channel of its interleaved pixels.
+     */
+    void readBlock(int[] pixels, Tile block, int channel, int side);
+  }
+
+  private static final class DoubleCoefficients implements Coefficients {
+    private final int size;
+    private final double[] values;
+
+    private DoubleCoefficients(int size) {
+      this.size = size;
+      this.values = new double[size * size];
+    }
+
+    @Override
+    public void fill(ImageMetadata image, int channel, int from, int to) {
+      ImageHelper.getPaddedRows(image, channel, size, values, from, to);
+    }
+
+    @Override
+    public void transformRows(int stride, int from, int to) {
+      CompressionHelper.transformLevelRows(values, size, stride, from, to);
+    }
+
+    @Override
+    public void transformColumns(int stride, int from, int to) {
+      CompressionHelper.transformLevelColumns(values, size, stride, from, to);
+    }
+
+    @Override
+    public void addMagnitudes(CoefficientMagnitudes magnitudes, int from, int to) {
+      magnitudes.add(values, from * size, to * size);
+    }
+
+    @Override
+    public void dropBelow(double threshold, int from, int to) {
+      CompressionHelper.dropBelow(values, threshold, from * size, to * size);
+    }
+
+    @Override
+    public void copyAbove(Coefficients source, double threshold, int from, int to) {
+      double[] sourceValues = ((DoubleCoefficients) source).values;
+      for (int k = from * size; k < to * size; k++) {
+        double value = sourceValues[k];
+        values[k] = Math.abs(value) < threshold ? 0.0 : value;
+      }
+    }
+
+    @Override
+    public long getSizeInBytes() {
+      return (long) values.length * 8;
+    }
+
+    @Override
+    public int countEntries(WaveletPixelBuffer sparse, int blockRow) {
+      return sparse.countEntries(values, blockRow);
+    }
+
+    @Override
+    public void extract(WaveletPixelBuffer sparse, int channel, int blockRow) {
+      sparse.extract(channel, values, blockRow);
+    }
+
+    @Override
+    public void readRow(int row, byte[] dest) {
+      int offset = row * size;
+      for (int j = 0; j < dest.length; j++) {
+        dest[j] = (byte) correctPixelRange((int) values[offset + j]);
+      }
+    }
+
+    @Override
+    public void fillBlock(int[] pixels, Tile block, int channel, int side) {
+      int width = block.getWidth();
+      for (int i = 0; i < side; i++) {
+        int row = Math.min(i, block.getHeight() - 1) * width;
+        for (int j = 0; j < side; j++) {
+          values[i * side + j] = pixels[(row + Math.min(j, width - 1)) * 3 + channel];
+        }
+      }
+    }
+
+    @Override
+    public void compressBlock(int side, CoefficientMagnitudes magnitudes, int percentage) {
+      CompressionHelper.haarTransformation(values, side);
+      magnitudes.add(values, 0, side * side);
+      CompressionHelper.dropBelow(values, magnitudes.getThreshold(percentage), 0, side * side);
+      CompressionHelper.inverseHaarTransformation(values, side);
+    }
+
+    @Override
+    public void readBlock(int[] pixels, Tile block, int channel, int side) {
+      int width = block.getWidth();
+      for (int i = 0; i < block.getHeight(); i++) {
+        for (int j = 0; j < width; j++) {
+          pixels[(i * width + j) * 3 + channel] =
+              correctPixelRange((int) values[i * side + j]);
+        }
+      }
+    }
+  }
+
+  private static final class FloatCoefficients implements Coefficients {
+    private final int size;
+    private final float[] values;
+
+    private FloatCoefficients(int size) {
+      this.size = size;
+      this.values = new float[size * size];
+    }
+
+    @Override
+    public void fill(ImageMetadata image, int channel, int from, int to) {
+      ImageHelper.getPaddedRows(image, channel, size, values, from, to);
+    }
+
+    @Override
+    public void transformRows(int stride, int from, int to) {
+      CompressionHelper.transformLevelRows(values, size, stride, from, to);
+    }
+
+    @Override
+    public void transformColumns(int stride, int from, int to) {
+      CompressionHelper.transformLevelColumns(values, size, stride, from, to);
+    }
+
+    @Override
+    public void addMagnitudes(CoefficientMagnitudes magnitudes, int from, int to) {
+      magnitudes.add(values, from * size, to * size);
+    }
+
+    @Override
+    public void dropBelow(double threshold, int from, int to) {
+      CompressionHelper.dropBelow(values, threshold, from * size, to * size);
+    }
+
+    @Override
+    public void copyAbove(Coefficients source, double threshold, int from, int to) {
+      float[] sourceValues = ((FloatCoefficients) source).values;
+      for (int k = from * size; k < to * size; k++) {
+        float value = sourceValues[k];
+        values[k] = Math.abs(value) < threshold ? 0.0f : value;
+      }
+    }
+
+    @Override
+    public long getSizeInBytes() {
+      return (long) values.length * 4;
+    }
+
+    @Override
+    public int countEntries(WaveletPixelBuffer sparse, int blockRow) {
+      return sparse.countEntries(values, blockRow);
+    }
+
+    @Override
+    public void extract(WaveletPixelBuffer sparse, int channel, int blockRow) {
+      sparse.extract(channel, values, blockRow);
+    }
+
+    @Override
+    public void readRow(int row, byte[] dest) {
+      int offset = row * size;
+      for (int j = 0; j < dest.length; j++) {
+        dest[j] = (byte) correctPixelRange((int) values[offset + j]);
+      }
+    }
+
+    @Override
+    public void fillBlock(int[] pixels, Tile block, int channel, int side) {
+      int width = block.getWidth();
+      for (int i = 0; i < side; i++) {
+        int row = Math.min(i, block.getHeight() - 1) * width;
+        for (int j = 0; j < side; j++) {
+          values[i * side + j] = pixels[(row + Math.min(j, width - 1)) * 3 + channel];
+        }
+      }
+    }
+
+    @Override
+    public void compressBlock(int side, CoefficientMagnitudes magnitudes, int percentage) {
+      CompressionHelper.haarTransformation(values, side);
+      magnitudes.add(values, 0, side * side);
+      CompressionHelper.dropBelow(values, magnitudes.getThreshold(percentage), 0, side * side);
+      CompressionHelper.inverseHaarTransformation(values, side);
+    }
+
+    @Override
+    public void readBlock(int[] pixels, Tile block, int channel, int side) {
+      int width = block.getWidth();
+      for (int i = 0; i < block.getHeight(); i++) {
+        for (int j = 0; j < width; j++) {
+          pixels[(i * width + j) * 3 + channel] =
+              correctPixelRange((int) values[i * side + j]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,584 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.helpers.CompressionHelper;
+
+import static model.helpers.ImageHelper.correctPixelRange;
+
+/**
+ * A {@link PixelBuffer} holding a compressed image as the Haar wavelet coefficients compress
+ * left rather than as channel values. Only the coefficients that are not zero are kept, grouped
+ * by the square block of the padded square of coefficients they lie in, and the pixels of a
+ * block are rebuilt from them whenever they are read.
+ * A block can be rebuilt on its own because the levels of the transform with a stride shorter
+ * than its side only pair values within it. The longer strides only pair the first row, the
+ * first column and the top left corner of each block with those of other blocks, so the first
+ * row of a block is first transformed back from the first rows of the blocks above and below
+ * it and its first column from the first columns of the blocks to its left and right. The
+ * corners of all blocks are transformed back once, when the image is made. Blocks lying past
+ * the edges of the image only keep their first row and column.
+ * Every thread keeps the blocks it rebuilt last, of all compressed images together, so reading
+ * an image a row or a tile at a time, even with margins around the tiles, rebuilds every block
+ * about once per channel.
+ * The buffer is filled by compress before the image is published and is never written after.
+ */
+final class WaveletPixelBuffer implements PixelBuffer {
+
+  /**
+   * The bytes held for every coefficient kept, its index within its block and its value.
+   */
+  private static final int ENTRY_BYTES = Character.BYTES + Double.BYTES;
+
+  /**
+   * The bytes held for every block besides its coefficients, at most the headers of its
+   * arrays, the references to them, the bounds of their parts and its corner.
+   */
+  private static final int BLOCK_BYTES = 56;
+
+  private static final char[] NO_INDICES = new char[0];
+
+  private static final double[] NO_VALUES = new double[0];
+
+  /**
+   * The bytes of rebuilt blocks every thread keeps, enough for three rows of blocks of every
+   * channel of an image about 3600 pixels wide, so the tiles with margins a filter reads do
+   * not rebuild a block more than once per row of tiles.
+   */
+  private static final long REBUILT_BYTES = 4L << 20;
+
+  private static final AtomicInteger IDS = new AtomicInteger();
+
+  /**
+   * The blocks a thread rebuilt last, of any buffer, the least recently read dropped first.
+   */
+  private static final ThreadLocal<Blocks> REBUILT = ThreadLocal.withInitial(Blocks::new);
+
+  private static final class Blocks {
+    private final LinkedHashMap<Long, byte[]> values = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long lastKey = -1;
+    private byte[] last;
+
+    private void put(long key, byte[] block) {
+      values.put(key, block);
+      bytes += block.length;
+      Iterator<byte[]> iterator = values.values().iterator();
+      while (bytes > REBUILT_BYTES && iterator.hasNext()) {
+        bytes -= iterator.next().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  private final int width;
+  private final int height;
+  private final int side;
+  private final int blocks;
+  private final boolean singlePrecision;
+
+  // for every channel and block, the indices within the block and values of the coefficients
+  // kept: those of its first column below the corner, then those of its first row right of the
+  // corner, then the others
+  private final char[][][] indices;
+  private final double[][][] values;
+  private final int[][] rowStarts;
+  private final int[][] interiorStarts;
+  private final double[][] corners;
+  private final long[] entries;
+  private final long id;
+
+  /**
+   * Constructs an empty buffer for the coefficients of an image, to be filled a row of blocks
+   * at a time by {@link #extract(int, double[], int)} and finished channel by channel.
+   *
+   * @param width           The width of the image.
+   * @param height          The height of the image.
+   * @param size            The side of the padded square of coefficients, a power of two.
+   * @param singlePrecision Whether the coefficients were computed in float precision, in which
+   *                        the pixels are rebuilt.
+   */
+  WaveletPixelBuffer(int width, int height, int size, boolean singlePrecision) {
+    this.width = width;
+    this.height = height;
+    this.side = getBlockSide(size);
+    this.blocks = size / side;
+    this.singlePrecision = singlePrecision;
+    int count = blocks * blocks;
+    this.indices = new char[3][count][];
+    this.values = new double[3][count][];
+    this.rowStarts = new int[3][count];
+    this.interiorStarts = new int[3][count];
+    this.corners = new double[3][count];
+    this.entries = new long[3];
+    this.id = IDS.getAndIncrement() & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Get the side of the blocks the coefficients of a padded square are grouped in, which is
+   * that of the tiles images are split into.
+   *
+   * @param size The side of the padded square.
+   * @return The side of the blocks.
+   */
+  static int getBlockSide(int size) {
+    return Math.min(Tile.SIZE, size);
+  }
+
+  /**
+   * Get about how many bytes a buffer keeping a given number of coefficients of a padded square
+   * takes for one channel.
+   *
+   * @param entries The number of coefficients kept.
+   * @param size    The side of the padded square.
+   * @return The number of bytes.
+   */
+  static long getSizeInBytes(long entries, int size) {
+    long count = size / getBlockSide(size);
+    return entries * ENTRY_BYTES + count * count * BLOCK_BYTES;
+  }
+
+  /**
+   * Count the coefficients of a row of blocks that would be kept.
+   *
+   * @param coefficients The padded square of coefficients of a channel, stored row by row.
+   * @param blockRow     The row of blocks.
+   * @return The number of coefficients.
+   */
+  int countEntries(double[] coefficients, int blockRow) {
+    int count = 0;
+    for (int bx = 0; bx < blocks; bx++) {
+      count += collect(coefficients, origin(bx, blockRow), isInside(bx, blockRow), null, null);
+    }
+    return count;
+  }
+
+  /**
+   * Count the coefficients of a row of blocks that would be kept, in float precision.
+   *
+   * @param coefficients The padded square of coefficients of a channel, stored row by row.
+   * @param blockRow     The row of blocks.
+   * @return The number of coefficients.
+   */
+  int countEntries(float[] coefficients, int blockRow) {
+    int count = 0;
+    for (int bx = 0; bx < blocks; bx++) {
+      count += collect(coefficients, origin(bx, blockRow), isInside(bx, blockRow), null, null);
+    }
+    return count;
+  }
+
+  /**
+   * Keep the coefficients of a row of blocks of a channel. Rows of blocks can be extracted
+   * from different threads.
+   *
+   * @param channel      The channel index.
+   * @param coefficients The padded square of coefficients of the channel, stored row by row.
+   * @param blockRow     The row of blocks.
+   */
+  void extract(int channel, double[] coefficients, int blockRow) {
+    for (int bx = 0; bx < blocks; bx++) {
+      int origin = origin(bx, blockRow);
+      boolean inside = isInside(bx, blockRow);
+      int count = collect(coefficients, origin, inside, null, null);
+      int block = blockRow * blocks + bx;
+      char[] blockIndices = count == 0 ? NO_INDICES : new char[count];
+      double[] blockValues = count == 0 ? NO_VALUES : new double[count];
+      collect(coefficients, origin, inside, blockIndices, blockValues);
+      store(channel, block, blockIndices, blockValues);
+      corners[channel][block] = coefficients[origin];
+    }
+  }
+
+  /**
+   * Keep the coefficients of a row of blocks of a channel, in float precision.
+   *
+   * @param channel      The channel index.
+   * @param coefficients The padded square of coefficients of the channel, stored row by row.
+   * @param blockRow     The row of blocks.
+   */
+  void extract(int channel, float[] coefficients, int blockRow) {
+    for (int bx = 0; bx < blocks; bx++) {
+      int origin = origin(bx, blockRow);
+      boolean inside = isInside(bx, blockRow);
+      int count = collect(coefficients, origin, inside, null, null);
+      int block = blockRow * blocks + bx;
+      char[] blockIndices = count == 0 ? NO_INDICES : new char[count];
+      double[] blockValues = count == 0 ? NO_VALUES : new double[count];
+      collect(coefficients, origin, inside, blockIndices, blockValues);
+      store(channel, block, blockIndices, blockValues);
+      corners[channel][block] = coefficients[origin];
+    }
+  }
+
+  /**
+   * Finish a channel once all its rows of blocks are extracted, by transforming the corners of
+   * the blocks back.
+   *
+   * @param channel The channel index.
+   */
+  void finish(int channel) {
+    double[] channelCorners = corners[channel];
+    if (singlePrecision) {
+      float[] grid = new float[channelCorners.length];
+      for (int k = 0; k < grid.length; k++) {
+        grid[k] = (float) channelCorners[k];
+      }
+      CompressionHelper.inverseHaarTransformation(grid, blocks);
+      for (int k = 0; k < grid.length; k++) {
+        channelCorners[k] = grid[k];
+      }
+    } else {
+      CompressionHelper.inverseHaarTransformation(channelCorners, blocks);
+    }
+    long count = 0;
+    for (char[] blockIndices : indices[channel]) {
+      count += blockIndices.length;
+    }
+    entries[channel] = count;
+  }
+
+  private int origin(int bx, int by) {
+    return (by * side * blocks + bx) * side;
+  }
+
+  private boolean isInside(int bx, int by) {
+    return bx * side < width && by * side < height;
+  }
+
+  private void store(int channel, int block, char[] blockIndices, double[] blockValues) {
+    int rowStart = 0;
+    while (rowStart < blockIndices.length && blockIndices[rowStart] % side == 0) {
+      rowStart++;
+    }
+    int interiorStart = rowStart;
+    while (interiorStart < blockIndices.length && blockIndices[interiorStart] < side) {
+      interiorStart++;
+    }
+    indices[channel][block] = blockIndices;
+    values[channel][block] = blockValues;
+    rowStarts[channel][block] = rowStart;
+    interiorStarts[channel][block] = interiorStart;
+  }
+
+  /**
+   * Count the coefficients of a block that are kept, and copy them if buffers are given: those
+   * of the first column below the corner, then those of the first row right of the corner,
+   * then, for a block within the image, all the others.
+   */
+  private int collect(double[] coefficients, int origin, boolean inside, char[] blockIndices,
+                      double[] blockValues) {
+    int size = blocks * side;
+    int n = 0;
+    for (int i = 1; i < side; i++) {
+      double value = coefficients[origin + i * size];
+      if (value != 0.0) {
+        if (blockIndices != null) {
+          blockIndices[n] = (char) (i * side);
+          blockValues[n] = value;
+        }
+        n++;
+      }
+    }
+    for (int j = 1; j < side; j++) {
+      double value = coefficients[origin + j];
+      if (value != 0.0) {
+        if (blockIndices != null) {
+          blockIndices[n] = (char) j;
+          blockValues[n] = value;
+        }
+        n++;
+      }
+    }
+    for (int i = inside ? 1 : side; i < side; i++) {
+      int row = origin + i * size;
+      for (int j = 1; j < side; j++) {
+        double value = coefficients[row + j];
+        if (value != 0.0) {
+          if (blockIndices != null) {
+            blockIndices[n] = (char) (i * side + j);
+            blockValues[n] = value;
+          }
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  private int collect(float[] coefficients, int origin, boolean inside, char[] blockIndices,
+                      double[] blockValues) {
+    int size = blocks * side;
+    int n = 0;
+    for (int i = 1; i < side; i++) {
+      float value = coefficients[origin + i * size];
+      if (value != 0.0f) {
+        if (blockIndices != null) {
+          blockIndices[n] = (char) (i * side);
+          blockValues[n] = value;
+        }
+        n++;
+      }
+    }
+    for (int j = 1; j < side; j++) {
+      float value = coefficients[origin + j];
+      if (value != 0.0f) {
+        if (blockIndices != null) {
+          blockIndices[n] = (char) j;
+          blockValues[n] = value;
+        }
+        n++;
+      }
+    }
+    for (int i = inside ? 1 : side; i < side; i++) {
+      int row = origin + i * size;
+      for (int j = 1; j < side; j++) {
+        float value = coefficients[row + j];
+        if (value != 0.0f) {
+          if (blockIndices != null) {
+            blockIndices[n] = (char) (i * side + j);
+            blockValues[n] = value;
+          }
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Rebuild the values of one channel of a block.
+   *
+   * @return The values of the block, row by row, side values to a row.
+   */
+  private int[] decode(int channel, int bx, int by) {
+    return singlePrecision ? decodeFloat(channel, bx, by) : decodeDouble(channel, bx, by);
+  }
+
+  private int[] decodeDouble(int channel, int bx, int by) {
+    int block = by * blocks + bx;
+    double[] square = new double[side * side];
+    scatter(channel, block, 0, indices[channel][block].length, square, 0, 1);
+    if (blocks > 1) {
+      // the first row is paired with the first rows of the blocks above and below, and the
+      // first column with the first columns of the blocks to the left and right
+      double[] lines = new double[blocks * side];
+      for (int g = 0; g < blocks; g++) {
+        int other = g * blocks + bx;
+        scatter(channel, other, rowStarts[channel][other], interiorStarts[channel][other],
+            lines, g * side, 1);
+      }
+      inverseLines(lines);
+      System.arraycopy(lines, by * side + 1, square, 1, side - 1);
+      Arrays.fill(lines, 0.0);
+      for (int g = 0; g < blocks; g++) {
+        int other = by * blocks + g;
+        scatter(channel, other, 0, rowStarts[channel][other], lines, g * side, side);
+      }
+      inverseLines(lines);
+      for (int i = 1; i < side; i++) {
+        square[i * side] = lines[bx * side + i];
+      }
+    }
+    square[0] = corners[channel][block];
+    CompressionHelper.inverseHaarTransformation(square, side);
+    int[] pixels = new int[side * side];
+    for (int k = 0; k < pixels.length; k++) {
+      pixels[k] = correctPixelRange((int) square[k]);
+    }
+    return pixels;
+  }
+
+  private int[] decodeFloat(int channel, int bx, int by) {
+    int block = by * blocks + bx;
+    float[] square = new float[side * side];
+    scatter(channel, block, 0, indices[channel][block].length, square, 0, 1);
+    if (blocks > 1) {
+      float[] lines = new float[blocks * side];
+      for (int g = 0; g < blocks; g++) {
+        int other = g * blocks + bx;
+        scatter(channel, other, rowStarts[channel][other], interiorStarts[channel][other],
+            lines, g * side, 1);
+      }
+      inverseLines(lines);
+      System.arraycopy(lines, by * side + 1, square, 1, side - 1);
+      Arrays.fill(lines, 0.0f);
+      for (int g = 0; g < blocks; g++) {
+        int other = by * blocks + g;
+        scatter(channel, other, 0, rowStarts[channel][other], lines, g * side, side);
+      }
+      inverseLines(lines);
+      for (int i = 1; i < side; i++) {
+        square[i * side] = lines[bx * side + i];
+      }
+    }
+    square[0] = (float) corners[channel][block];
+    CompressionHelper.inverseHaarTransformation(square, side);
+    int[] pixels = new int[side * side];
+    for (int k = 0; k < pixels.length; k++) {
+      pixels[k] = correctPixelRange((int) square[k]);
+    }
+    return pixels;
+  }
+
+  /**
+   * Copy a part of the coefficients kept for a block into an array, at the offset given by
+   * their index within the block divided by a step.
+   */
+  private void scatter(int channel, int block, int from, int to, double[] dest, int offset,
+                       int step) {
+    char[] blockIndices = indices[channel][block];
+    double[] blockValues = values[channel][block];
+    for (int k = from; k < to; k++) {
+      dest[offset + blockIndices[k] / step] = blockValues[k];
+    }
+  }
+
+  private void scatter(int channel, int block, int from, int to, float[] dest, int offset,
+                       int step) {
+    char[] blockIndices = indices[channel][block];
+    double[] blockValues = values[channel][block];
+    for (int k = from; k < to; k++) {
+      dest[offset + blockIndices[k] / step] = (float) blockValues[k];
+    }
+  }
+
+  /**
+   * Run the levels of the inverse transform with strides of a block or longer on lines of
+   * values a block apart, stored one block after another, the same pairs the column pass of
+   * those levels makes of the rows of the padded square.
+   */
+  private void inverseLines(double[] lines) {
+    for (int stride = blocks / 2; stride >= 1; stride /= 2) {
+      for (int g = 0; g < blocks; g += 2 * stride) {
+        CompressionHelper.transformRows(lines, g * side, (g + stride) * side, side);
+      }
+    }
+  }
+
+  private void inverseLines(float[] lines) {
+    for (int stride = blocks / 2; stride >= 1; stride /= 2) {
+      for (int g = 0; g < blocks; g += 2 * stride) {
+        CompressionHelper.transformRows(lines, g * side, (g + stride) * side, side);
+      }
+    }
+  }
+
+  /**
+   * Get the values of a block of a channel, row by row, side values to a row, rebuilding it
+   * unless this thread rebuilt it recently.
+   */
+  private byte[] block(int channel, int bx, int by) {
+    Blocks cache = REBUILT.get();
+    long key = id << 32 | (channel * blocks + by) * blocks + bx;
+    if (key == cache.lastKey) {
+      return cache.last;
+    }
+    byte[] values = cache.values.get(key);
+    if (values == null) {
+      int[] pixels = decode(channel, bx, by);
+      values = new byte[pixels.length];
+      for (int k = 0; k < pixels.length; k++) {
+        values[k] = (byte) pixels[k];
+      }
+      cache.put(key, values);
+    }
+    cache.lastKey = key;
+    cache.last = values;
+    return values;
+  }
+
+  @Override
+  public int get(int channel, int index) {
+    int row = index / width;
+    int column = index % width;
+    return block(channel, column / side, row / side)[(row % side) * side + column % side]
+        & 0xFF;
+  }
+
+  @Override
+  public void read(int channel, int offset, int[] dest, int length) {
+    for (int k = 0; k < length; ) {
+      int row = (offset + k) / width;
+      int column = (offset + k) % width;
+      int count = Math.min(length - k, Math.min(width - column, side - column % side));
+      byte[] values = block(channel, column / side, row / side);
+      int source = (row % side) * side + column % side;
+      for (int j = 0; j < count; j++) {
+        dest[k + j] = values[source + j] & 0xFF;
+      }
+      k += count;
+    }
+  }
+
+  @Override
+  public void read(int channel, int offset, byte[] dest, int destOffset, int length) {
+    for (int k = 0; k < length; ) {
+      int row = (offset + k) / width;
+      int column = (offset + k) % width;
+      int count = Math.min(length - k, Math.min(width - column, side - column % side));
+      System.arraycopy(block(channel, column / side, row / side),
+          (row % side) * side + column % side, dest, destOffset + k, count);
+      k += count;
+    }
+  }
+
+  @Override
+  public void write(int channel, int offset, byte[] src, int srcOffset, int length) {
+    throw new UnsupportedOperationException("A compressed image cannot be written.");
+  }
+
+  @Override
+  public void readTile(Tile tile, int[] dest) {
+    for (int channel = 0; channel < 3; channel++) {
+      readTile(tile, channel, dest);
+    }
+  }
+
+  @Override
+  public void readTile(Tile tile, int channel, int[] dest) {
+    int right = tile.getX() + tile.getWidth();
+    int bottom = tile.getY() + tile.getHeight();
+    for (int y = tile.getY(); y < bottom; y = (y / side + 1) * side) {
+      int rows = Math.min(bottom, (y / side + 1) * side) - y;
+      for (int x = tile.getX(); x < right; x = (x / side + 1) * side) {
+        int columns = Math.min(right, (x / side + 1) * side) - x;
+        byte[] values = block(channel, x / side, y / side);
+        for (int i = 0; i < rows; i++) {
+          int source = (y % side + i) * side + x % side;
+          int k = ((y - tile.getY() + i) * tile.getWidth() + x - tile.getX()) * 3 + channel;
+          for (int j = 0; j < columns; j++) {
+            dest[k] = values[source + j] & 0xFF;
+            k += 3;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void writeTile(Tile tile, int[] src) {
+    throw new UnsupportedOperationException("A compressed image cannot be written.");
+  }
+
+  @Override
+  public byte[][] planes() {
+    return null;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    long size = 0;
+    for (long count : entries) {
+      size += getSizeInBytes(count, blocks * side);
+    }
+    return size;
+  }
+
+  @Override
+  public void release() {
+    // coefficients are reclaimed by the garbage collector
+  }
+}
@@ -0,0 +1,208 @@
+package model.helpers;
+
+import java.util.Arrays;
+
+/**
+ * The distinct magnitudes of the wavelet coefficients of a channel, rounded to three decimals,
+ * from which compression picks its threshold. A magnitude is kept as the whole number of
+ * thousandths it rounds to. Most coefficients are small, so the small magnitudes are marked in
+ * a set of bits, and only the few large ones, from the coarsest levels of the transform, are
+ * collected to be sorted. The coefficients can be split into parts gathered separately, even
+ * on different threads, and then merged.
+ */
+public final class CoefficientMagnitudes {
+
+  private static final double ROUNDING = 1000.0;
+
+  private static final int SMALL_MAGNITUDES = 1 << 24;
+
+  private final int smallLimit;
+  private final long[] small;
+  private long[] large;
+  private int largeCount;
+
+  /**
+   * Constructs an empty set of magnitudes for a channel gathered in a number of parts. The sets
+   * of small magnitudes of all the parts together are never larger than a buffer of double
+   * coefficients of the channel.
+   *
+   * @param count The number of coefficients of the channel.
+   * @param parts The largest number of parts the coefficients are gathered in.
+   */
+  public CoefficientMagnitudes(long count, int parts) {
+    long limit = 64 * Math.max(count, 1) / Math.max(parts, 1);
+    this.smallLimit = (int) Math.max(64, Math.min(SMALL_MAGNITUDES, limit) & ~63L);
+    this.small = new long[smallLimit / 64];
+    this.large = new long[16];
+  }
+
+  /**
+   * Remove every magnitude, so the set can be reused for another channel.
+   */
+  public void clear() {
+    Arrays.fill(small, 0L);
+    largeCount = 0;
+  }
+
+  /**
+   * Add the magnitudes of a range of coefficients.
+   *
+   * @param coefficients The coefficients.
+   * @param from         The first index of the range.
+   * @param to           The index past the range.
+   */
+  public void add(double[] coefficients, int from, int to) {
+    for (int k = from; k < to; k++) {
+      add(getMagnitude(coefficients[k]));
+    }
+  }
+
+  /**
+   * Add the magnitudes of a range of coefficients in float precision.
+   *
+   * @param coefficients The coefficients.
+   * @param from         The first index of the range.
+   * @param to           The index past the range.
+   */
+  public void add(float[] coefficients, int from, int to) {
+    for (int k = from; k < to; k++) {
+      add(getMagnitude(coefficients[k]));
+    }
+  }
+
+  /**
+   * Add every magnitude of another part of the same channel.
+   *
+   * @param other The magnitudes of the other part, made with the same count and parts.
+   * @throws IllegalArgumentException If the other part was made for a different split.
+   */
+  public void addAll(CoefficientMagnitudes other) {
+    if (other.smallLimit != smallLimit) {
+      throw new IllegalArgumentException("Magnitudes gathered for a different split.");
+    }
+    for (int k = 0; k < small.length; k++) {
+      small[k] |= other.small[k];
+    }
+    for (int m = 0; m < other.largeCount; m++) {
+      addLarge(other.large[m]);
+    }
+  }
+
+  /**
+   * Finds the magnitude below which coefficients are set to zero, as the given percentage of
+   * the distinct magnitudes. When the percentage reaches past the largest magnitude, every
+   * coefficient is set to zero.
+   *
+   * @param percentage The compression percentage.
+   * @return The threshold value for compression.
+   */
+  public double getThreshold(int percentage) {
+    if (percentage == 100) {
+      return Double.MAX_VALUE;
+    }
+
+    Arrays.sort(large, 0, largeCount);
+    int smallDistinct = 0;
+    for (long word : small) {
+      smallDistinct += Long.bitCount(word);
+    }
+    int largeDistinct = 0;
+    for (int m = 0; m < largeCount; m++) {
+      if (m == 0 || large[m] != large[m - 1]) {
+        largeDistinct++;
+      }
+    }
+
+    int rank = (int) Math.round((smallDistinct + largeDistinct) * (percentage / 100.0));
+    if (rank >= smallDistinct + largeDistinct) {
+      return Double.MAX_VALUE;
+    }
+    if (rank < smallDistinct) {
+      int word = 0;
+      while (rank >= Long.bitCount(small[word])) {
+        rank -= Long.bitCount(small[word]);
+        word++;
+      }
+      long bits = small[word];
+      for (; rank > 0; rank--) {
+        bits &= bits - 1;
+      }
+      return (word * 64L + Long.numberOfTrailingZeros(bits)) / ROUNDING;
+    }
+    rank -= smallDistinct;
+    for (int m = 0; ; m++) {
+      if (m == 0 || large[m] != large[m - 1]) {
+        if (rank == 0) {
+          return large[m] / ROUNDING;
+        }
+        rank--;
+      }
+    }
+  }
+
+  /**
+   * Get every distinct magnitude in increasing order, as whole numbers of thousandths, so
+   * thresholds for any percentage can be looked up without gathering the magnitudes again.
+   *
+   * @return The distinct magnitudes.
+   */
+  public long[] getDistinct() {
+    Arrays.sort(large, 0, largeCount);
+    int smallDistinct = 0;
+    for (long word : small) {
+      smallDistinct += Long.bitCount(word);
+    }
+    long[] distinct = new long[smallDistinct + largeCount];
+    int n = 0;
+    for (int word = 0; word < small.length; word++) {
+      for (long bits = small[word]; bits != 0; bits &= bits - 1) {
+        distinct[n++] = word * 64L + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    for (int m = 0; m < largeCount; m++) {
+      if (m == 0 || large[m] != large[m - 1]) {
+        distinct[n++] = large[m];
+      }
+    }
+    return Arrays.copyOf(distinct, n);
+  }
+
+  /**
+   * Finds the threshold for a percentage among distinct magnitudes, the same one
+   * {@link #getThreshold(int)} finds for the magnitudes they were taken from.
+   *
+   * @param distinct   The distinct magnitudes, as given by {@link #getDistinct()}.
+   * @param percentage The compression percentage.
+   * @return The threshold value for compression.
+   */
+  public static double getThreshold(long[] distinct, int percentage) {
+    int rank = (int) Math.round(distinct.length * (percentage / 100.0));
+    if (percentage == 100 || rank >= distinct.length) {
+      return Double.MAX_VALUE;
+    }
+    return distinct[rank] / ROUNDING;
+  }
+
+  private void add(long magnitude) {
+    if (magnitude < smallLimit) {
+      small[(int) (magnitude >>> 6)] |= 1L << magnitude;
+    } else {
+      addLarge(magnitude);
+    }
+  }
+
+  private void addLarge(long magnitude) {
+    if (largeCount == large.length) {
+      large = Arrays.copyOf(large, 2 * largeCount);
+    }
+    large[largeCount++] = magnitude;
+  }
+
+  /**
+   * Round the magnitude of a coefficient to a whole number of thousandths.
+   */
+  private static long getMagnitude(double coefficient) {
+    long rounded = Math.round(coefficient * ROUNDING);
+    return rounded == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(rounded);
+  }
+}
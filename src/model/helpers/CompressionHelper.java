@@ -1,179 +1,329 @@
 package model.helpers;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 /**
  * The CompressionHelper class provides methods for compressing and decompressing image data using
  * Haar wavelet transformation.
+ * The transform works in place on a square of coefficients stored row by row in a flat array,
+ * in double or, to halve its memory, in float precision. Every level pairs up values a stride
+ * apart along every row and then along every column and replaces each pair with its scaled sum
+ * and difference, the stride doubling from one level to the next. Sums stay where the first
+ * value of their pair was and differences where the second was, so the levels never move or
+ * copy values, and the column pass combines whole rows at a time.
+ * Within a level, every row of the row pass and every column of the column pass is independent
+ * of the others, so the passes can also be run a range of rows or columns at a time, such as on
+ * different threads, as long as each pass is finished before the next one starts.
  */
 public class CompressionHelper {
+
+  private static final double SQRT_2 = Math.sqrt(2);
+
   /**
-   * Performs the Haar wavelet transformation on the input pixel array.
+   * Performs the Haar wavelet transformation in place on a square of values.
    *
-   * @param oldPixels The input pixel array to be transformed.
-   * @return The transformed pixel array.
+   * @param values The values, stored row by row, which are replaced by the coefficients.
+   * @param size   The side of the square, a power of two.
    */
-  public static double[][] haarTransformation(int[][] oldPixels) {
-
-    int size = oldPixels.length;
-    double[][] newDoublePixel = new double[size][size];
-
-
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-        newDoublePixel[i][j] = oldPixels[i][j];
-      }
+  public static void haarTransformation(double[] values, int size) {
+    for (int stride = 1; stride < size; stride *= 2) {
+      transformLevelRows(values, size, stride, 0, size);
+      transformLevelColumns(values, size, stride, 0, size);
     }
+  }
 
-    int condition = size;
-    while (condition > 1) {
-      newDoublePixel = getTransformation(newDoublePixel, size, condition);
-      newDoublePixel = ImageHelper.transpose(newDoublePixel, size, size);
-      newDoublePixel = getTransformation(newDoublePixel, size, condition);
-      newDoublePixel = ImageHelper.transpose(newDoublePixel, size, size);
-      condition /= 2;
+  /**
+   * Performs the Haar wavelet transformation in place on a square of values, in float
+   * precision.
+   *
+   * @param values The values, stored row by row, which are replaced by the coefficients.
+   * @param size   The side of the square, a power of two.
+   */
+  public static void haarTransformation(float[] values, int size) {
+    for (int stride = 1; stride < size; stride *= 2) {
+      transformLevelRows(values, size, stride, 0, size);
+      transformLevelColumns(values, size, stride, 0, size);
     }
-    return newDoublePixel;
   }
 
-  private static double[][] getTransformation(double[][] pixelMap, int maxIteration, int c) {
-    for (int i = 0; i < maxIteration; i++) {
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
-
-      for (int j = 0; j < c - 1; j += 2) {
-
-        double rgbA = pixelMap[i][j];
-        double rgbB = pixelMap[i][j + 1];
-
-        avg.add((rgbA + rgbB) / Math.sqrt(2));
-        diff.add((rgbA - rgbB) / Math.sqrt(2));
-
-
-      }
-
-      for (int j = 0; j < avg.size(); j++) {
-
-        double avgVal = avg.get(j);
-        double diffVal = diff.get(j);
-        pixelMap[i][j] = avgVal;
-        pixelMap[i][j + avg.size()] = diffVal;
-      }
+  /**
+   * Performs the inverse Haar wavelet transformation in place on a square of coefficients.
+   *
+   * @param coefficients The coefficients, as left by {@link #haarTransformation(double[], int)},
+   *                     which are replaced by the values.
+   * @param size         The side of the square, a power of two.
+   */
+  public static void inverseHaarTransformation(double[] coefficients, int size) {
+    for (int stride = size / 2; stride >= 1; stride /= 2) {
+      transformLevelColumns(coefficients, size, stride, 0, size);
+      transformLevelRows(coefficients, size, stride, 0, size);
     }
-    return pixelMap;
   }
 
   /**
-   * Performs the inverse Haar wavelet transformation on the input pixel array.
+   * Performs the inverse Haar wavelet transformation in place on a square of coefficients, in
+   * float precision.
    *
-   * @param pixelMapOriginal The original transformed pixel array.
-   * @param size             The size of the pixel array.
-   * @return The inverse transformed pixel array.
+   * @param coefficients The coefficients, as left by {@link #haarTransformation(float[], int)},
+   *                     which are replaced by the values.
+   * @param size         The side of the square, a power of two.
    */
-  public static double[][] inverseHaarTransformation(double[][] pixelMapOriginal, int size) {
-
-    double[][] pixelMap = pixelMapOriginal;
-
-
-    int condition = 2;
-
-    while (condition <= size) {
-
-      // Inverse transform rows
-      pixelMap = ImageHelper.transpose(pixelMap, size, size);
-      pixelMap = getInversion(pixelMap, size, condition);
-      pixelMap = ImageHelper.transpose(pixelMap, size, size);
-      pixelMap = getInversion(pixelMap, size, condition);
-
-      condition *= 2;
+  public static void inverseHaarTransformation(float[] coefficients, int size) {
+    for (int stride = size / 2; stride >= 1; stride /= 2) {
+      transformLevelColumns(coefficients, size, stride, 0, size);
+      transformLevelRows(coefficients, size, stride, 0, size);
     }
+  }
 
+  // The scaled sum and difference of a pair is its own inverse, so the same passes serve both
+  // directions of the transform: the forward transform runs the row and then the column pass of
+  // each level with the stride going up, and the inverse runs them in the other order with the
+  // stride going down.
 
-    return pixelMap;
+  /**
+   * Runs the row pass of one level of the transform on a range of rows.
+   *
+   * @param values The square of values, stored row by row.
+   * @param size   The side of the square.
+   * @param stride The distance between the values paired up by the level.
+   * @param from   The first row of the range.
+   * @param to     The row past the range.
+   */
+  public static void transformLevelRows(double[] values, int size, int stride, int from,
+                                        int to) {
+    for (int i = from; i < to; i++) {
+      transformRow(values, i * size, size, stride);
+    }
   }
 
-  private static double[][] getInversion(double[][] pixelMap, int maxIteration, int c) {
-    for (int i = 0; i < maxIteration; i++) {
-
-      List<Double> avg = new ArrayList<>();
-      List<Double> diff = new ArrayList<>();
+  /**
+   * Runs the row pass of one level of the transform on a range of rows, in float precision.
+   *
+   * @param values The square of values, stored row by row.
+   * @param size   The side of the square.
+   * @param stride The distance between the values paired up by the level.
+   * @param from   The first row of the range.
+   * @param to     The row past the range.
+   */
+  public static void transformLevelRows(float[] values, int size, int stride, int from,
+                                        int to) {
+    for (int i = from; i < to; i++) {
+      transformRow(values, i * size, size, stride);
+    }
+  }
 
-      for (int j = 0; j < c / 2; j++) {
+  /**
+   * Runs the column pass of one level of the transform on a range of columns.
+   *
+   * @param values The square of values, stored row by row.
+   * @param size   The side of the square.
+   * @param stride The distance between the rows paired up by the level.
+   * @param from   The first column of the range.
+   * @param to     The column past the range.
+   */
+  public static void transformLevelColumns(double[] values, int size, int stride, int from,
+                                           int to) {
+    for (int i = 0; i < size; i += 2 * stride) {
+      transformRows(values, i * size + from, (i + stride) * size + from, to - from);
+    }
+  }
 
+  /**
+   * Runs the column pass of one level of the transform on a range of columns, in float
+   * precision.
+   *
+   * @param values The square of values, stored row by row.
+   * @param size   The side of the square.
+   * @param stride The distance between the rows paired up by the level.
+   * @param from   The first column of the range.
+   * @param to     The column past the range.
+   */
+  public static void transformLevelColumns(float[] values, int size, int stride, int from,
+                                           int to) {
+    for (int i = 0; i < size; i += 2 * stride) {
+      transformRows(values, i * size + from, (i + stride) * size + from, to - from);
+    }
+  }
 
-        double avgVal = pixelMap[i][j];
-        double diffVal = pixelMap[i][j + (c / 2)];
+  private static void transformRow(double[] values, int offset, int size, int stride) {
+    for (int j = offset; j < offset + size; j += 2 * stride) {
+      double a = values[j];
+      double b = values[j + stride];
+      values[j] = (a + b) / SQRT_2;
+      values[j + stride] = (a - b) / SQRT_2;
+    }
+  }
 
-        double rgbAvg = (avgVal + diffVal) / Math.sqrt(2);
+  private static void transformRow(float[] values, int offset, int size, int stride) {
+    for (int j = offset; j < offset + size; j += 2 * stride) {
+      float a = values[j];
+      float b = values[j + stride];
+      values[j] = (float) ((a + b) / SQRT_2);
+      values[j + stride] = (float) ((a - b) / SQRT_2);
+    }
+  }
 
-        avg.add(rgbAvg);
-        double rgbDiff = (avgVal - diffVal) / Math.sqrt(2);
+  /**
+   * Replaces each pair of values at the same place in two ranges with its scaled sum and
+   * difference, the step every pass of the transform is made of. The column pass of a level
+   * runs it on pairs of rows.
+   *
+   * @param values The values.
+   * @param first  The start of the range receiving the sums.
+   * @param second The start of the range receiving the differences.
+   * @param length The number of values in each range.
+   */
+  public static void transformRows(double[] values, int first, int second, int length) {
+    for (int j = 0; j < length; j++) {
+      double a = values[first + j];
+      double b = values[second + j];
+      values[first + j] = (a + b) / SQRT_2;
+      values[second + j] = (a - b) / SQRT_2;
+    }
+  }
 
-        diff.add(rgbDiff);
+  /**
+   * Replaces each pair of values at the same place in two ranges with its scaled sum and
+   * difference, in float precision.
+   *
+   * @param values The values.
+   * @param first  The start of the range receiving the sums.
+   * @param second The start of the range receiving the differences.
+   * @param length The number of values in each range.
+   */
+  public static void transformRows(float[] values, int first, int second, int length) {
+    for (int j = 0; j < length; j++) {
+      float a = values[first + j];
+      float b = values[second + j];
+      values[first + j] = (float) ((a + b) / SQRT_2);
+      values[second + j] = (float) ((a - b) / SQRT_2);
+    }
+  }
 
+  /**
+   * Performs a reversible integer Haar wavelet transformation in place on a rectangle of
+   * values of any size. Each pair of values is replaced by the floor of its average and its
+   * difference, which are whole numbers and give the pair back exactly, so images can be
+   * stored losslessly as their coefficients. Every level pairs up the values still holding
+   * averages, a stride apart along the rows and then along the columns; a value left without
+   * a pair at the end of a row or column keeps its value for the next level.
+   *
+   * @param values The values, stored row by row, which are replaced by the coefficients.
+   * @param width  The number of values in a row.
+   * @param height The number of rows.
+   */
+  public static void integerHaarTransformation(int[] values, int width, int height) {
+    for (int stride = 1; stride < Math.max(width, height); stride *= 2) {
+      for (int y = 0; y < height; y += stride) {
+        for (int x = 0; x + stride < width; x += 2 * stride) {
+          liftPair(values, y * width + x, stride, false);
+        }
       }
-      for (int j = 0; j < c; j += 2) {
-        double avgVal = avg.get(j / 2);
-        double diffVal = diff.get(j / 2);
-        pixelMap[i][j] = avgVal;
-        pixelMap[i][j + 1] = diffVal;
-
+      for (int y = 0; y + stride < height; y += 2 * stride) {
+        for (int x = 0; x < width; x += stride) {
+          liftPair(values, y * width + x, stride * width, false);
+        }
       }
     }
-    return pixelMap;
   }
 
   /**
-   * Compresses the input pixel array based on the given percentage.
+   * Performs the inverse of {@link #integerHaarTransformation(int[], int, int)} in place.
    *
-   * @param pixel      The input pixel array to be compressed.
-   * @param percentage The compression percentage.
-   * @return The compressed pixel array.
+   * @param coefficients The coefficients, stored row by row, which are replaced by the values.
+   * @param width        The number of values in a row.
+   * @param height       The number of rows.
    */
-  public static double[][] compressImage(double[][] pixel, int percentage) {
-    double thresholdValue = Double.MAX_VALUE;
-
-    if (percentage == 100) {
-      return correctRange(pixel, thresholdValue);
+  public static void inverseIntegerHaarTransformation(int[] coefficients, int width,
+                                                      int height) {
+    int size = Math.max(width, height);
+    for (int stride = size > 1 ? Integer.highestOneBit(size - 1) : 0; stride >= 1;
+         stride /= 2) {
+      for (int y = 0; y + stride < height; y += 2 * stride) {
+        for (int x = 0; x < width; x += stride) {
+          liftPair(coefficients, y * width + x, stride * width, true);
+        }
+      }
+      for (int y = 0; y < height; y += stride) {
+        for (int x = 0; x + stride < width; x += 2 * stride) {
+          liftPair(coefficients, y * width + x, stride, true);
+        }
+      }
     }
+  }
 
-    List<Double> singleDimensional = new ArrayList<>();
-
-    for (double[] doubles : pixel) {
-      for (int j = 0; j < pixel[0].length; j++) {
-        double num = Math.round(doubles[j] * 1000.0) / 1000.0;
-        singleDimensional.add(Math.abs(num));
-      }
+  /**
+   * Replace a pair of values by the floor of their average and their difference, or the other
+   * way around.
+   */
+  private static void liftPair(int[] values, int first, int distance, boolean inverse) {
+    int second = first + distance;
+    if (inverse) {
+      int a = values[first] - (values[second] >> 1);
+      values[second] += a;
+      values[first] = a;
+    } else {
+      int difference = values[second] - values[first];
+      values[first] += difference >> 1;
+      values[second] = difference;
     }
+  }
 
-    Object[] distinctPixelValues = singleDimensional.stream().distinct().toArray();
-    Arrays.sort(distinctPixelValues);
-    int arrayLen = distinctPixelValues.length;
+  /**
+   * Compresses the coefficients of a transformed image based on the given percentage, setting
+   * the smallest of them to zero.
+   *
+   * @param coefficients The coefficients, which are compressed in place.
+   * @param percentage   The compression percentage.
+   */
+  public static void compressImage(double[] coefficients, int percentage) {
+    CoefficientMagnitudes magnitudes = new CoefficientMagnitudes(coefficients.length, 1);
+    magnitudes.add(coefficients, 0, coefficients.length);
+    dropBelow(coefficients, magnitudes.getThreshold(percentage), 0, coefficients.length);
+  }
 
-    int maxIndex = (int) Math.round((arrayLen * (percentage / 100.0)));
-    thresholdValue = (double) distinctPixelValues[maxIndex];
+  /**
+   * Compresses the coefficients of a transformed image based on the given percentage, setting
+   * the smallest of them to zero, in float precision.
+   *
+   * @param coefficients The coefficients, which are compressed in place.
+   * @param percentage   The compression percentage.
+   */
+  public static void compressImage(float[] coefficients, int percentage) {
+    CoefficientMagnitudes magnitudes = new CoefficientMagnitudes(coefficients.length, 1);
+    magnitudes.add(coefficients, 0, coefficients.length);
+    dropBelow(coefficients, magnitudes.getThreshold(percentage), 0, coefficients.length);
+  }
 
-    return correctRange(pixel, thresholdValue);
+  /**
+   * Sets the coefficients of a range whose magnitude is below a threshold to zero.
+   *
+   * @param coefficients The coefficients.
+   * @param threshold    The threshold, as given by {@link CoefficientMagnitudes#getThreshold}.
+   * @param from         The first index of the range.
+   * @param to           The index past the range.
+   */
+  public static void dropBelow(double[] coefficients, double threshold, int from, int to) {
+    for (int k = from; k < to; k++) {
+      if (Math.abs(coefficients[k]) < threshold) {
+        coefficients[k] = 0.0;
+      }
+    }
   }
 
   /**
-   * Corrects the pixel values in the given array based on the threshold value.
+   * Sets the coefficients of a range whose magnitude is below a threshold to zero, in float
+   * precision.
    *
-   * @param pixels    The input pixel array.
-   * @param threshold The threshold value for compression.
-   * @return The corrected pixel array.
+   * @param coefficients The coefficients.
+   * @param threshold    The threshold, as given by {@link CoefficientMagnitudes#getThreshold}.
+   * @param from         The first index of the range.
+   * @param to           The index past the range.
    */
-  private static double[][] correctRange(double[][] pixels, double threshold) {
-    for (int i = 0; i < pixels.length; i++) {
-      for (int j = 0; j < pixels[i].length; j++) {
-        if (Math.abs(pixels[i][j]) < threshold) {
-          pixels[i][j] = 0.0;
-        }
+  public static void dropBelow(float[] coefficients, double threshold, int from, int to) {
+    for (int k = from; k < to; k++) {
+      if (Math.abs(coefficients[k]) < threshold) {
+        coefficients[k] = 0.0f;
       }
     }
-    return pixels;
   }
 
 }
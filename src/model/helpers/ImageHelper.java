@@ -2,29 +2,13 @@ package model.helpers;
 
 import model.ImageMetadata;
 
+import java.util.Arrays;
+
 /**
  * Helper class for image processing operations.
  */
 public class ImageHelper {
 
-  /**
-   * Transposes a 2D array of pixel values.
-   *
-   * @param pixelMap The 2D array of pixel values to transpose.
-   * @param rows     The number of rows in the original array.
-   * @param cols     The number of columns in the original array.
-   * @return The transposed 2D array of pixel values.
-   */
-  static double[][] transpose(double[][] pixelMap, int rows, int cols) {
-    double[][] transposedPixelMap = new double[cols][rows];
-    for (int i = 0; i < cols; i++) {
-      for (int j = 0; j < rows; j++) {
-        transposedPixelMap[i][j] = pixelMap[j][i];
-      }
-    }
-    return transposedPixelMap;
-  }
-
   /**
    * Ensures that a pixel value is within the valid range [0, 255].
    *
@@ -36,29 +20,57 @@ public class ImageHelper {
   }
 
   /**
-   * Adjusts the padding of an image to the specified height and width.
+   * Extracts a range of rows of the padded square of one channel of an image.
+   *
+   * @param imageMetadata The metadata of the original image.
+   * @param channel       The channel index (0 for red, 1 for green, 2 for blue).
+   * @param size          The side of the padded square, at least the image width and height.
+   * @param dest          The array receiving the values, size * size long.
+   * @param from          The first row of the range.
+   * @param to            The row past the range.
+   */
+  public static void getPaddedRows(ImageMetadata imageMetadata, int channel, int size,
+                                   double[] dest, int from, int to) {
+    int width = imageMetadata.getWidth();
+    int[] row = new int[width];
+    for (int i = from; i < to; i++) {
+      if (i < imageMetadata.getHeight()) {
+        imageMetadata.readRow(channel, i, row);
+        for (int j = 0; j < width; j++) {
+          dest[i * size + j] = row[j];
+        }
+        Arrays.fill(dest, i * size + width, (i + 1) * size, 0.0);
+      } else {
+        Arrays.fill(dest, i * size, (i + 1) * size, 0.0);
+      }
+    }
+  }
+
+  /**
+   * Extracts a range of rows of the padded square of one channel of an image, in float
+   * precision.
    *
    * @param imageMetadata The metadata of the original image.
-   * @param height        The desired height after padding.
-   * @param width         The desired width after padding.
-   * @return The image metadata with adjusted padding.
+   * @param channel       The channel index (0 for red, 1 for green, 2 for blue).
+   * @param size          The side of the padded square, at least the image width and height.
+   * @param dest          The array receiving the values, size * size long.
+   * @param from          The first row of the range.
+   * @param to            The row past the range.
    */
-  public static ImageMetadata adjustPadding(ImageMetadata imageMetadata, int height, int width) {
-    int[][][] newPixelPadded = new int[3][height][width];
-    int[][][] oldPixels = imageMetadata.getRgb();
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        if (i >= imageMetadata.getHeight() || j >= imageMetadata.getWidth()) {
-          newPixelPadded[0][i][j] = 0;
-          newPixelPadded[1][i][j] = 0;
-          newPixelPadded[2][i][j] = 0;
-        } else {
-          newPixelPadded[0][i][j] = oldPixels[0][i][j];
-          newPixelPadded[1][i][j] = oldPixels[1][i][j];
-          newPixelPadded[2][i][j] = oldPixels[2][i][j];
+  public static void getPaddedRows(ImageMetadata imageMetadata, int channel, int size,
+                                   float[] dest, int from, int to) {
+    int width = imageMetadata.getWidth();
+    int[] row = new int[width];
+    for (int i = from; i < to; i++) {
+      if (i < imageMetadata.getHeight()) {
+        imageMetadata.readRow(channel, i, row);
+        for (int j = 0; j < width; j++) {
+          dest[i * size + j] = row[j];
         }
+        Arrays.fill(dest, i * size + width, (i + 1) * size, 0.0f);
+      } else {
+        Arrays.fill(dest, i * size, (i + 1) * size, 0.0f);
       }
     }
-    return new ImageMetadata(width, height, newPixelPadded);
   }
 }
@@ -1,45 +1,28 @@
 package model.helpers;
 
 import model.ImageMetadata;
-
-import java.util.Arrays;
+import model.ImageStatistics;
 
 /**
  * Helper class for generating and manipulating image histograms.
  */
 public class PlotHelper {
   /**
-   * Generates a normalized histogram for the given image.
+   * Generates a normalized histogram from the statistics of an image.
    *
-   * @param image The input image metadata.
+   * @param statistics The histograms of the input image.
    * @return A new image metadata representing the normalized histogram.
    */
-  public static ImageMetadata getNormalizedHistogram(ImageMetadata image) {
-    int height = image.getHeight();
-    int width = image.getWidth();
-
-    int[][] redComponent = image.getRgb()[0];
-    int[] redFrequencyArray = new int[256];
-    int[][] greenComponent = image.getRgb()[1];
-    int[] greenFrequencyArray = new int[256];
-    int[][] blueComponent = image.getRgb()[2];
-    int[] blueFrequencyArray = new int[256];
-
-    // Calculate the red component frequencies
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        redFrequencyArray[redComponent[i][j]]++;
-        greenFrequencyArray[greenComponent[i][j]]++;
-        blueFrequencyArray[blueComponent[i][j]]++;
-      }
-    }
-
+  public static ImageMetadata getNormalizedHistogram(ImageStatistics statistics) {
+    int[] redFrequencyArray = statistics.getHistogram(0);
+    int[] greenFrequencyArray = statistics.getHistogram(1);
+    int[] blueFrequencyArray = statistics.getHistogram(2);
 
     // Find the maximum value
-    int maxRedValue = Arrays.stream(redFrequencyArray).max().orElseThrow();
-    int maxGreenValue = Arrays.stream(greenFrequencyArray).max().orElseThrow();
-    int maxBlueValue = Arrays.stream(blueFrequencyArray).max().orElseThrow();
-    int maxRGB = Math.max(maxBlueValue, Math.max(maxGreenValue, maxRedValue));
+    int maxRGB = 0;
+    for (int channel = 0; channel < 3; channel++) {
+      maxRGB = Math.max(maxRGB, statistics.getFrequency(channel, statistics.getPeak(channel)));
+    }
 
     // Apply Min-Max normalization
     int[] normalizedRedFrequencies = new int[256];
@@ -57,18 +40,13 @@ public class PlotHelper {
 
 
     // Create a new image with red components based on normalized frequencies
-    int[][][] newImage = new int[3][256][256];
+    byte[][] newImage = new byte[3][256 * 256];
     for (int i = 0; i < 256; i++) {
       for (int j = 0; j < 256; j++) {
-        if (i % 15 == 0 || j % 15 == 0) {
-          newImage[0][i][j] = 200;
-          newImage[1][i][j] = 200;
-          newImage[2][i][j] = 200;
-        } else {
-          newImage[0][i][j] = 255;
-          newImage[1][i][j] = 255;
-          newImage[2][i][j] = 255;
-        }
+        byte background = (byte) (i % 15 == 0 || j % 15 == 0 ? 200 : 255);
+        newImage[0][i * 256 + j] = background;
+        newImage[1][i * 256 + j] = background;
+        newImage[2][i * 256 + j] = background;
 
       }
     }
@@ -97,23 +75,17 @@ public class PlotHelper {
    *
    * @param start The starting value for the line.
    * @param end   The ending value for the line.
-   * @param image The 3D array representing the image.
+   * @param image The channel planes of the 256x256 image.
    * @param index The index along which the line is drawn.
    * @param rgb   The RGB values for the line.
    */
-  private static void drawLine(int start, int end, int[][][] image, int index, int[] rgb) {
-    if (start < end) {
-      for (int i = start; i <= end; i++) {
-        image[0][i][index] = rgb[0];
-        image[1][i][index] = rgb[1];
-        image[2][i][index] = rgb[2];
-      }
-    } else {
-      for (int i = start; i >= end; i--) {
-        image[0][i][index] = rgb[0];
-        image[1][i][index] = rgb[1];
-        image[2][i][index] = rgb[2];
-      }
+  private static void drawLine(int start, int end, byte[][] image, int index, int[] rgb) {
+    int from = Math.min(start, end);
+    int to = Math.max(start, end);
+    for (int i = from; i <= to; i++) {
+      image[0][i * 256 + index] = (byte) rgb[0];
+      image[1][i * 256 + index] = (byte) rgb[1];
+      image[2][i * 256 + index] = (byte) rgb[2];
     }
   }
 
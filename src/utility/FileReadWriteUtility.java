@@ -42,6 +42,23 @@ public interface FileReadWriteUtility {
    */
   boolean saveIOImage(String outputFileName, BufferedImage image);
 
+  /**
+   * Loads an image from an HWC file, which holds the Haar wavelet coefficients of the image.
+   *
+   * @param filepath The file path to the HWC image file.
+   * @return A BufferedImage representing the loaded image, or null if it cannot be loaded.
+   */
+  BufferedImage loadImageFromHWC(String filepath);
+
+  /**
+   * Saves a BufferedImage as an HWC image, which holds its Haar wavelet coefficients.
+   *
+   * @param outputFileName The name of the output HWC image file.
+   * @param image          The BufferedImage to be saved.
+   * @return true if the image was successfully saved, false otherwise.
+   */
+  boolean saveHWCImage(String outputFileName, BufferedImage image);
+
   /**
    * Reads the content of a file and removes empty lines and lines starting with '#' character.
    *
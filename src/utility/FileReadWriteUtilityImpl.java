@@ -1,7 +1,7 @@
 package utility;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.PrintStream;
 import java.io.FileInputStream;
 import java.io.File;
@@ -9,6 +9,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
@@ -49,14 +52,14 @@ public class FileReadWriteUtilityImpl implements FileReadWriteUtility {
       int width = scanner.nextInt();
       int height = scanner.nextInt();
       BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 
       for (int i = 0; i < height; i++) {
         for (int j = 0; j < width; j++) {
           int r = scanner.nextInt();
           int g = scanner.nextInt();
           int b = scanner.nextInt();
-          Color pixelColor = new Color(r, g, b);
-          image.setRGB(j, i, pixelColor.getRGB());
+          pixels[i * width + j] = (r << 16) | (g << 8) | b;
         }
       }
 
@@ -105,16 +108,18 @@ public class FileReadWriteUtilityImpl implements FileReadWriteUtility {
       ppmWriter.write(width + " " + height + "\n");
       ppmWriter.write("255\n");
 
+      int[] row = new int[width];
+      StringBuilder line = new StringBuilder();
       for (int i = 0; i < height; i++) {
+        image.getRGB(0, i, width, 1, row, 0, width);
+        line.setLength(0);
         for (int j = 0; j < width; j++) {
-          Color pixelColor = new Color(image.getRGB(j, i));
-          int r = pixelColor.getRed();
-          int g = pixelColor.getGreen();
-          int b = pixelColor.getBlue();
-
-          ppmWriter.write(String.format("%d %d %d ", r, g, b));
+          int pixel = row[j];
+          line.append((pixel >> 16) & 0xFF).append(' ')
+              .append((pixel >> 8) & 0xFF).append(' ')
+              .append(pixel & 0xFF).append(' ');
         }
-        ppmWriter.write("\n");
+        ppmWriter.write(line.append('\n').toString());
       }
       return true;
     } catch (IOException e) {
@@ -153,6 +158,45 @@ public class FileReadWriteUtilityImpl implements FileReadWriteUtility {
     }
   }
 
+  /**
+   * Loads an image from an HWC file.
+   * It returns null if there was an issue loading the image.
+   *
+   * @param filepath The file path to the HWC image file.
+   * @return A BufferedImage representing the loaded image.
+   */
+  @Override
+  public BufferedImage loadImageFromHWC(String filepath) {
+    PrintStream outputStream = new PrintStream(this.out);
+    try (InputStream in = new FileInputStream(filepath)) {
+      return HaarWaveletFormat.read(in);
+    } catch (FileNotFoundException e) {
+      System.out.println("File " + filepath + " not found!");
+      return null;
+    } catch (IOException e) {
+      outputStream.print("Invalid HWC file: " + e.getMessage() + "\n");
+      return null;
+    }
+  }
+
+  /**
+   * Saves a BufferedImage as an HWC image.
+   *
+   * @param outputFileName The name of the output HWC image file.
+   * @param image          The BufferedImage to be saved.
+   * @return true if the image was successfully saved, false otherwise.
+   */
+  @Override
+  public boolean saveHWCImage(String outputFileName, BufferedImage image) {
+    try (OutputStream out = new FileOutputStream(outputFileName)) {
+      HaarWaveletFormat.write(image, out);
+      return true;
+    } catch (IOException e) {
+      System.out.println("Save HWC Image operation failed: " + e.getMessage());
+      return false;
+    }
+  }
+
   /**
    * Reads the content of a file and removes empty lines and lines starting with '#' character.
    *
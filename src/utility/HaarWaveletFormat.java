@@ -0,0 +1,209 @@
+package utility;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import model.helpers.CompressionHelper;
+
+/**
+ * Reads and writes images in the HWC format, which stores the integer Haar wavelet coefficients
+ * of every channel instead of its pixels. The coefficients give the pixels back exactly, and an
+ * image that compress has left with few details has mostly zero coefficients, so the file grows
+ * with the details kept rather than with the number of pixels.
+ * A file starts with the magic number and the width and height of the image, followed by the
+ * coefficients of the red, green and blue channels deflated. The coefficients of a channel are
+ * written from the coarsest level of the transform to the finest, where the zeros gather, each
+ * nonzero coefficient as a zigzag variable-length number and each run of zeros as a zero
+ * followed by the length of the run less one.
+ */
+final class HaarWaveletFormat {
+
+  private static final int MAGIC = 0x48574331; // "HWC1"
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The largest number of pixels of an image read, 64 megapixels. A run of zeros takes a few
+   * bytes however long it is, so the size of a file says little about the size of its image,
+   * and a header could otherwise ask for arrays the memory cannot hold.
+   */
+  static final int MAX_PIXELS = 1 << 26;
+
+  private HaarWaveletFormat() {
+  }
+
+  /**
+   * Write an image.
+   *
+   * @param image The image.
+   * @param out   The stream to write to, which is left open.
+   * @throws IOException If the stream cannot be written.
+   */
+  static void write(BufferedImage image, OutputStream out) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    DataOutputStream header = new DataOutputStream(out);
+    header.writeInt(MAGIC);
+    header.writeInt(width);
+    header.writeInt(height);
+    header.flush();
+
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    int[] values = new int[pixels.length];
+    int[] order = getOrder(width, height);
+    Deflater deflater = new Deflater();
+    try {
+      DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+      OutputStream data = new BufferedOutputStream(deflated, BUFFER_SIZE);
+      for (int channel = 0; channel < 3; channel++) {
+        int shift = 16 - 8 * channel;
+        for (int k = 0; k < pixels.length; k++) {
+          values[k] = (pixels[k] >> shift) & 0xFF;
+        }
+        CompressionHelper.integerHaarTransformation(values, width, height);
+        int run = 0;
+        for (int index : order) {
+          int value = values[index];
+          if (value == 0) {
+            run++;
+            continue;
+          }
+          if (run > 0) {
+            writeNumber(data, 0);
+            writeNumber(data, run - 1);
+            run = 0;
+          }
+          writeNumber(data, (value << 1) ^ (value >> 31));
+        }
+        if (run > 0) {
+          writeNumber(data, 0);
+          writeNumber(data, run - 1);
+        }
+      }
+      data.flush();
+      deflated.finish();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Read an image.
+   *
+   * @param in The stream to read from, which is left open.
+   * @return The image.
+   * @throws IOException If the stream cannot be read, does not hold an HWC image, or holds an
+   *                     image of more than {@link #MAX_PIXELS} pixels.
+   */
+  static BufferedImage read(InputStream in) throws IOException {
+    DataInputStream header = new DataInputStream(in);
+    if (header.readInt() != MAGIC) {
+      throw new IOException("not an HWC file");
+    }
+    int width = header.readInt();
+    int height = header.readInt();
+    if (width < 1 || height < 1 || (long) width * height > MAX_PIXELS) {
+      throw new IOException("invalid size " + width + "x" + height);
+    }
+
+    Inflater inflater = new Inflater();
+    try {
+      InputStream data = new BufferedInputStream(
+          new InflaterInputStream(in, inflater, BUFFER_SIZE), BUFFER_SIZE);
+      // A file cut after its header fails here, before the image is allocated.
+      data.mark(1);
+      if (data.read() < 0) {
+        throw new EOFException("file ends before the coefficients");
+      }
+      data.reset();
+
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+      int[] values = new int[pixels.length];
+      int[] order = getOrder(width, height);
+      for (int channel = 0; channel < 3; channel++) {
+        int n = 0;
+        while (n < order.length) {
+          int number = readNumber(data);
+          if (number != 0) {
+            values[order[n++]] = (number >>> 1) ^ -(number & 1);
+            continue;
+          }
+          int run = readNumber(data) + 1;
+          if (run < 1 || run > order.length - n) {
+            throw new IOException("run of zeros past the end of a channel");
+          }
+          for (int end = n + run; n < end; n++) {
+            values[order[n]] = 0;
+          }
+        }
+        CompressionHelper.inverseIntegerHaarTransformation(values, width, height);
+        int shift = 16 - 8 * channel;
+        for (int k = 0; k < pixels.length; k++) {
+          pixels[k] |= Math.min(255, Math.max(0, values[k])) << shift;
+        }
+      }
+      return image;
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Get the indices of the coefficients of an image from the coarsest level of the transform
+   * to the finest. The average of the whole image comes first, then for every level, row by
+   * row, the positions that stopped holding an average at that level.
+   */
+  private static int[] getOrder(int width, int height) {
+    int[] order = new int[width * height];
+    int n = 0;
+    order[n++] = 0;
+    int size = Math.max(width, height);
+    int top = size > 1 ? Integer.highestOneBit(size - 1) : 0;
+    for (int step = top; step >= 1; step /= 2) {
+      for (int y = 0; y < height; y += step) {
+        for (int x = 0; x < width; x += step) {
+          if (((x | y) & step) != 0) {
+            order[n++] = y * width + x;
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  private static void writeNumber(OutputStream out, int number) throws IOException {
+    while ((number & ~0x7F) != 0) {
+      out.write((number & 0x7F) | 0x80);
+      number >>>= 7;
+    }
+    out.write(number);
+  }
+
+  private static int readNumber(InputStream in) throws IOException {
+    int number = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("file ends in the middle of the coefficients");
+      }
+      number |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return number;
+      }
+    }
+    throw new IOException("invalid coefficient");
+  }
+}
@@ -9,7 +9,7 @@ import java.awt.image.BufferedImage;
 public interface Features {
 
   /**
-   * It is used to load a file in PPM/PNG/JPG/JPEG Formats.
+   * It is used to load a file in PPM/PNG/JPG/JPEG/HWC Formats.
    * It utilises the model's load operation and displays the loaded image in the view.
    */
   void loadImage();
@@ -136,7 +136,7 @@ public interface Features {
   void levelsAdjust(int b, int m, int g, String sourceImage);
 
   /**
-   * It is used to save a file in PPM/PNG/JPG/JPEG Formats in the user-selected,
+   * It is used to save a file in PPM/PNG/JPG/JPEG/HWC Formats in the user-selected,
    * destination location.
    *
    * @param sourceImage is the image which is to be saved.
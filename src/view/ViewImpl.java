@@ -195,8 +195,8 @@ public class ViewImpl extends JFrame implements IView {
     File f = null;
     final JFileChooser chooser = new JFileChooser(".");
     FileNameExtensionFilter filter = new FileNameExtensionFilter(
-        "JPG, JPEG, PNG, PPM", "jpg",
-        "jpeg", "png", "ppm");
+        "JPG, JPEG, PNG, PPM, HWC", "jpg",
+        "jpeg", "png", "ppm", "hwc");
     chooser.setFileFilter(filter);
 
     int revalue = chooser.showOpenDialog(ViewImpl.this);
@@ -0,0 +1,67 @@
+import model.ImageProcessingModelImpl;
+import model.ImageStore;
+import model.TileExecutor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Benchmark measuring how compress scales with the number of threads, from one thread to twice
+ * the number of processors, in double and in float precision.
+ * This is not part of the test suite; run it directly with a large enough heap, for example
+ * {@code java -Xmx4g -cp <classes> CompressionBenchmark [width height runs percentage]}.
+ */
+public class CompressionBenchmark {
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Optional width, height, number of timed runs and compression percentage.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    int percentage = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    Random random = new Random(42);
+    for (int k = 0; k < data.length; k++) {
+      data[k] = random.nextInt(1 << 24);
+    }
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    System.out.printf("%dx%d image, compress %d, %d processors, best of %d runs (ms)%n",
+        width, height, percentage, processors, runs);
+    System.out.printf("%-8s %10s %10s %10s%n", "threads", "double", "float", "speedup");
+    long single = 0;
+    for (int threads = 1; threads <= 2 * processors; threads *= 2) {
+      ImageProcessingModelImpl model = new ImageProcessingModelImpl(new ByteArrayOutputStream(),
+          ImageStore.TILED, Long.MAX_VALUE, null, false,
+          new TileExecutor(threads, TileExecutor.DEFAULT_THRESHOLD));
+      model.addImage("src", image);
+      long precise = time(runs, () -> model.compress(percentage, "src", "dest"));
+      model.setSinglePrecision(true);
+      long fast = time(runs, () -> model.compress(percentage, "src", "dest"));
+      if (threads == 1) {
+        single = precise;
+      }
+      System.out.printf("%-8d %10d %10d %10.2f%n", threads, precise, fast,
+          (double) single / precise);
+    }
+  }
+
+  private static long time(int runs, Runnable task) {
+    task.run();
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1_000_000;
+  }
+}
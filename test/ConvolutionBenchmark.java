@@ -0,0 +1,76 @@
+import model.ImageProcessingModelImpl;
+import model.ImageStore;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Benchmark comparing direct convolution, with its scalar and its vectorized loops, against
+ * convolution through Fourier transforms for square kernels that are not separable, from 3x3 to
+ * 31x31, to find the kernel size from which the model switches to Fourier transforms.
+ * This is not part of the test suite; run it directly, for example
+ * {@code java -Xmx2g -cp <classes> ConvolutionBenchmark [width height runs]}.
+ */
+public class ConvolutionBenchmark {
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Optional width, height and number of timed runs.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    Random random = new Random(42);
+    for (int k = 0; k < data.length; k++) {
+      data[k] = random.nextInt(1 << 24);
+    }
+    ImageProcessingModelImpl model =
+        new ImageProcessingModelImpl(new ByteArrayOutputStream(), ImageStore.TILED);
+    model.addImage("src", image);
+
+    System.out.printf("%dx%d image, best of %d runs (ms)%n", width, height, runs);
+    System.out.printf("%-8s %10s %10s %10s%n", "kernel", "scalar", "vectorized", "fourier");
+    for (int size = 3; size <= 31; size += 2) {
+      double[][] kernel = randomKernel(size, random);
+      model.setFourierThreshold(Integer.MAX_VALUE);
+      model.setVectorized(false);
+      long scalar = time(runs, () -> model.convolve(kernel, "clamp", "src", "dest"));
+      model.setVectorized(true);
+      long vectorized = time(runs, () -> model.convolve(kernel, "clamp", "src", "dest"));
+      model.setFourierThreshold(1);
+      long fourier = time(runs, () -> model.convolve(kernel, "clamp", "src", "dest"));
+      System.out.printf("%-8s %10d %10d %10d%n", size + "x" + size, scalar, vectorized, fourier);
+    }
+  }
+
+  /**
+   * Create a kernel with random weights, which is almost surely not separable.
+   */
+  private static double[][] randomKernel(int size, Random random) {
+    double[][] kernel = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        kernel[i][j] = random.nextDouble() / (size * size / 2.0);
+      }
+    }
+    return kernel;
+  }
+
+  private static long time(int runs, Runnable task) {
+    task.run();
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1_000_000;
+  }
+}
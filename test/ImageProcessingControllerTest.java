@@ -2,6 +2,8 @@ import controller.ImageProcessingController;
 import controller.ImageProcessingControllerImpl;
 import model.ImageMetadata;
 import model.ImageProcessingModel;
+import model.ImageStatistics;
+import model.PixelKernel;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -20,6 +22,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -114,6 +119,268 @@ public class ImageProcessingControllerTest {
     assertFalse(savedFile.exists());
   }
 
+  /**
+   * Test the 'memory' command with and without a new budget.
+   */
+  @Test
+  public void testMemoryCommand() {
+    String command = "memory\n"
+        + "memory 64\n"
+        + "memory lots\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Memory budget: unlimited\n"
+        + "Image memory operation successful.\n"
+        + "Memory budget: unlimited\n"
+        + "Image memory operation successful.\n"
+        + "lots cannot be parsed into Integer.\n"
+        + "Image memory operation failed.\n", out.toString());
+
+    String mockResponse = "Received inputs: memory"
+        + "Received inputs: 67108864 , Received inputs: memory";
+    assertEquals(mockResponse, mockLog.toString());
+  }
+
+  /**
+   * Test the 'stats' command printing the statistics of an image, and rejecting an output file
+   * that is not JSON.
+   */
+  @Test
+  public void testStatsCommand() {
+    String command = "stats jp\n"
+        + "stats jp test/stats.txt\n"
+        + "stats\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "jp: 4 pixels\n"
+        + "red: min 10, max 200, mean 57.50, standard deviation 82.27, peak 10, p1 10, p5 10, "
+        + "p25 10, p50 10, p75 10, p95 200, p99 200\n"
+        + "green: min 50, max 50, mean 50.00, standard deviation 0.00, peak 50, p1 50, p5 50, "
+        + "p25 50, p50 50, p75 50, p95 50, p99 50\n"
+        + "blue: min 255, max 255, mean 255.00, standard deviation 0.00, peak 255, p1 255, "
+        + "p5 255, p25 255, p50 255, p75 255, p95 255, p99 255\n"
+        + "Image stats operation successful.\n"
+        + "Statistics can only be written to a .json file.\n"
+        + "Image stats operation failed.\n"
+        + "Invalid command entered!\n", out.toString());
+    assertEquals("Received inputs: jp", mockLog.toString());
+  }
+
+  /**
+   * Test the 'stats' command writing the statistics and histograms of an image to a JSON file.
+   */
+  @Test
+  public void testStatsCommandJson() throws IOException {
+    Path directory = Files.createTempDirectory("stats-test");
+    Path file = directory.resolve("jp.json");
+    try {
+      String command = "stats jp " + file + "\n"
+          + "quit";
+      InputStream in = new ByteArrayInputStream(command.getBytes());
+      imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+      imageProcessingController.readUserCommands(outputStream, in);
+
+      assertEquals(welcomeMessage + "Image stats operation successful.\n", out.toString());
+      String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertTrue(json.contains("\"image\": \"jp\""));
+      assertTrue(json.contains("\"pixels\": 4,"));
+      assertTrue(json.contains("\"mean\": 57.5,"));
+      assertTrue(json.contains("\"percentiles\": {\"1\": 10, \"5\": 10, \"25\": 10, \"50\": 10, "
+          + "\"75\": 10, \"95\": 200, \"99\": 200}"));
+      assertTrue(json.contains("\"histogram\": [0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3, 0,"));
+      assertTrue(json.contains("\"blue\": {"));
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Test the 'evict' command for one image and for all images.
+   */
+  @Test
+  public void testEvictCommand() {
+    String command = "evict jp\n"
+        + "evict\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage + "Image evict operation successful.\n"
+        + "Image evict operation successful.\n", out.toString());
+
+    assertEquals("Received inputs: jpReceived inputs: null", mockLog.toString());
+  }
+
+  /**
+   * Test pipelines of per-pixel operations, with and without the 'pipeline' keyword, and
+   * pipelines with invalid stages.
+   */
+  @Test
+  public void testPipelineCommand() {
+    String command = "brighten 20 | sepia | luma-component jp jp-out\n"
+        + "pipeline levels-adjust 20 100 255 | red-component jp jp-red\n"
+        + "brighten 20 | blur jp jp-blur\n"
+        + "brighten x | sepia jp jp-x\n"
+        + "sepia | | sepia jp jp-empty\n"
+        + "levels-adjust 100 20 255 | sepia jp jp-levels\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image pipeline operation successful.\n"
+        + "Image pipeline operation successful.\n"
+        + "blur cannot be used in a pipeline.\n"
+        + "Image pipeline operation failed.\n"
+        + "x cannot be parsed into Integer.\n"
+        + "Image pipeline operation failed.\n"
+        + "Pipeline stages cannot be empty.\n"
+        + "Image pipeline operation failed.\n"
+        + "Invalid value for black/mid/white - value must be in ascending order of B<M<W and"
+        + " within 0 to 255.\n"
+        + "Image pipeline operation failed.\n", out.toString());
+
+    assertEquals("Received inputs: jp , jp-outReceived inputs: jp , jp-red", mockLog.toString());
+  }
+
+  /**
+   * Test the 'curves' command on its own and as a pipeline stage, with invalid control points.
+   */
+  @Test
+  public void testCurvesCommand() {
+    String command = "curves 0,0 128,200 255,255 jp jp-curves\n"
+        + "curves 0,0 jp jp-one\n"
+        + "curves 0,0 128 255,255 jp jp-bad\n"
+        + "curves 0,0 200,100 100,255 jp jp-order\n"
+        + "brighten 10 | curves 0,20 255,235 jp jp-pipeline\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image curves operation successful.\n"
+        + "Invalid command entered!\n"
+        + "128 cannot be parsed into a control point.\n"
+        + "Image curves operation failed.\n"
+        + "Invalid control point 100,255 - values must be within 0 to 255 and inputs in"
+        + " ascending order.\n"
+        + "Image curves operation failed.\n"
+        + "Image pipeline operation successful.\n", out.toString());
+
+    assertEquals("Received inputs: jp , jp-curvesReceived inputs: jp , jp-pipeline",
+        mockLog.toString());
+  }
+
+  /**
+   * Test the 'color-matrix' command with and without offsets, as a pipeline stage, and with
+   * invalid values.
+   */
+  @Test
+  public void testColorMatrixCommand() {
+    String command = "color-matrix 0 0 1 0 1 0 1 0 0 jp jp-swap\n"
+        + "color-matrix 1 0 0 10 0 1 0 -10 0 0 1 0.5 jp jp-offset\n"
+        + "color-matrix 1 0 0 0 1 0 0 0 x jp jp-bad\n"
+        + "color-matrix 100 0 0 0 1 0 0 0 1 jp jp-large\n"
+        + "sepia | color-matrix 1 0 0 0 1 0 0 0 jp jp-short\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image color-matrix operation successful.\n"
+        + "Image color-matrix operation successful.\n"
+        + "x cannot be parsed into a number.\n"
+        + "Image color-matrix operation failed.\n"
+        + "Invalid color matrix - coefficients must be within -16 to 16 and offsets within"
+        + " -4096 to 4096.\n"
+        + "Image color-matrix operation failed.\n"
+        + "A color matrix needs 9 values, or 12 with offsets.\n"
+        + "Image pipeline operation failed.\n", out.toString());
+
+    assertEquals("Received inputs: jp , jp-swapReceived inputs: jp , jp-offset",
+        mockLog.toString());
+  }
+
+  /**
+   * Test the 'convolve' command with the default and a given border mode, and with a kernel
+   * file that does not exist.
+   */
+  @Test
+  public void testConvolveCommand() {
+    String command = "convolve test/dataset/kernel-box.txt jp jp-box\n"
+        + "convolve test/dataset/kernel-box.txt jp jp-wrap wrap\n"
+        + "convolve test/dataset/missing-kernel.txt jp jp-missing\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image convolve operation successful.\n"
+        + "Image convolve operation successful.\n"
+        + "File test/dataset/missing-kernel.txt Not found\n"
+        + "Image convolve operation failed.\n", out.toString());
+
+    assertEquals("Received inputs: 1x3 , clamp , jp , jp-box"
+        + "Received inputs: 1x3 , wrap , jp , jp-wrap", mockLog.toString());
+  }
+
+  /**
+   * Test the 'box-blur' and 'gaussian-blur' commands, with a radius that is not a number.
+   */
+  @Test
+  public void testBoxAndGaussianBlurCommands() {
+    String command = "box-blur 12 jp jp-box\n"
+        + "gaussian-blur 2.5 jp jp-gaussian\n"
+        + "box-blur wide jp jp-wide\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image box-blur operation successful.\n"
+        + "Image gaussian-blur operation successful.\n"
+        + "wide cannot be parsed into Integer.\n"
+        + "Image box-blur operation failed.\n", out.toString());
+
+    assertEquals("Received inputs: 12 , jp , jp-box"
+        + "Received inputs: 2.5 , jp , jp-gaussian", mockLog.toString());
+  }
+
+  /**
+   * Test the 'median' command, with a radius that is not a number.
+   */
+  @Test
+  public void testMedianCommand() {
+    String command = "median 3 jp jp-median\n"
+        + "median 1.5 jp jp-median\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+
+    assertEquals(welcomeMessage
+        + "Image median operation successful.\n"
+        + "1.5 cannot be parsed into Integer.\n"
+        + "Image median operation failed.\n", out.toString());
+
+    assertEquals("Received inputs: 3 , jp , jp-median", mockLog.toString());
+  }
+
   /**
    * Test the 'brighten' command.
    */
@@ -482,6 +749,28 @@ public class ImageProcessingControllerTest {
         "Invalid command entered!\n", out.toString());
   }
 
+  /**
+   * Test the 'compress' command with tiles.
+   */
+  @Test
+  public void testcompressCommand_tiles() {
+
+    String command = "compress 90 mh mhB tile 256\n"
+        + "compress 90 mh mhB block 256\n"
+        + "compress 90 mh mhB tile big\n"
+        + "quit";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    imageProcessingController = new ImageProcessingControllerImpl(model, out, in, utility);
+    imageProcessingController.readUserCommands(outputStream, in);
+    assertEquals(welcomeMessage
+        + "Image compress operation successful.\n"
+        + "block is not a compress option. Use tile <size>.\n"
+        + "Image compress operation failed.\n"
+        + "big cannot be parsed into Integer.\n"
+        + "Image compress operation failed.\n", out.toString());
+    assertEquals("Received inputs: mh , mhB , 90 , 256", mockLog.toString());
+  }
+
   @Test
   public void testColorCommand() {
 
@@ -956,6 +1245,15 @@ public class ImageProcessingControllerTest {
       return true;
     }
 
+    @Override
+    public boolean compress(int percentage, int tileSize, String sourceFilename,
+                            String destinationFilename) {
+      log.append("Received inputs: ").append(sourceFilename)
+          .append(" , ").append(destinationFilename).append(" , ").append(percentage)
+          .append(" , ").append(tileSize);
+      return true;
+    }
+
     @Override
     public boolean createHistogram(String sourceFilename, String destinationFilename) {
       log.append("Received inputs: ").append(sourceFilename)
@@ -996,5 +1294,73 @@ public class ImageProcessingControllerTest {
       return null;
     }
 
+    @Override
+    public ImageStatistics getStatistics(String imageName) {
+      log.append("Received inputs: ").append(imageName);
+      int[][] histograms = new int[3][256];
+      histograms[0][10] = 3;
+      histograms[0][200] = 1;
+      histograms[1][50] = 4;
+      histograms[2][255] = 4;
+      return new ImageStatistics(histograms);
+    }
+
+    @Override
+    public String getMemoryUsage() {
+      log.append("Received inputs: memory");
+      return "Memory budget: unlimited";
+    }
+
+    @Override
+    public boolean setMemoryBudget(long bytes) {
+      log.append("Received inputs: ").append(bytes).append(" , ");
+      return true;
+    }
+
+    @Override
+    public boolean evict(String imageName) {
+      log.append("Received inputs: ").append(imageName);
+      return true;
+    }
+
+    @Override
+    public boolean boxBlur(int radius, String sourceFilename, String destinationFilename) {
+      log.append("Received inputs: ").append(radius).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean gaussianBlur(double sigma, String sourceFilename,
+                                String destinationFilename) {
+      log.append("Received inputs: ").append(sigma).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean median(int radius, String sourceFilename, String destinationFilename) {
+      log.append("Received inputs: ").append(radius).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean convolve(double[][] kernel, String borderMode, String sourceFilename,
+                            String destinationFilename) {
+      log.append("Received inputs: ").append(kernel.length).append("x")
+          .append(kernel[0].length).append(" , ").append(borderMode)
+          .append(" , ").append(sourceFilename).append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean applyPipeline(PixelKernel kernel, String sourceFilename,
+                                 String destinationFilename) {
+      log.append("Received inputs: ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
   }
 }
@@ -0,0 +1,143 @@
+import model.ImageMetadata;
+import model.ImageProcessingModelImpl;
+import model.ImageStore;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test running many operations against one ImageProcessingModelImpl from several
+ * threads at once.
+ */
+public class ImageProcessingModelConcurrencyTest {
+
+  private static final int THREADS = 8;
+  private static final int ITERATIONS = 25;
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+
+  private BufferedImage createImage() {
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    for (int i = 0; i < HEIGHT; i++) {
+      for (int j = 0; j < WIDTH; j++) {
+        int red = (i * 7 + j * 13) % 256;
+        int green = (i * j + 40) % 256;
+        int blue = (255 - i * 3 - j) & 0xFF;
+        image.setRGB(j, i, (red << 16) | (green << 8) | blue);
+      }
+    }
+    return image;
+  }
+
+  private void assertSameImage(ImageMetadata expected, ImageMetadata actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < expected.getHeight(); i++) {
+        for (int j = 0; j < expected.getWidth(); j++) {
+          assertEquals(expected.getValue(channel, i, j), actual.getValue(channel, i, j));
+        }
+      }
+    }
+  }
+
+  /**
+   * Hammers greyscale, blur, compress and getImage on shared and private names, while the
+   * source keeps being replaced and a counter image is brightened in place by every thread.
+   */
+  private void hammer(ImageProcessingModelImpl model) throws Exception {
+    BufferedImage source = createImage();
+    ImageProcessingModelImpl reference = new ImageProcessingModelImpl(new ByteArrayOutputStream());
+    reference.addImage("src", source);
+    reference.getGreyScale("luma-component", "src", "grey");
+    reference.blurSharpenImage("blur", "src", "blur");
+    reference.compress(10, "src", "compress");
+    BufferedImage expectedBlur = reference.getImage("blur");
+
+    model.addImage("src", source);
+    model.addImage("counter", new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB));
+
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      results.add(pool.submit(() -> {
+        start.await();
+        for (int k = 0; k < ITERATIONS; k++) {
+          assertTrue(model.getGreyScale("luma-component", "src", "grey-" + thread));
+          assertTrue(model.blurSharpenImage("blur", "src", "blur-shared"));
+          assertTrue(model.compress(10, "src", "compress-" + (k % 3)));
+          assertTrue(model.doBrightening(1, "counter", "counter"));
+
+          BufferedImage blurred = model.getImage("blur-shared");
+          assertNotNull(blurred);
+          assertEquals(expectedBlur.getRGB(WIDTH / 2, HEIGHT / 2),
+              blurred.getRGB(WIDTH / 2, HEIGHT / 2));
+          if (k % 5 == thread % 5) {
+            assertTrue(model.addImage("src", source));
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> result : results) {
+      result.get();
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+    for (int t = 0; t < THREADS; t++) {
+      assertSameImage(reference.getImageData("grey"), model.getImageData("grey-" + t));
+    }
+    assertSameImage(reference.getImageData("blur"), model.getImageData("blur-shared"));
+    for (int k = 0; k < 3; k++) {
+      assertSameImage(reference.getImageData("compress"), model.getImageData("compress-" + k));
+    }
+    assertEquals(THREADS * ITERATIONS, model.getImageData("counter").getValue(1, 1, 1));
+  }
+
+  /**
+   * Test case to check concurrent use of a model holding its images on the heap.
+   */
+  @Test
+  public void testConcurrentOperationsOnHeap() throws Exception {
+    hammer(new ImageProcessingModelImpl(new ByteArrayOutputStream()));
+  }
+
+  /**
+   * Test case to check concurrent use of a model holding its images off the heap, where
+   * overwritten images are freed, with a budget small enough that images keep being spilled.
+   */
+  @Test
+  public void testConcurrentOperationsOffHeapWithSpilling() throws Exception {
+    long imageBytes = 3L * WIDTH * HEIGHT;
+    hammer(new ImageProcessingModelImpl(new ByteArrayOutputStream(), ImageStore.OFF_HEAP,
+        4 * imageBytes, null));
+  }
+
+  /**
+   * Test case to check concurrent use of a lazy model, where operations record nodes that
+   * other threads compute while the names they were built from keep being replaced.
+   */
+  @Test
+  public void testConcurrentOperationsLazy() throws Exception {
+    hammer(new ImageProcessingModelImpl(new ByteArrayOutputStream(), ImageStore.OFF_HEAP,
+        Long.MAX_VALUE, null, true));
+  }
+}
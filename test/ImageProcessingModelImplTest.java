@@ -1,16 +1,40 @@
 import model.ImageMetadata;
 import model.ImageProcessingModelImpl;
+import model.ImageStatistics;
+import model.ImageStore;
+import model.PixelKernel;
+import model.TileExecutor;
+import model.helpers.CompressionHelper;
+import model.helpers.ImageHelper;
 
 import org.junit.Test;
 
+import utility.FileReadWriteUtility;
+import utility.FileReadWriteUtilityImpl;
+
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -724,9 +748,10 @@ public class ImageProcessingModelImplTest {
     int[][][] blurPixelValue = newfile.getRgb();
 
 
-    assertEquals(30, blurPixelValue[0][1][1], 0.01);
-    assertEquals(30, blurPixelValue[1][1][1], 0.01);
-    assertEquals(2, blurPixelValue[2][1][1], 0.01);
+    // the edges are blurred too, repeating the edge pixels past them
+    assertEquals(122, blurPixelValue[0][1][1], 0.01);
+    assertEquals(122, blurPixelValue[1][1][1], 0.01);
+    assertEquals(9, blurPixelValue[2][1][1], 0.01);
 
 
   }
@@ -870,12 +895,12 @@ public class ImageProcessingModelImplTest {
         "dummy-file-blur");
 
     int[][][] expectedMap = {
-        {{0, 0, 0, 0, 0}, {0, 4, 8, 4, 0},
-            {0, 8, 17, 8, 0}, {0, 4, 8, 4, 0}, {0, 0, 0, 0, 0}},
-        {{0, 0, 0, 0, 0}, {0, 10, 20, 10, 0},
-            {0, 20, 40, 20, 0}, {0, 10, 20, 10, 0}, {0, 0, 0, 0, 0}},
-        {{0, 0, 0, 0, 0}, {0, 15, 31, 15, 0},
-            {0, 31, 62, 31, 0}, {0, 15, 31, 15, 0}, {0, 0, 0, 0, 0}}
+        {{195, 71, 53, 154, 216}, {184, 90, 60, 136, 212},
+            {181, 124, 70, 105, 191}, {191, 149, 81, 94, 172}, {177, 172, 101, 89, 174}},
+        {{153, 71, 13, 25, 69}, {63, 38, 36, 67, 113},
+            {86, 76, 95, 115, 112}, {170, 155, 129, 122, 120}, {166, 184, 126, 102, 167}},
+        {{70, 151, 135, 85, 115}, {120, 163, 168, 103, 55},
+            {202, 190, 175, 120, 53}, {201, 180, 138, 121, 122}, {123, 153, 107, 99, 177}}
     };
     ImageMetadata newfile = obj.getImageData("dummy-file-blur");
 
@@ -2155,5 +2180,1481 @@ public class ImageProcessingModelImplTest {
 
   }
 
+  /**
+   * Test case to check that images are stored compactly and read back through the
+   * row accessors with the same values as the expanded RGB data.
+   */
+  @Test
+  public void testCompactStorage() {
+    ImageMetadata imageMetadata = obj.getImageData("dummy-file");
+    assertEquals(27, imageMetadata.getSizeInBytes());
+
+    int[][][] pixels = imageMetadata.getRgb();
+    int[] row = new int[3];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < 3; i++) {
+        imageMetadata.readRow(channel, i, row);
+        for (int j = 0; j < 3; j++) {
+          assertEquals(rbgMap[channel][i][j], row[j]);
+          assertEquals(pixels[channel][i][j], imageMetadata.getValue(channel, i, j));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that the split preview does not change pixels handed out earlier.
+   */
+  @Test
+  public void testOperationPreviewKeepsEarlierSnapshots() {
+    obj.getSepia("dummy-file", "dummy-sepia");
+    ImageMetadata before = obj.getImageData("dummy-sepia");
+    int[][][] beforePixels = before.getRgb();
+
+    assertTrue(obj.operationPreview(0, "dummy-file", "dummy-sepia"));
+
+    assertEquals(beforePixels[2][0][0], before.getValue(2, 0, 0));
+    assertEquals(rbgMap[2][0][0], obj.getImageData("dummy-sepia").getValue(2, 0, 0));
+  }
+
+  /**
+   * Test case to check that interleaved byte images are loaded with the same pixels as
+   * packed integer images.
+   */
+  @Test
+  public void testLoadByteInterleavedImages() {
+    int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+    for (int type : types) {
+      BufferedImage byteImage = new BufferedImage(3, 3, type);
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          byteImage.setRGB(j, i, image.getRGB(j, i));
+        }
+      }
+      obj.addImage("byte-image", byteImage);
+      BufferedImage loaded = obj.getImage("byte-image");
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          assertEquals(image.getRGB(j, i), loaded.getRGB(j, i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that a model keeping its images off the heap produces the same
+   * images as one keeping them on the heap.
+   */
+  @Test
+  public void testOffHeapStoreMatchesHeap() {
+    ImageProcessingModelImpl offHeap = new ImageProcessingModelImpl(out, ImageStore.OFF_HEAP);
+    offHeap.addImage("dummy-file", image);
+    assertEquals(ImageStore.OFF_HEAP, offHeap.getImageData("dummy-file").getStore());
+
+    ImageProcessingModelImpl[] models = {obj, offHeap};
+    for (ImageProcessingModelImpl model : models) {
+      model.blurSharpenImage("sharpen", "dummy-file", "dummy-sharpen");
+      model.getSepia("dummy-sharpen", "dummy-sepia");
+      model.doFlip("vertical-flip", "dummy-sepia", "dummy-flip");
+      model.compress(10, "dummy-flip", "dummy-compress");
+      model.levelAdjustment("dummy-compress", "dummy-levels", 20, 100, 240);
+      model.operationPreview(50, "dummy-file", "dummy-levels");
+    }
+
+    int[][][] expected = obj.getImageData("dummy-levels").getRgb();
+    int[][][] actual = offHeap.getImageData("dummy-levels").getRgb();
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          assertEquals(expected[channel][i][j], actual[channel][i][j]);
+        }
+      }
+    }
+    assertEquals(obj.getImage("dummy-levels").getRGB(1, 1),
+        offHeap.getImage("dummy-levels").getRGB(1, 1));
+  }
+
+  /**
+   * Test case to check that off-heap memory is released once an image is overwritten.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testOffHeapImageReleasedOnOverwrite() {
+    ImageProcessingModelImpl offHeap = new ImageProcessingModelImpl(out, ImageStore.OFF_HEAP);
+    offHeap.addImage("dummy-file", image);
+    ImageMetadata overwritten = offHeap.getImageData("dummy-file");
+    offHeap.doBrightening(10, "dummy-file", "dummy-file");
+    overwritten.getValue(0, 0, 0);
+  }
 
-}
\ No newline at end of file
+  /**
+   * Creates an image larger than one tile with a deterministic pattern of values.
+   */
+  private int[][][] createPatternMap(int width, int height) {
+    int[][][] map = new int[3][height][width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          map[channel][i][j] = (i * 7 + j * 13 + channel * 101 + (i * j) % 31) % 256;
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Test case to check that operations working a tile at a time agree with the per-pixel
+   * definitions across tile boundaries.
+   */
+  @Test
+  public void testTiledOperationsAcrossTileBoundaries() {
+    int width = 300;
+    int height = 200;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+
+    obj.doFlip("horizontal-flip", "big", "big-flip");
+    obj.doBrightening(30, "big", "big-bright");
+    obj.blurSharpenImage("blur", "big", "big-blur");
+    obj.operationPreview(45, "big", "big-bright");
+
+    int[][][] flipped = obj.getImageData("big-flip").getRgb();
+    int[][][] bright = obj.getImageData("big-bright").getRgb();
+    int[][][] blurred = obj.getImageData("big-blur").getRgb();
+    double[][] blur = {
+        {1.0 / 16, 1.0 / 8, 1.0 / 16},
+        {1.0 / 8, 1.0 / 4, 1.0 / 8},
+        {1.0 / 16, 1.0 / 8, 1.0 / 16}
+    };
+    int split = (int) (width * 0.45);
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(map[channel][i][width - 1 - j], flipped[channel][i][j]);
+          int expected = j < split ? Math.min(255, map[channel][i][j] + 30) : map[channel][i][j];
+          assertEquals(expected, bright[channel][i][j]);
+          double sum = 0;
+          for (int y = -1; y <= 1; y++) {
+            for (int x = -1; x <= 1; x++) {
+              int row = Math.min(Math.max(i + y, 0), height - 1);
+              int column = Math.min(Math.max(j + x, 0), width - 1);
+              sum += map[channel][row][column] * blur[y + 1][x + 1];
+            }
+          }
+          assertEquals((int) Math.min(Math.max(sum, 0), 255), blurred[channel][i][j]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that the tiled store gives the same results as the heap store.
+   */
+  @Test
+  public void testTiledStoreMatchesHeap() {
+    int width = 260;
+    int height = 131;
+    BufferedImage big = createBufferImage(width, height, createPatternMap(width, height));
+    ImageProcessingModelImpl tiled = new ImageProcessingModelImpl(out, ImageStore.TILED);
+    ImageProcessingModelImpl[] models = {obj, tiled};
+    for (ImageProcessingModelImpl model : models) {
+      model.addImage("big", big);
+      model.blurSharpenImage("sharpen", "big", "big-sharpen");
+      model.getSepia("big-sharpen", "big-sepia");
+      model.doFlip("vertical-flip", "big-sepia", "big-flip");
+      model.getGreyScale("luma-component", "big-flip", "big-luma");
+      model.rbgCombine("big-combine", "big-luma", "big", "big-flip");
+      model.colorCorrection("big-combine", "big-color");
+      model.compress(10, "big-color", "big-compress");
+      model.levelAdjustment("big-compress", "big-levels", 20, 100, 240);
+      model.operationPreview(50, "big", "big-levels");
+    }
+    assertEquals(ImageStore.TILED, tiled.getImageData("big-levels").getStore());
+
+    int[][][] expected = obj.getImageData("big-levels").getRgb();
+    int[][][] actual = tiled.getImageData("big-levels").getRgb();
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expected[channel][i][j], actual[channel][i][j]);
+          assertEquals(actual[channel][i][j],
+              tiled.getImageData("big-levels").getValue(channel, i, j));
+        }
+      }
+    }
+    assertEquals(obj.getImage("big-levels").getRGB(259, 130),
+        tiled.getImage("big-levels").getRGB(259, 130));
+  }
+
+  /**
+   * Test case to check that images over the memory budget are spilled to disk and read back
+   * unchanged when they are used again.
+   */
+  @Test
+  public void testSpillLeastRecentlyUsedImages() throws IOException {
+    Path spillDirectory = Files.createTempDirectory("spill-test");
+    try {
+      int width = 200;
+      int height = 100;
+      int[][][] map = createPatternMap(width, height);
+      long imageBytes = 3L * width * height;
+      ImageProcessingModelImpl budgeted = new ImageProcessingModelImpl(out, ImageStore.OFF_HEAP,
+          2 * imageBytes, spillDirectory);
+
+      budgeted.addImage("big", createBufferImage(width, height, map));
+      budgeted.doBrightening(10, "big", "big-bright");
+      budgeted.doFlip("vertical-flip", "big", "big-flip");
+      assertTrue(budgeted.getMemoryUsage().contains("in memory: 2 images"));
+      assertTrue(budgeted.getMemoryUsage().contains("spilled to disk: 1 images"));
+      try (Stream<Path> files = Files.list(spillDirectory)) {
+        assertEquals(1, files.count());
+      }
+
+      // the least recently used image was the brightened one
+      ImageMetadata bright = budgeted.getImageData("big-bright");
+      for (int channel = 0; channel < 3; channel++) {
+        for (int i = 0; i < height; i++) {
+          for (int j = 0; j < width; j++) {
+            assertEquals(Math.min(255, map[channel][i][j] + 10), bright.getValue(channel, i, j));
+          }
+        }
+      }
+      budgeted.rgbSplit("big", "big-red", "big-green", "big-blue");
+      budgeted.rbgCombine("big-combined", "big-red", "big-green", "big-blue");
+      assertEquals(createBufferImage(width, height, map).getRGB(150, 70),
+          budgeted.getImage("big-combined").getRGB(150, 70));
+      assertTrue(budgeted.getMemoryUsage().contains("spilled to disk: 5 images"));
+    } finally {
+      try (Stream<Path> files = Files.list(spillDirectory)) {
+        files.map(Path::toFile).forEach(File::delete);
+      }
+      Files.deleteIfExists(spillDirectory);
+    }
+  }
+
+  /**
+   * Test case to check the evict command and changing the budget.
+   */
+  @Test
+  public void testEvictAndMemoryBudget() {
+    assertTrue(obj.getMemoryUsage().startsWith("Memory budget: unlimited, in memory: 1 images"));
+    assertTrue(obj.evict("dummy-file"));
+    assertTrue(obj.getMemoryUsage().contains("in memory: 0 images"));
+    assertTrue(obj.getMemoryUsage().contains("spilled to disk: 1 images"));
+    assertEquals(255, obj.getImageData("dummy-file").getValue(0, 0, 0));
+    assertTrue(obj.getMemoryUsage().contains("in memory: 1 images"));
+
+    assertTrue(obj.evict(null));
+    assertTrue(obj.getMemoryUsage().contains("in memory: 0 images"));
+    assertFalse(obj.evict("missing"));
+    assertEquals("missing not present in the application.\n", out.toString());
+
+    assertTrue(obj.setMemoryBudget(0));
+    obj.doBrightening(10, "dummy-file", "dummy-bright");
+    assertTrue(obj.getMemoryUsage().contains("in memory: 1 images"));
+    assertTrue(obj.getMemoryUsage().contains("spilled to disk: 1 images"));
+    assertFalse(obj.setMemoryBudget(-1));
+  }
+
+  /**
+   * Test case to check that a lazy model records operations without computing or storing
+   * their results, and computes the same images as an eager model when they are asked for.
+   */
+  @Test
+  public void testLazyOperationsMatchEager() {
+    int width = 150;
+    int height = 140;
+    BufferedImage big = createBufferImage(width, height, createPatternMap(width, height));
+    ImageProcessingModelImpl lazy = new ImageProcessingModelImpl(out, ImageStore.OFF_HEAP,
+        Long.MAX_VALUE, null, true);
+    for (ImageProcessingModelImpl model : new ImageProcessingModelImpl[]{obj, lazy}) {
+      model.addImage("big", big);
+      assertTrue(model.doBrightening(20, "big", "step"));
+      assertTrue(model.getSepia("step", "step"));
+      assertTrue(model.getGreyScale("luma-component", "step", "result"));
+      assertTrue(model.rgbSplit("big", "red", "green", "blue"));
+      assertTrue(model.rbgCombine("combined", "blue", "red", "green"));
+      assertTrue(model.operationPreview(40, "big", "combined"));
+    }
+    assertTrue(lazy.getMemoryUsage().contains("in memory: 1 images"));
+    assertTrue(lazy.getMemoryUsage().endsWith("Lazy images: 6."));
+
+    // overwriting a source later does not change what was recorded from it
+    lazy.doFlip("horizontal-flip", "big", "big");
+    obj.doFlip("horizontal-flip", "big", "big");
+
+    for (String name : new String[]{"result", "combined", "step", "big"}) {
+      ImageMetadata expected = obj.getImageData(name);
+      ImageMetadata actual = lazy.getImageData(name);
+      for (int channel = 0; channel < 3; channel++) {
+        for (int i = 0; i < height; i++) {
+          for (int j = 0; j < width; j++) {
+            assertEquals(expected.getValue(channel, i, j), actual.getValue(channel, i, j));
+          }
+        }
+      }
+    }
+
+    // the flipped source is now lazy too, and the histogram is stored right away
+    assertTrue(lazy.createHistogram("result", "hist"));
+    assertTrue(lazy.getMemoryUsage().contains("in memory: 1 images"));
+    assertTrue(lazy.getMemoryUsage().endsWith("Lazy images: 7."));
+    assertFalse(lazy.doBrightening(10, "missing", "dest"));
+    assertEquals("missing not present in the application.\n", out.toString());
+  }
+
+  /**
+   * Test case to check that an off-heap image got from a lazy model stays readable after its
+   * name is overwritten, when the node that computed it is no longer reachable and frees its
+   * pixels.
+   */
+  @Test
+  public void testLazyImageDataOutlivesOverwrite() throws InterruptedException {
+    ImageProcessingModelImpl lazy = new ImageProcessingModelImpl(out, ImageStore.OFF_HEAP,
+        Long.MAX_VALUE, null, true);
+    lazy.addImage("big", createBufferImage(150, 140, createPatternMap(150, 140)));
+    assertTrue(lazy.doBrightening(20, "big", "bright"));
+    ImageMetadata image = lazy.getImageData("bright");
+    int[][][] expected = image.getRgb();
+
+    assertTrue(lazy.getSepia("big", "bright"));
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertArrayEquals(expected, image.getRgb());
+  }
+
+  /**
+   * Test case to check that a pipeline run as one pass gives the same image as running its
+   * stages one after the other.
+   */
+  @Test
+  public void testPipelineMatchesSeparateOperations() {
+    int width = 150;
+    int height = 140;
+    obj.addImage("big", createBufferImage(width, height, createPatternMap(width, height)));
+    obj.doBrightening(20, "big", "step");
+    obj.getSepia("step", "step");
+    obj.levelAdjustment("step", "step", 10, 120, 240);
+    obj.getGreyScale("luma-component", "step", "expected");
+
+    assertTrue(obj.applyPipeline(PixelKernel.brighten(20)
+        .andThen(PixelKernel.sepia())
+        .andThen(PixelKernel.levels(10, 120, 240))
+        .andThen(PixelKernel.component("luma-component")), "big", "actual"));
+
+    ImageMetadata expected = obj.getImageData("expected");
+    ImageMetadata actual = obj.getImageData("actual");
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expected.getValue(channel, i, j), actual.getValue(channel, i, j));
+        }
+      }
+    }
+    assertFalse(obj.applyPipeline(PixelKernel.sepia(), "missing", "dest"));
+  }
+
+  /**
+   * Test case to check curves through control points, and that chained point operations,
+   * which fold into one lookup table, match running them one after the other.
+   */
+  @Test
+  public void testCurvesAndChainedPointOperations() {
+    int width = 130;
+    int height = 20;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+
+    assertTrue(obj.applyPipeline(PixelKernel.curves(new int[]{50, 100, 200},
+        new int[]{10, 200, 100}), "big", "curved"));
+    ImageMetadata curved = obj.getImageData("curved");
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          int value = map[channel][i][j];
+          int expected;
+          if (value <= 50) {
+            expected = 10;
+          } else if (value <= 100) {
+            expected = (int) Math.round(10 + (value - 50) * 190.0 / 50);
+          } else if (value <= 200) {
+            expected = (int) Math.round(200 - (value - 100) * 100.0 / 100);
+          } else {
+            expected = 100;
+          }
+          assertEquals(expected, curved.getValue(channel, i, j));
+        }
+      }
+    }
+
+    obj.doBrightening(-30, "big", "step");
+    obj.levelAdjustment("step", "step", 20, 90, 230);
+    obj.doBrightening(15, "step", "expected");
+    assertTrue(obj.applyPipeline(PixelKernel.brighten(-30)
+        .andThen(PixelKernel.levels(20, 90, 230))
+        .andThen(PixelKernel.brighten(15)), "big", "actual"));
+    ImageMetadata expected = obj.getImageData("expected");
+    ImageMetadata actual = obj.getImageData("actual");
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expected.getValue(channel, i, j), actual.getValue(channel, i, j));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that color matrices are computed exactly in fixed point, for the sepia
+   * and greyscale modes and for a matrix with offsets.
+   */
+  @Test
+  public void testColorMatrixFixedPoint() {
+    int width = 256;
+    int height = 256;
+    int[][][] map = new int[3][height][width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        map[0][i][j] = i;
+        map[1][i][j] = j;
+        map[2][i][j] = (i * 31 + j * 17) % 256;
+      }
+    }
+    obj.addImage("all", createBufferImage(width, height, map));
+    obj.getSepia("all", "sepia");
+    obj.getGreyScale("luma-component", "all", "luma");
+    obj.getGreyScale("intensity-component", "all", "intensity");
+    obj.getGreyScale("green-component", "all", "green");
+    obj.applyPipeline(PixelKernel.colorMatrix(new double[][]{
+        {0, 0, 1, 10}, {0, 1, 0, -20.5}, {0.5, 0, 0.5, 0}}), "all", "matrix");
+
+    ImageMetadata sepia = obj.getImageData("sepia");
+    ImageMetadata luma = obj.getImageData("luma");
+    ImageMetadata intensity = obj.getImageData("intensity");
+    ImageMetadata green = obj.getImageData("green");
+    ImageMetadata matrix = obj.getImageData("matrix");
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int r = map[0][i][j];
+        int g = map[1][i][j];
+        int b = map[2][i][j];
+        assertEquals(Math.min(255, (393 * r + 769 * g + 189 * b) / 1000),
+            sepia.getValue(0, i, j));
+        assertEquals(Math.min(255, (349 * r + 686 * g + 168 * b) / 1000),
+            sepia.getValue(1, i, j));
+        assertEquals(Math.min(255, (272 * r + 534 * g + 131 * b) / 1000),
+            sepia.getValue(2, i, j));
+        assertEquals((299 * r + 587 * g + 114 * b) / 1000, luma.getValue(2, i, j));
+        assertEquals((r + g + b) / 3, intensity.getValue(0, i, j));
+        assertEquals(0, green.getValue(0, i, j));
+        assertEquals(g, green.getValue(1, i, j));
+        assertEquals(Math.min(255, b + 10), matrix.getValue(0, i, j));
+        assertEquals(Math.max(0, (2 * g - 41) / 2), matrix.getValue(1, i, j));
+        assertEquals((r + b) / 2, matrix.getValue(2, i, j));
+      }
+    }
+  }
+
+  /**
+   * Test case to check the histograms and derived statistics of an image, that they are counted
+   * once and shared by histogram and color-correct, and that they are counted again once the
+   * name is overwritten.
+   */
+  @Test
+  public void testImageStatistics() {
+    int[][][] img = {
+        {{10, 89}, {89, 32}},
+        {{89, 22}, {56, 32}},
+        {{61, 90}, {45, 78}}
+    };
+    obj.addImage("image", createBufferImage(2, 2, img));
+    assertNull(obj.getStatistics("missing"));
+    ImageStatistics statistics = obj.getStatistics("image");
+    assertEquals(4, statistics.getPixelCount());
+    assertEquals(2, statistics.getFrequency(0, 89));
+    assertEquals(10, statistics.getMin(0));
+    assertEquals(89, statistics.getMax(0));
+    assertEquals(55.0, statistics.getMean(0), 1e-9);
+    assertEquals(89, statistics.getPeak(0));
+    assertEquals(22, statistics.getPeak(1));
+    assertEquals(45, statistics.getMin(2));
+    assertEquals(90, statistics.getMax(2));
+    assertEquals(68.5, statistics.getMean(2), 1e-9);
+    assertEquals(Math.sqrt(4866.0 / 4), statistics.getStandardDeviation(0), 1e-9);
+    assertEquals(10, statistics.getPercentile(0, 0));
+    assertEquals(32, statistics.getPercentile(0, 50));
+    assertEquals(89, statistics.getPercentile(0, 51));
+    assertEquals(89, statistics.getPercentile(0, 100));
+
+    assertTrue(obj.createHistogram("image", "histogram"));
+    assertTrue(obj.colorCorrection("image", "corrected"));
+    assertSame(statistics, obj.getStatistics("image"));
+
+    assertTrue(obj.doBrightening(10, "image", "image"));
+    assertNotSame(statistics, obj.getStatistics("image"));
+    assertEquals(20, obj.getStatistics("image").getMin(0));
+  }
+
+  /**
+   * Test case to check that the histograms counted in parallel match those counted on a single
+   * thread.
+   */
+  @Test
+  public void testImageStatisticsParallel() throws IOException {
+    BufferedImage image = ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png"));
+    ImageProcessingModelImpl sequential = new ImageProcessingModelImpl(out, ImageStore.HEAP,
+        Long.MAX_VALUE, null, false, new TileExecutor(1, 0));
+    ImageProcessingModelImpl parallel = new ImageProcessingModelImpl(out, ImageStore.TILED,
+        Long.MAX_VALUE, null, false, new TileExecutor(4, 0));
+    sequential.addImage("jp", image);
+    parallel.addImage("jp", image);
+    ImageStatistics expected = sequential.getStatistics("jp");
+    ImageStatistics actual = parallel.getStatistics("jp");
+    for (int channel = 0; channel < 3; channel++) {
+      assertArrayEquals(expected.getHistogram(channel), actual.getHistogram(channel));
+      assertEquals(expected.getMean(channel), actual.getMean(channel), 0.0);
+    }
+  }
+
+  /**
+   * Test case to check that the threads of an executor with a pool of its own are daemon
+   * threads, and that they stop once the executor is shut down.
+   */
+  @Test
+  public void testExecutorThreadsAreDaemonAndShutDown() throws InterruptedException {
+    Set<Thread> before = Thread.getAllStackTraces().keySet();
+    TileExecutor executor = new TileExecutor(4, 0);
+    ImageProcessingModelImpl model = new ImageProcessingModelImpl(out, ImageStore.TILED,
+        Long.MAX_VALUE, null, false, executor);
+    model.addImage("big", createBufferImage(300, 260, createPatternMap(300, 260)));
+    model.blurSharpenImage("blur", "big", "blur");
+    Thread[] workers = Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> !before.contains(thread))
+        .filter(thread -> thread.getName().matches("ForkJoinPool-\\d+-worker-\\d+"))
+        .toArray(Thread[]::new);
+    assertTrue(workers.length > 0);
+    for (Thread worker : workers) {
+      assertTrue(worker.isDaemon());
+    }
+
+    executor.shutdown();
+    for (Thread worker : workers) {
+      worker.join(10000);
+      assertFalse(worker.isAlive());
+    }
+  }
+
+  /**
+   * Test case to check that operations split into tiles run in parallel give the same images
+   * as running them sequentially.
+   */
+  @Test
+  public void testParallelOperationsMatchSequential() {
+    int width = 300;
+    int height = 260;
+    BufferedImage big = createBufferImage(width, height, createPatternMap(width, height));
+    ImageProcessingModelImpl sequential = new ImageProcessingModelImpl(out, ImageStore.HEAP,
+        Long.MAX_VALUE, null, false, new TileExecutor(1, 0));
+    ImageProcessingModelImpl parallel = new ImageProcessingModelImpl(out, ImageStore.TILED,
+        Long.MAX_VALUE, null, false, new TileExecutor(4, 0));
+    assertEquals(4, parallel.getParallelism());
+    String[] names = {"blur", "sepia", "flip", "bright", "levels", "corrected", "combined",
+        "preview", "compressed", "compressed-float", "compressed-tiles"};
+    for (ImageProcessingModelImpl model : new ImageProcessingModelImpl[]{sequential, parallel}) {
+      model.addImage("big", big);
+      model.blurSharpenImage("blur", "big", "blur");
+      model.getSepia("big", "sepia");
+      model.doFlip("vertical-flip", "big", "flip");
+      model.doBrightening(25, "big", "bright");
+      model.levelAdjustment("big", "levels", 20, 100, 230);
+      model.colorCorrection("big", "corrected");
+      model.rbgCombine("combined", "sepia", "flip", "bright");
+      model.doBrightening(-40, "big", "preview");
+      model.operationPreview(37, "big", "preview");
+      model.compress(60, "big", "compressed");
+      model.compress(60, 64, "big", "compressed-tiles");
+      model.setSinglePrecision(true);
+      model.compress(60, "big", "compressed-float");
+    }
+    for (String name : names) {
+      ImageMetadata expected = sequential.getImageData(name);
+      ImageMetadata actual = parallel.getImageData(name);
+      for (int channel = 0; channel < 3; channel++) {
+        for (int i = 0; i < height; i++) {
+          for (int j = 0; j < width; j++) {
+            assertEquals(expected.getValue(channel, i, j), actual.getValue(channel, i, j));
+          }
+        }
+      }
+    }
+    BufferedImage expected = sequential.splitPreview(60, "big", "sepia");
+    BufferedImage actual = parallel.splitPreview(60, "big", "sepia");
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        assertEquals(expected.getRGB(j, i), actual.getRGB(j, i));
+      }
+    }
+  }
+
+  /**
+   * Computes a convolution directly, with the border mode applied to every index.
+   */
+  private int[][][] convolveReference(int[][][] map, double[][] kernel, String border) {
+    int height = map[0].length;
+    int width = map[0][0].length;
+    int radiusY = kernel.length / 2;
+    int radiusX = kernel[0].length / 2;
+    int[][][] result = new int[3][height][width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          double sum = 0;
+          for (int y = 0; y < kernel.length; y++) {
+            for (int x = 0; x < kernel[0].length; x++) {
+              int row = i + y - radiusY;
+              int column = j + x - radiusX;
+              if (border.equals("wrap")) {
+                row = Math.floorMod(row, height);
+                column = Math.floorMod(column, width);
+              } else {
+                row = row < 0 ? -row : row >= height ? 2 * height - 2 - row : row;
+                column = column < 0 ? -column : column >= width ? 2 * width - 2 - column : column;
+              }
+              sum += map[channel][row][column] * kernel[y][x];
+            }
+          }
+          result[channel][i][j] = (int) Math.min(Math.max(sum, 0), 255);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Test case to check convolutions with separable and non-separable kernels and the mirror
+   * and wrap border modes, across tile boundaries.
+   */
+  @Test
+  public void testConvolveBorderModes() {
+    int width = 140;
+    int height = 131;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+    double[][] emboss = {{-2, -1, 0}, {-1, 1, 1}, {0, 1, 2}};
+    double[][] gaussian = new double[5][5];
+    int[] weights = {1, 4, 6, 4, 1};
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        gaussian[i][j] = weights[i] * weights[j] / 256.0;
+      }
+    }
+    double[][] wide = {{0.25, 0, 0, 0, 0, 0, 0.5, 0, 0, 0, 0, 0, 0.25}};
+
+    assertTrue(obj.convolve(emboss, "mirror", "big", "emboss"));
+    assertTrue(obj.convolve(gaussian, "wrap", "big", "gaussian"));
+    assertTrue(obj.convolve(wide, "mirror", "big", "wide"));
+    int[][][] embossed = obj.getImageData("emboss").getRgb();
+    int[][][] blurred = obj.getImageData("gaussian").getRgb();
+    int[][][] widened = obj.getImageData("wide").getRgb();
+    int[][][] expectedEmboss = convolveReference(map, emboss, "mirror");
+    int[][][] expectedGaussian = convolveReference(map, gaussian, "wrap");
+    int[][][] expectedWide = convolveReference(map, wide, "mirror");
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expectedEmboss[channel][i][j], embossed[channel][i][j]);
+          assertEquals(expectedGaussian[channel][i][j], blurred[channel][i][j]);
+          assertEquals(expectedWide[channel][i][j], widened[channel][i][j]);
+        }
+      }
+    }
+
+    assertFalse(obj.convolve(new double[][]{{1, 1}}, "clamp", "big", "even"));
+    assertFalse(obj.convolve(emboss, "reflect", "big", "unknown"));
+    assertEquals("Invalid convolution: A kernel needs an odd number of rows and columns.\n"
+        + "Invalid convolution: Unknown border mode reflect.\n", out.toString());
+  }
+
+  /**
+   * Test case to check that large kernels that are not separable, which are applied through
+   * Fourier transforms, give the same images as direct convolution, including for the smaller
+   * tiles at the edges of the image.
+   */
+  @Test
+  public void testConvolveLargeKernel() {
+    int width = 140;
+    int height = 131;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+    Random random = new Random(7);
+    double[][] large = new double[17][17];
+    for (int i = 0; i < 17; i++) {
+      for (int j = 0; j < 17; j++) {
+        large[i][j] = (random.nextInt(7) - 2) / 256.0;
+      }
+    }
+    double[][] emboss = {{-2, -1, 0}, {-1, 1, 1}, {0, 1, 2}};
+
+    assertTrue(obj.convolve(large, "wrap", "big", "large"));
+    obj.setFourierThreshold(1);
+    assertTrue(obj.convolve(emboss, "mirror", "big", "emboss"));
+    int[][][] convolved = obj.getImageData("large").getRgb();
+    int[][][] embossed = obj.getImageData("emboss").getRgb();
+    int[][][] expectedLarge = convolveReference(map, large, "wrap");
+    int[][][] expectedEmboss = convolveReference(map, emboss, "mirror");
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expectedLarge[channel][i][j], convolved[channel][i][j]);
+          assertEquals(expectedEmboss[channel][i][j], embossed[channel][i][j]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that the vectorized convolution loops give the same images as the scalar
+   * ones, bit for bit, for blur, sharpen and kernels that are and are not separable.
+   */
+  @Test
+  public void testVectorizedConvolutionMatchesScalar() {
+    int width = 140;
+    int height = 131;
+    obj.addImage("big", createBufferImage(width, height, createPatternMap(width, height)));
+    double[][] separable = new double[5][5];
+    double[][] full = new double[5][5];
+    Random random = new Random(11);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        separable[i][j] = (i + 1) * (5 - j) / 81.0;
+        full[i][j] = random.nextDouble() / 12.5 - 0.02;
+      }
+    }
+
+    for (boolean vectorized : new boolean[]{true, false}) {
+      obj.setVectorized(vectorized);
+      String suffix = vectorized ? "-vector" : "-scalar";
+      assertTrue(obj.blurSharpenImage("blur", "big", "blur" + suffix));
+      assertTrue(obj.blurSharpenImage("sharpen", "big", "sharpen" + suffix));
+      assertTrue(obj.convolve(separable, "mirror", "big", "separable" + suffix));
+      assertTrue(obj.convolve(full, "wrap", "big", "full" + suffix));
+    }
+    for (String name : new String[]{"blur", "sharpen", "separable", "full"}) {
+      int[][][] vector = obj.getImageData(name + "-vector").getRgb();
+      int[][][] scalar = obj.getImageData(name + "-scalar").getRgb();
+      for (int channel = 0; channel < 3; channel++) {
+        for (int i = 0; i < height; i++) {
+          for (int j = 0; j < width; j++) {
+            assertEquals(scalar[channel][i][j], vector[channel][i][j]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Average every value with those within a radius along its row or its column, repeating the
+   * edge values past the edges.
+   */
+  private double[][][] boxReference(double[][][] map, int radius, boolean alongRows) {
+    int height = map[0].length;
+    int width = map[0][0].length;
+    double[][][] result = new double[3][height][width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          double sum = 0;
+          for (int d = -radius; d <= radius; d++) {
+            sum += alongRows
+                ? map[channel][i][Math.min(Math.max(j + d, 0), width - 1)]
+                : map[channel][Math.min(Math.max(i + d, 0), height - 1)][j];
+          }
+          result[channel][i][j] = sum / (2 * radius + 1);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Check that every value of an image is within one of the expected value.
+   */
+  private void assertWithinOne(double[][][] expected, int[][][] actual) {
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < expected[0].length; i++) {
+        for (int j = 0; j < expected[0][0].length; j++) {
+          assertEquals(expected[channel][i][j], actual[channel][i][j], 1.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check box and gaussian blurs across strips, with radii larger than the image,
+   * and invalid radii and standard deviations.
+   */
+  @Test
+  public void testBoxAndGaussianBlur() {
+    int width = 140;
+    int height = 131;
+    int[][][] map = createPatternMap(width, height);
+    double[][][] values = new double[3][height][width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          values[channel][i][j] = map[channel][i][j];
+        }
+      }
+    }
+    obj.addImage("big", createBufferImage(width, height, map));
+
+    assertTrue(obj.boxBlur(0, "big", "box-0"));
+    assertTrue(obj.boxBlur(5, "big", "box-5"));
+    assertTrue(obj.boxBlur(500, "big", "box-500"));
+    // a standard deviation of sqrt(6) is exactly three boxes of radius 2
+    assertTrue(obj.gaussianBlur(Math.sqrt(6), "big", "gaussian"));
+
+    int[][][] unchanged = obj.getImageData("box-0").getRgb();
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(map[channel][i][j], unchanged[channel][i][j]);
+        }
+      }
+    }
+    assertWithinOne(boxReference(boxReference(values, 5, true), 5, false),
+        obj.getImageData("box-5").getRgb());
+    assertWithinOne(boxReference(boxReference(values, 500, true), 500, false),
+        obj.getImageData("box-500").getRgb());
+    double[][][] gaussian = values;
+    for (int pass = 0; pass < 3; pass++) {
+      gaussian = boxReference(gaussian, 2, true);
+    }
+    for (int pass = 0; pass < 3; pass++) {
+      gaussian = boxReference(gaussian, 2, false);
+    }
+    assertWithinOne(gaussian, obj.getImageData("gaussian").getRgb());
+
+    assertFalse(obj.boxBlur(-1, "big", "invalid"));
+    assertFalse(obj.gaussianBlur(0, "big", "invalid"));
+    assertEquals("Invalid box blur: radius must be within 0 to 65535.\n"
+        + "Invalid gaussian blur: sigma must be above 0 and at most 65535.\n", out.toString());
+  }
+
+  /**
+   * The value of a channel at a position of the single row or column of a line image.
+   */
+  private int lineValue(int channel, int position) {
+    return (position * 13 + channel * 101 + position / 7) % 256;
+  }
+
+  /**
+   * Create an image a single row wide or a single column high.
+   */
+  private BufferedImage createLineImage(int length, boolean wide) {
+    BufferedImage image = new BufferedImage(wide ? length : 1, wide ? 1 : length,
+        BufferedImage.TYPE_INT_RGB);
+    for (int k = 0; k < length; k++) {
+      int pixelValue = (lineValue(0, k) << 16) | (lineValue(1, k) << 8) | lineValue(2, k);
+      image.setRGB(wide ? k : 0, wide ? 0 : k, pixelValue);
+    }
+    return image;
+  }
+
+  /**
+   * Sum the values of a line image within a radius of a position, repeating the edge values,
+   * and the sums of those sums for every further pass.
+   */
+  private long lineSums(int channel, int length, int position, int radius, int passes) {
+    if (passes == 0) {
+      return lineValue(channel, position);
+    }
+    long sum = 0;
+    for (int d = -radius; d <= radius; d++) {
+      sum += lineSums(channel, length, Math.min(Math.max(position + d, 0), length - 1), radius,
+          passes - 1);
+    }
+    return sum;
+  }
+
+  /**
+   * Test case to check box and gaussian blurs of a single row and a single column of millions
+   * of pixels, whose lines are split into segments, around the segment boundaries and edges.
+   */
+  @Test
+  public void testBlurExtremeAspectRatios() {
+    int length = 6000000;
+    int[] positions = {0, 1, 2, 16381, 16382, 16383, 16384, 16385, 16386, 32767, 32768,
+        length / 2, length - 3, length - 2, length - 1};
+    for (boolean wide : new boolean[]{true, false}) {
+      obj.addImage("line", createLineImage(length, wide));
+      assertTrue(obj.boxBlur(1, "line", "line-box"));
+      // a standard deviation of sqrt(6) is exactly three boxes of radius 2
+      assertTrue(obj.gaussianBlur(Math.sqrt(6), "line", "line-gaussian"));
+      ImageMetadata box = obj.getImageData("line-box");
+      ImageMetadata gaussian = obj.getImageData("line-gaussian");
+      assertEquals(wide ? length : 1, gaussian.getWidth());
+      for (int channel = 0; channel < 3; channel++) {
+        for (int position : positions) {
+          int i = wide ? 0 : position;
+          int j = wide ? position : 0;
+          assertEquals((lineSums(channel, length, position, 1, 1) + 1) / 3,
+              box.getValue(channel, i, j));
+          assertEquals((lineSums(channel, length, position, 2, 3) + 62) / 125,
+              gaussian.getValue(channel, i, j));
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute a median filter directly, sorting the window of every value.
+   */
+  private int[][][] medianReference(int[][][] map, int radius) {
+    int height = map[0].length;
+    int width = map[0][0].length;
+    int side = 2 * radius + 1;
+    int[][][] result = new int[3][height][width];
+    int[] window = new int[side * side];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          int k = 0;
+          for (int y = -radius; y <= radius; y++) {
+            for (int x = -radius; x <= radius; x++) {
+              window[k++] = map[channel][Math.min(Math.max(i + y, 0), height - 1)]
+                  [Math.min(Math.max(j + x, 0), width - 1)];
+            }
+          }
+          Arrays.sort(window);
+          result[channel][i][j] = window[window.length / 2];
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Test case to check the median filter across strips, with a radius larger than the image,
+   * and an invalid radius.
+   */
+  @Test
+  public void testMedian() {
+    int width = 140;
+    int height = 131;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+    int[][][] small = createPatternMap(30, 25);
+    obj.addImage("small", createBufferImage(30, 25, small));
+
+    assertTrue(obj.median(0, "big", "median-0"));
+    assertTrue(obj.median(2, "big", "median-2"));
+    assertTrue(obj.median(40, "small", "median-40"));
+    int[][][] expected0 = map;
+    int[][][] expected2 = medianReference(map, 2);
+    int[][][] expected40 = medianReference(small, 40);
+    int[][][] median0 = obj.getImageData("median-0").getRgb();
+    int[][][] median2 = obj.getImageData("median-2").getRgb();
+    int[][][] median40 = obj.getImageData("median-40").getRgb();
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          assertEquals(expected0[channel][i][j], median0[channel][i][j]);
+          assertEquals(expected2[channel][i][j], median2[channel][i][j]);
+        }
+      }
+      for (int i = 0; i < 25; i++) {
+        for (int j = 0; j < 30; j++) {
+          assertEquals(expected40[channel][i][j], median40[channel][i][j]);
+        }
+      }
+    }
+
+    assertFalse(obj.median(-2, "big", "invalid"));
+    assertEquals("Invalid median: radius must be within 0 to 10000.\n", out.toString());
+  }
+
+  /**
+   * Swap the rows and columns of every channel of an image.
+   */
+  private int[][][] transpose(int[][][] map) {
+    int[][][] result = new int[3][map[0][0].length][map[0].length];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < map[0].length; i++) {
+        for (int j = 0; j < map[0][0].length; j++) {
+          result[channel][j][i] = map[channel][i][j];
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Test case to check the median filter of images split into several parts down a band and
+   * into several bands, filtered by one task carrying its histograms down or by many tasks, and
+   * of a single row and a single column of hundreds of thousands of pixels.
+   */
+  @Test
+  public void testMedianPartsAndBands() {
+    int[][][] tall = createPatternMap(40, 300);
+    int[][][] wide = createPatternMap(4500, 140);
+    int[][][] expectedTall = medianReference(tall, 20);
+    int[][][] expectedWide = medianReference(wide, 2);
+    ImageProcessingModelImpl parallel = new ImageProcessingModelImpl(out, ImageStore.TILED,
+        Long.MAX_VALUE, null, false, new TileExecutor(4, 0));
+    for (ImageProcessingModelImpl model : new ImageProcessingModelImpl[]{obj, parallel}) {
+      model.addImage("tall", createBufferImage(40, 300, tall));
+      model.addImage("wide", createBufferImage(4500, 140, wide));
+      assertTrue(model.median(20, "tall", "tall-median"));
+      assertTrue(model.median(2, "wide", "wide-median"));
+      assertArrayEquals(expectedTall, model.getImageData("tall-median").getRgb());
+      assertArrayEquals(expectedWide, model.getImageData("wide-median").getRgb());
+
+      // the window is symmetric, so filtering the transposed image gives the transposed result;
+      // large radii give parts of several blocks and bands twice the radius wide
+      for (int[] size : new int[][]{{24, 600, 270}, {2100, 12, 1030}}) {
+        int[][][] map = createPatternMap(size[0], size[1]);
+        int[][][] transposed = transpose(map);
+        model.addImage("image", createBufferImage(size[0], size[1], map));
+        model.addImage("transposed", createBufferImage(size[1], size[0], transposed));
+        assertTrue(model.median(size[2], "image", "image-median"));
+        assertTrue(model.median(size[2], "transposed", "transposed-median"));
+        assertArrayEquals(transpose(model.getImageData("transposed-median").getRgb()),
+            model.getImageData("image-median").getRgb());
+      }
+    }
+
+    int length = 300000;
+    int[] positions = {0, 1, 2047, 2048, 2049, length / 2, length - 2, length - 1};
+    for (boolean line : new boolean[]{true, false}) {
+      obj.addImage("line", createLineImage(length, line));
+      assertTrue(obj.median(1, "line", "line-median"));
+      ImageMetadata median = obj.getImageData("line-median");
+      for (int channel = 0; channel < 3; channel++) {
+        for (int position : positions) {
+          int[] window = new int[3];
+          for (int d = -1; d <= 1; d++) {
+            window[d + 1] = lineValue(channel, Math.min(Math.max(position + d, 0), length - 1));
+          }
+          Arrays.sort(window);
+          assertEquals(window[1],
+              median.getValue(channel, line ? 0 : position, line ? position : 0));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that compressing with float coefficients gives back the image when
+   * nothing is dropped, and an image close to the one compressed with double coefficients
+   * otherwise, where only coefficients within rounding of the threshold can be kept or dropped
+   * differently.
+   */
+  @Test
+  public void testCompressSinglePrecision() {
+    int width = 140;
+    int height = 75;
+    obj.addImage("big", createBufferImage(width, height, createPatternMap(width, height)));
+    obj.setSinglePrecision(true);
+    assertTrue(obj.compress(0, "big", "lossless"));
+    assertArrayEquals(obj.getImageData("big").getRgb(), obj.getImageData("lossless").getRgb());
+
+    assertTrue(obj.compress(60, "big", "float"));
+    obj.setSinglePrecision(false);
+    assertTrue(obj.compress(60, "big", "double"));
+    int[][][] expected = obj.getImageData("double").getRgb();
+    int[][][] actual = obj.getImageData("float").getRgb();
+    long difference = 0;
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          difference += Math.abs(expected[channel][i][j] - actual[channel][i][j]);
+        }
+      }
+    }
+    assertTrue(difference < 3L * width * height);
+  }
+
+  /**
+   * Test case to check that the threshold chosen by compress is the one the original selection,
+   * sorting the boxed distinct rounded magnitudes, chooses, for every channel of a sample image.
+   */
+  @Test
+  public void testCompressThresholdMatchesBoxedSelection() throws IOException {
+    obj.addImage("jp", ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png")));
+    ImageMetadata image = obj.getImageData("jp");
+    int size = 1;
+    while (size < Math.max(image.getWidth(), image.getHeight())) {
+      size *= 2;
+    }
+    double[] coefficients = new double[size * size];
+    for (int channel = 0; channel < 3; channel++) {
+      ImageHelper.getPaddedRows(image, channel, size, coefficients, 0, size);
+      CompressionHelper.haarTransformation(coefficients, size);
+      for (int percentage : new int[]{1, 10, 33, 50, 75, 90, 99}) {
+        double[] actual = coefficients.clone();
+        CompressionHelper.compressImage(actual, percentage);
+        double threshold = boxedThreshold(coefficients, percentage);
+        for (int k = 0; k < coefficients.length; k++) {
+          double expected = Math.abs(coefficients[k]) < threshold ? 0.0 : coefficients[k];
+          assertEquals(expected, actual[k], 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that compressing an image with a single distinct coefficient by half or
+   * more drops that coefficient, as compressing by 100 does.
+   */
+  @Test
+  public void testCompressSinglePixel() {
+    obj.addImage("pixel", createBufferImage(1, 1, new int[][][]{{{200}}, {{100}}, {{50}}}));
+    for (int percentage : new int[]{40, 50, 99}) {
+      assertTrue(obj.compress(percentage, "pixel", "compressed"));
+      int[][][] expected = percentage < 50 ? new int[][][]{{{200}}, {{100}}, {{50}}}
+          : new int[][][]{{{0}}, {{0}}, {{0}}};
+      assertArrayEquals(expected, obj.getImageData("compressed").getRgb());
+    }
+  }
+
+  /**
+   * Test case to check that compressing an image again at other percentages from its cached
+   * coefficients gives the same images as transforming it from scratch every time.
+   */
+  @Test
+  public void testCompressCacheMatchesUncached() throws IOException {
+    BufferedImage image = ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png"));
+    ImageProcessingModelImpl uncached = new ImageProcessingModelImpl(out);
+    assertTrue(uncached.setCompressionCacheLimit(0));
+    uncached.addImage("jp", image);
+    assertTrue(obj.setCompressionCacheLimit(64 * 1024 * 1024));
+    obj.addImage("jp", image);
+    for (int percentage : new int[]{10, 50, 90, 30, 100}) {
+      assertTrue(obj.compress(percentage, "jp", "cached"));
+      assertTrue(uncached.compress(percentage, "jp", "uncached"));
+      assertArrayEquals(uncached.getImageData("uncached").getRgb(),
+          obj.getImageData("cached").getRgb());
+    }
+    assertTrue(obj.getMemoryUsage().contains("Compress cache: 1 images"));
+    assertFalse(uncached.getMemoryUsage().contains("Compress cache"));
+  }
+
+  /**
+   * Test case to check that the cached coefficients of an image are not used once its name is
+   * overwritten, by a new image or by an operation, and are dropped when it is evicted.
+   */
+  @Test
+  public void testCompressCacheInvalidatedOnOverwrite() {
+    int width = 60;
+    int height = 45;
+    ImageProcessingModelImpl uncached = new ImageProcessingModelImpl(out);
+    uncached.setCompressionCacheLimit(0);
+    obj.setCompressionCacheLimit(64 * 1024 * 1024);
+    int[][][] pattern = createPatternMap(width, height);
+    obj.addImage("image", createBufferImage(width, height, pattern));
+    assertTrue(obj.compress(50, "image", "compressed"));
+
+    int[][][] other = new int[3][height][width];
+    Random random = new Random(3);
+    for (int[][] channel : other) {
+      for (int[] row : channel) {
+        for (int j = 0; j < width; j++) {
+          row[j] = random.nextInt(256);
+        }
+      }
+    }
+    obj.addImage("image", createBufferImage(width, height, other));
+    uncached.addImage("image", createBufferImage(width, height, other));
+    assertTrue(obj.compress(50, "image", "compressed"));
+    assertTrue(uncached.compress(50, "image", "compressed"));
+    assertArrayEquals(uncached.getImageData("compressed").getRgb(),
+        obj.getImageData("compressed").getRgb());
+
+    assertTrue(obj.doBrightening(40, "image", "image"));
+    assertTrue(uncached.doBrightening(40, "image", "image"));
+    assertTrue(obj.compress(70, "image", "compressed"));
+    assertTrue(uncached.compress(70, "image", "compressed"));
+    assertArrayEquals(uncached.getImageData("compressed").getRgb(),
+        obj.getImageData("compressed").getRgb());
+
+    assertTrue(obj.getMemoryUsage().contains("Compress cache: 1 images"));
+    assertTrue(obj.evict("image"));
+    assertFalse(obj.getMemoryUsage().contains("Compress cache"));
+  }
+
+  /**
+   * Test case to check that the compress cache keeps nothing until a limit is set, nothing
+   * larger than its limit, and rejects a negative limit.
+   */
+  @Test
+  public void testCompressCacheLimit() {
+    obj.addImage("image", createBufferImage(40, 30, createPatternMap(40, 30)));
+    assertTrue(obj.compress(50, "image", "compressed"));
+    assertFalse(obj.getMemoryUsage().contains("Compress cache"));
+    assertFalse(obj.setCompressionCacheLimit(-1));
+    assertEquals("Compression cache limit cannot be negative.\n", out.toString());
+
+    // the padded coefficients of a 40x30 image take 3 * 64 * 64 * 8 bytes
+    assertTrue(obj.setCompressionCacheLimit(3 * 64 * 64 * 8 - 1));
+    assertTrue(obj.compress(50, "image", "compressed"));
+    assertFalse(obj.getMemoryUsage().contains("Compress cache"));
+
+    assertTrue(obj.setCompressionCacheLimit(1024 * 1024));
+    assertTrue(obj.compress(50, "image", "compressed"));
+    assertTrue(obj.getMemoryUsage().contains("Compress cache: 1 images"));
+    assertTrue(obj.compress(50, "compressed", "twice"));
+    assertTrue(obj.getMemoryUsage().contains("Compress cache: 2 images"));
+    assertTrue(obj.setCompressionCacheLimit(0));
+    assertFalse(obj.getMemoryUsage().contains("Compress cache"));
+  }
+
+  /**
+   * Test case to check that a compressed image kept as its coefficients reads back, and goes
+   * through other operations, exactly as the same image expanded to channel values does, in
+   * double and float precision.
+   */
+  @Test
+  public void testCompressSparseMatchesDense() throws IOException {
+    BufferedImage image = ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png"));
+    ImageProcessingModelImpl dense = new ImageProcessingModelImpl(out);
+    dense.setSparseCompression(false);
+    dense.addImage("jp", image);
+    obj.addImage("jp", image);
+    for (boolean singlePrecision : new boolean[]{false, true}) {
+      obj.setSinglePrecision(singlePrecision);
+      dense.setSinglePrecision(singlePrecision);
+      for (int percentage : new int[]{50, 90}) {
+        assertTrue(obj.compress(percentage, "jp", "compressed"));
+        assertTrue(dense.compress(percentage, "jp", "compressed"));
+        assertArrayEquals(dense.getImageData("compressed").getRgb(),
+            obj.getImageData("compressed").getRgb());
+        BufferedImage expected = dense.getImage("compressed");
+        BufferedImage actual = obj.getImage("compressed");
+        assertArrayEquals(expected.getRGB(0, 0, 183, 320, null, 0, 183),
+            actual.getRGB(0, 0, 183, 320, null, 0, 183));
+
+        assertTrue(obj.blurSharpenImage("blur", "compressed", "blurred"));
+        assertTrue(dense.blurSharpenImage("blur", "compressed", "blurred"));
+        assertTrue(obj.doBrightening(30, "compressed", "brighter"));
+        assertTrue(dense.doBrightening(30, "compressed", "brighter"));
+        assertTrue(obj.compress(20, "compressed", "twice"));
+        assertTrue(dense.compress(20, "compressed", "twice"));
+        for (String name : new String[]{"blurred", "brighter", "twice"}) {
+          assertArrayEquals(dense.getImageData(name).getRgb(), obj.getImageData(name).getRgb());
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case to check that a compressed image kept as its coefficients is counted at its full
+   * pixel size once it is spilled and read back, as its spill file holds every pixel.
+   */
+  @Test
+  public void testCompressSparseSpilledAndReloaded() throws IOException {
+    obj.addImage("jp", ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png")));
+    long resident = obj.getResidentBytes();
+    assertTrue(obj.compress(90, "jp", "compressed"));
+    long pixels = 3L * 183 * 320;
+    long sparse = obj.getImageData("compressed").getSizeInBytes();
+    assertTrue(sparse < pixels);
+    assertEquals(resident + sparse, obj.getResidentBytes());
+    int[][][] expected = obj.getImageData("compressed").getRgb();
+
+    assertTrue(obj.evict("compressed"));
+    assertEquals(resident, obj.getResidentBytes());
+    assertArrayEquals(expected, obj.getImageData("compressed").getRgb());
+    assertEquals(pixels, obj.getImageData("compressed").getSizeInBytes());
+    assertEquals(resident + pixels, obj.getResidentBytes());
+  }
+
+  /**
+   * Test case to check that a heavily compressed image kept as its coefficients takes a small
+   * part of the memory of its channel values.
+   */
+  @Test
+  public void testCompressSparseSize() throws IOException {
+    obj.addImage("jp", ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png")));
+    assertTrue(obj.compress(90, "jp", "sparse"));
+    obj.setSparseCompression(false);
+    assertTrue(obj.compress(90, "jp", "dense"));
+    assertEquals(3L * 183 * 320, obj.getImageData("dense").getSizeInBytes());
+    assertTrue(obj.getImageData("sparse").getSizeInBytes() * 5 < 3L * 183 * 320);
+  }
+
+  /**
+   * Test case to check that an image saved as HWC loads back with exactly the same pixels, and
+   * that a compressed image, having mostly zero details, takes much less space than the original.
+   */
+  @Test
+  public void testSaveAndLoadHWC() throws IOException {
+    FileReadWriteUtility utility = new FileReadWriteUtilityImpl();
+    obj.addImage("jp", ImageIO.read(new File("test/dataset/test_images/JamaicaPlain-small.png")));
+    assertTrue(obj.compress(90, "jp", "jp-compressed"));
+    Path directory = Files.createTempDirectory("hwc-test");
+    File original = directory.resolve("jp.hwc").toFile();
+    File compressed = directory.resolve("jp-compressed.hwc").toFile();
+    try {
+      for (String name : new String[]{"jp", "jp-compressed"}) {
+        File file = name.equals("jp") ? original : compressed;
+        assertTrue(utility.saveHWCImage(file.getPath(), obj.getImage(name)));
+        obj.addImage(name + "-loaded", utility.loadImageFromHWC(file.getPath()));
+        assertArrayEquals(obj.getImageData(name).getRgb(),
+            obj.getImageData(name + "-loaded").getRgb());
+      }
+      assertTrue(compressed.length() * 3 < original.length());
+    } finally {
+      original.delete();
+      compressed.delete();
+      directory.toFile().delete();
+    }
+  }
+
+  /**
+   * Test case to check that images of odd sizes and extreme values survive an HWC round trip,
+   * and that a file that is not HWC is not loaded.
+   */
+  @Test
+  public void testSaveAndLoadHWCOddSizes() throws IOException {
+    FileReadWriteUtility utility = new FileReadWriteUtilityImpl();
+    Path directory = Files.createTempDirectory("hwc-test");
+    File file = directory.resolve("image.hwc").toFile();
+    Random random = new Random(7);
+    try {
+      for (int[] size : new int[][]{{1, 1}, {1, 9}, {13, 1}, {37, 22}}) {
+        int[][][] map = new int[3][size[1]][size[0]];
+        for (int[][] channel : map) {
+          for (int[] row : channel) {
+            for (int x = 0; x < row.length; x++) {
+              row[x] = random.nextBoolean() ? 255 * random.nextInt(2) : random.nextInt(256);
+            }
+          }
+        }
+        obj.addImage("odd", createBufferImage(size[0], size[1], map));
+        assertTrue(utility.saveHWCImage(file.getPath(), obj.getImage("odd")));
+        obj.addImage("odd-loaded", utility.loadImageFromHWC(file.getPath()));
+        assertArrayEquals(map, obj.getImageData("odd-loaded").getRgb());
+      }
+      Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+      assertNull(utility.loadImageFromHWC(file.getPath()));
+    } finally {
+      file.delete();
+      directory.toFile().delete();
+    }
+  }
+
+  /**
+   * Test case to check that an HWC file with a crafted or truncated header is rejected without
+   * allocating the image it claims to hold.
+   */
+  @Test
+  public void testLoadHWCCraftedHeader() throws IOException {
+    FileReadWriteUtility utility = new FileReadWriteUtilityImpl();
+    Path directory = Files.createTempDirectory("hwc-test");
+    File file = directory.resolve("image.hwc").toFile();
+    try {
+      int[][] sizes = {{46340, 46340}, {1 << 13, (1 << 13) + 1}, {8000, 8000}, {0, 5}, {-1, 3}};
+      for (int[] size : sizes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(0x48574331);
+        header.writeInt(size[0]);
+        header.writeInt(size[1]);
+        header.writeLong(0);
+        Files.write(file.toPath(), bytes.toByteArray());
+        assertNull(utility.loadImageFromHWC(file.getPath()));
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes.toByteArray(), 12));
+        assertNull(utility.loadImageFromHWC(file.getPath()));
+      }
+
+      obj.addImage("big", createBufferImage(64, 48, createPatternMap(64, 48)));
+      assertTrue(utility.saveHWCImage(file.getPath(), obj.getImage("big")));
+      byte[] saved = Files.readAllBytes(file.toPath());
+      Files.write(file.toPath(), Arrays.copyOf(saved, saved.length / 2));
+      assertNull(utility.loadImageFromHWC(file.getPath()));
+    } finally {
+      file.delete();
+      directory.toFile().delete();
+    }
+  }
+
+  /**
+   * The threshold of the original compress, the given percentage of the sorted distinct boxed
+   * magnitudes rounded to three decimals.
+   */
+  private double boxedThreshold(double[] coefficients, int percentage) {
+    Object[] distinct = Arrays.stream(coefficients)
+        .map(value -> Math.abs(Math.round(value * 1000.0) / 1000.0))
+        .boxed().distinct().toArray();
+    Arrays.sort(distinct);
+    return (double) distinct[(int) Math.round(distinct.length * (percentage / 100.0))];
+  }
+
+  /**
+   * Test case to check that compressing in tiles compresses every tile on its own: a tile
+   * covering the whole of a power of two image gives the same image as compressing it whole,
+   * tiles cut by the edges are compressed as their pixels repeated to a power of two square,
+   * and tile sizes that are not powers of two are rejected.
+   */
+  @Test
+  public void testCompressTiles() {
+    int width = 140;
+    int height = 75;
+    int[][][] map = createPatternMap(width, height);
+    obj.addImage("big", createBufferImage(width, height, map));
+
+    assertTrue(obj.compress(60, 128, "big", "tiles"));
+    int[][][] actual = obj.getImageData("tiles").getRgb();
+    assertEquals(height, actual[0].length);
+    assertEquals(width, actual[0][0].length);
+    // the tile at the right edge, 12x75, is the 128x128 square of its pixels repeated
+    int[][][] edge = new int[3][128][128];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < 128; i++) {
+        for (int j = 0; j < 128; j++) {
+          edge[channel][i][j] = map[channel][Math.min(i, height - 1)][128 + Math.min(j, 11)];
+        }
+      }
+    }
+    obj.addImage("edge", createBufferImage(128, 128, edge));
+    assertTrue(obj.compress(60, "edge", "edge-compressed"));
+    int[][][] expected = obj.getImageData("edge-compressed").getRgb();
+    for (int channel = 0; channel < 3; channel++) {
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < 12; j++) {
+          assertEquals(expected[channel][i][j], actual[channel][i][128 + j]);
+        }
+      }
+    }
+
+    obj.addImage("square", createBufferImage(64, 64, createPatternMap(64, 64)));
+    assertTrue(obj.compress(75, "square", "whole"));
+    assertTrue(obj.compress(75, 64, "square", "tile"));
+    assertArrayEquals(obj.getImageData("whole").getRgb(), obj.getImageData("tile").getRgb());
+
+    assertFalse(obj.compress(60, 100, "big", "bad"));
+    assertFalse(obj.compress(60, 1, "big", "bad"));
+    assertEquals("Invalid compress tile size: must be a power of two from 2 to 4096.\n"
+        + "Invalid compress tile size: must be a power of two from 2 to 4096.\n",
+        out.toString());
+  }
+
+  /**
+   * Test case to check that tiles much larger than the image compress it as a single tile
+   * padded to the next power of two, in float and in double precision.
+   */
+  @Test
+  public void testCompressTilesLargerThanImage() {
+    obj.addImage("big", createBufferImage(140, 75, createPatternMap(140, 75)));
+    for (boolean singlePrecision : new boolean[]{false, true}) {
+      obj.setSinglePrecision(singlePrecision);
+      assertTrue(obj.compress(60, 4096, "big", "huge-tile"));
+      assertTrue(obj.compress(60, 256, "big", "tile"));
+      assertArrayEquals(obj.getImageData("tile").getRgb(),
+          obj.getImageData("huge-tile").getRgb());
+    }
+  }
+}
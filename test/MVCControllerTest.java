@@ -1,6 +1,8 @@
 import controller.MVCController;
 import model.ImageMetadata;
 import model.ImageProcessingModel;
+import model.ImageStatistics;
+import model.PixelKernel;
 
 
 import org.junit.Before;
@@ -451,6 +453,15 @@ public class MVCControllerTest {
       return true;
     }
 
+    @Override
+    public boolean compress(int percentage, int tileSize, String sourceFilename,
+                            String destinationFilename) {
+      log.append("Received inputs: ").append(sourceFilename)
+          .append(" , ").append(destinationFilename).append(" , ").append(percentage)
+          .append(" , ").append(tileSize);
+      return true;
+    }
+
     @Override
     public boolean createHistogram(String sourceFilename, String destinationFilename) {
       log.append("Received inputs: ").append(sourceFilename)
@@ -499,6 +510,69 @@ public class MVCControllerTest {
       return bufferedImage;
     }
 
+    @Override
+    public ImageStatistics getStatistics(String imageName) {
+      log.append("Received inputs: ").append(imageName);
+      return null;
+    }
+
+    @Override
+    public String getMemoryUsage() {
+      log.append("Received inputs: memory");
+      return "Memory budget: unlimited";
+    }
+
+    @Override
+    public boolean setMemoryBudget(long bytes) {
+      log.append("Received inputs: ").append(bytes).append(" , ");
+      return true;
+    }
+
+    @Override
+    public boolean evict(String imageName) {
+      log.append("Received inputs: ").append(imageName);
+      return true;
+    }
+
+    @Override
+    public boolean boxBlur(int radius, String sourceFilename, String destinationFilename) {
+      log.append("Received inputs: ").append(radius).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean gaussianBlur(double sigma, String sourceFilename,
+                                String destinationFilename) {
+      log.append("Received inputs: ").append(sigma).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean median(int radius, String sourceFilename, String destinationFilename) {
+      log.append("Received inputs: ").append(radius).append(" , ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean convolve(double[][] kernel, String borderMode, String sourceFilename,
+                            String destinationFilename) {
+      log.append("Received inputs: ").append(kernel.length).append("x")
+          .append(kernel[0].length).append(" , ").append(borderMode)
+          .append(" , ").append(sourceFilename).append(" , ").append(destinationFilename);
+      return true;
+    }
+
+    @Override
+    public boolean applyPipeline(PixelKernel kernel, String sourceFilename,
+                                 String destinationFilename) {
+      log.append("Received inputs: ").append(sourceFilename)
+          .append(" , ").append(destinationFilename);
+      return true;
+    }
+
   }
 
   /**
@@ -0,0 +1,151 @@
+import model.ImageProcessingModelImpl;
+import model.ImageStore;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Benchmark comparing the tile-at-a-time operations of the model against the row-major
+ * {@code int[3][h][w]} loops the model used to run, on an 8K (7680x4320) image.
+ * This is not part of the test suite; run it directly with a large enough heap, for example
+ * {@code java -Xmx3g -cp <classes> TiledLayoutBenchmark [width height runs]}.
+ */
+public class TiledLayoutBenchmark {
+
+  private static final double[][] BLUR = {
+      {1.0 / 16, 1.0 / 8, 1.0 / 16},
+      {1.0 / 8, 1.0 / 4, 1.0 / 8},
+      {1.0 / 16, 1.0 / 8, 1.0 / 16}
+  };
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Optional width, height and number of timed runs.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 7680;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 4320;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    Random random = new Random(42);
+    for (int k = 0; k < data.length; k++) {
+      data[k] = random.nextInt(1 << 24);
+    }
+    System.out.printf("%dx%d image, best of %d runs (ms)%n", width, height, runs);
+    System.out.printf("%-12s %12s %12s %12s%n", "operation", "int[3][h][w]", "heap", "tiled");
+
+    String[] operations = {"brighten", "sepia", "flip", "blur"};
+    for (String operation : operations) {
+      int[][][] rows = toRows(image);
+      long rowMajor = time(runs, () -> runRowMajor(operation, rows));
+      long heap = timeModel(runs, operation, image, ImageStore.HEAP);
+      long tiled = timeModel(runs, operation, image, ImageStore.TILED);
+      System.out.printf("%-12s %12d %12d %12d%n", operation, rowMajor, heap, tiled);
+    }
+  }
+
+  private static long timeModel(int runs, String operation, BufferedImage image,
+                                ImageStore store) {
+    ImageProcessingModelImpl model =
+        new ImageProcessingModelImpl(new ByteArrayOutputStream(), store);
+    model.addImage("src", image);
+    return time(runs, () -> {
+      switch (operation) {
+        case "brighten":
+          model.doBrightening(20, "src", "dest");
+          break;
+        case "sepia":
+          model.getSepia("src", "dest");
+          break;
+        case "flip":
+          model.doFlip("horizontal-flip", "src", "dest");
+          break;
+        default:
+          model.blurSharpenImage("blur", "src", "dest");
+      }
+    });
+  }
+
+  private static long time(int runs, Runnable task) {
+    task.run();
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1_000_000;
+  }
+
+  private static int[][][] toRows(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[][][] rows = new int[3][height][width];
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      image.getRGB(0, i, width, 1, row, 0, width);
+      for (int j = 0; j < width; j++) {
+        rows[0][i][j] = (row[j] >> 16) & 0xFF;
+        rows[1][i][j] = (row[j] >> 8) & 0xFF;
+        rows[2][i][j] = row[j] & 0xFF;
+      }
+    }
+    return rows;
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+
+  /**
+   * The operations as the model ran them over whole {@code int[3][h][w]} channel maps.
+   */
+  private static int[][][] runRowMajor(String operation, int[][][] pixelMap) {
+    int height = pixelMap[0].length;
+    int width = pixelMap[0][0].length;
+    int[][][] newPixelMap = new int[3][height][width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int r = pixelMap[0][i][j];
+        int g = pixelMap[1][i][j];
+        int b = pixelMap[2][i][j];
+        switch (operation) {
+          case "brighten":
+            newPixelMap[0][i][j] = clamp(r + 20);
+            newPixelMap[1][i][j] = clamp(g + 20);
+            newPixelMap[2][i][j] = clamp(b + 20);
+            break;
+          case "sepia":
+            newPixelMap[0][i][j] = clamp((int) (0.393 * r + 0.769 * g + 0.189 * b));
+            newPixelMap[1][i][j] = clamp((int) (0.349 * r + 0.686 * g + 0.168 * b));
+            newPixelMap[2][i][j] = clamp((int) (0.272 * r + 0.534 * g + 0.131 * b));
+            break;
+          case "flip":
+            newPixelMap[0][i][width - 1 - j] = r;
+            newPixelMap[1][i][width - 1 - j] = g;
+            newPixelMap[2][i][width - 1 - j] = b;
+            break;
+          default:
+            if (i == 0 || j == 0 || i == height - 1 || j == width - 1) {
+              break;
+            }
+            for (int channel = 0; channel < 3; channel++) {
+              double sum = 0;
+              for (int y = -1; y <= 1; y++) {
+                for (int x = -1; x <= 1; x++) {
+                  sum += pixelMap[channel][i + y][j + x] * BLUR[y + 1][x + 1];
+                }
+              }
+              newPixelMap[channel][i][j] = (int) Math.min(Math.max(sum, 0), 255);
+            }
+        }
+      }
+    }
+    return newPixelMap;
+  }
+}